@@ -0,0 +1,179 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ## Summary
+ *
+ * Throughput of the structures measured by `JavaMemoryUseExperiment`, to put next
+ * to their footprint:
+ *
+ * * `fill`: build the structure with N elements, exactly as the table does
+ * * `scan`: read every element in index order
+ * * `randomAccess`: read N elements at random indexes
+ *
+ * One operation is one whole pass over N elements. Run with `-prof gc` to get the
+ * allocation rate; `gc.alloc.rate.norm` of `fill` is the allocated bytes per
+ * structure and should agree with the `m1 - m2` column of the allocation meter.
+ *
+ *     gradle jmh
+ *     java ... JavaMemoryUseExperiment throughput build/reports/jmh/results.csv
+ *
+ * `structure` takes `Experiment.getId()` values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1G", "-Xmx1G"})
+public class StructureBenchmark {
+
+    @Param({
+            "int_N", "short_N", "long_N", "float_N", "double_N", "char_N", "boolean_N", "byte_N",
+            "Integer_N", "Integer_N_and_N_Integer", "Long_N", "Long_N_and_N_Long",
+            "BigInteger_N_and_N_BigInteger", "BigDecimal_N", "BigDecimal_N_and_N_BigDecimal",
+            "String_N", "String_N_and_N_literal_string_abcdefghij", "String_N_and_N_new_String_abc0000000",
+            "String_N_and_N_different_strings_String_format_abc_07d_i",
+            "EmptyClass_N_N_EmptyClass", "SimpleClass_N_N_SimpleClass",
+            "ComplexClassWithTypeParameter_Long_N_Long"
+    })
+    public String structure;
+
+    @Param({"800", "100000"})
+    public int n;
+
+    private Experiment experiment;
+    private Object instance;
+    private int[] indexes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (Experiment e : new JavaMemoryUseExperiment().arrayExperiments()) {
+            if (e.getId().equals(structure)) {
+                experiment = e;
+            }
+        }
+        if (experiment == null) {
+            throw new IllegalArgumentException("no experiment with id " + structure);
+        }
+        instance = experiment.create(n);
+
+        // fixed seed, so every structure is read in the same order
+        Random random = new Random(42);
+        indexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = random.nextInt(n);
+        }
+    }
+
+    @Benchmark
+    public Object fill() {
+        return experiment.create(n);
+    }
+
+    @Benchmark
+    public long scan() {
+        Object a = instance;
+        long sum = 0;
+        if (a instanceof int[]) {
+            for (int v : (int[]) a) sum += v;
+        } else if (a instanceof short[]) {
+            for (short v : (short[]) a) sum += v;
+        } else if (a instanceof long[]) {
+            for (long v : (long[]) a) sum += v;
+        } else if (a instanceof float[]) {
+            for (float v : (float[]) a) sum += (long) v;
+        } else if (a instanceof double[]) {
+            for (double v : (double[]) a) sum += (long) v;
+        } else if (a instanceof char[]) {
+            for (char v : (char[]) a) sum += v;
+        } else if (a instanceof boolean[]) {
+            for (boolean v : (boolean[]) a) sum += v ? 1 : 0;
+        } else if (a instanceof byte[]) {
+            for (byte v : (byte[]) a) sum += v;
+        } else {
+            for (Object v : elements(a)) sum += touch(v);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long randomAccess() {
+        Object a = instance;
+        int[] idx = indexes;
+        long sum = 0;
+        if (a instanceof int[]) {
+            int[] array = (int[]) a;
+            for (int i : idx) sum += array[i];
+        } else if (a instanceof short[]) {
+            short[] array = (short[]) a;
+            for (int i : idx) sum += array[i];
+        } else if (a instanceof long[]) {
+            long[] array = (long[]) a;
+            for (int i : idx) sum += array[i];
+        } else if (a instanceof float[]) {
+            float[] array = (float[]) a;
+            for (int i : idx) sum += (long) array[i];
+        } else if (a instanceof double[]) {
+            double[] array = (double[]) a;
+            for (int i : idx) sum += (long) array[i];
+        } else if (a instanceof char[]) {
+            char[] array = (char[]) a;
+            for (int i : idx) sum += array[i];
+        } else if (a instanceof boolean[]) {
+            boolean[] array = (boolean[]) a;
+            for (int i : idx) sum += array[i] ? 1 : 0;
+        } else if (a instanceof byte[]) {
+            byte[] array = (byte[]) a;
+            for (int i : idx) sum += array[i];
+        } else {
+            Object[] array = elements(a);
+            for (int i : idx) sum += touch(array[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * The elements of a structure that is not a primitive array: an object array, or
+     * the array inside a `ComplexClassWithTypeParameter`.
+     */
+    private static Object[] elements(Object a) {
+        if (a instanceof Object[]) {
+            return (Object[]) a;
+        } else if (a instanceof JavaMemoryUseExperiment.ComplexClassWithTypeParameter) {
+            return ((JavaMemoryUseExperiment.ComplexClassWithTypeParameter<?>) a).getItems();
+        }
+        throw new IllegalStateException("cannot read the elements of " + a.getClass().getName()
+                + ", add it to StructureBenchmark.elements");
+    }
+
+    /**
+     * Read something from the element itself, so that boxed and object layouts pay
+     * for the dereference (and the cache miss) the way real code would.
+     */
+    private static long touch(Object v) {
+        if (v == null) {
+            return 0;
+        } else if (v instanceof Number) {
+            return ((Number) v).longValue();
+        } else if (v instanceof CharSequence) {
+            return ((CharSequence) v).length();
+        }
+        return v.hashCode();
+    }
+}
@@ -0,0 +1,185 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+
+import net.meng6.java_memory_use_experiment.jfr.AllocationProfile;
+import net.meng6.java_memory_use_experiment.jfr.AllocationProfile.Owner;
+import net.meng6.java_memory_use_experiment.jfr.AllocationProfile.Site;
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * Where the bytes of a row come from, when `m1 - m2` and `m_deep` disagree: each
+ * selected experiment is measured once inside a JFR recording of its allocations,
+ * and the recording, read back with `AllocationProfile`, splits them into
+ *
+ * * structure: allocated by `create(n)`, which is what `m1 - m2` should be; `sampled`
+ *   is the same from the weights of `jdk.ObjectAllocationSample`, a check on the
+ *   TLAB-sized samples
+ * * meter: allocated by the meter's own readings, which `m1 - m2` includes too
+ * * other: starting and stopping the recording, other threads; not in `m1 - m2`
+ *
+ * Below each row are the largest allocation sites of the structure and the meter:
+ * class, allocating frame and the experiment's frame that called it. Allocations the
+ * structure does not keep (a `StringBuilder`, the old array of a growing list) and
+ * classes loaded on first use show up here and not in `m_deep`; `unexplained` is
+ * what `m1 - m2` has beyond structure and meter, if every allocation was recorded.
+ *
+ * Only G1 with TLABs off reports every allocation:
+ *
+ *     java -XX:+UseG1GC -XX:-UseTLAB -cp ... JavaMemoryUseExperiment allocations
+ *
+ * otherwise only the allocations that start a TLAB are seen, see `AllocationProfile`:
+ * the header says so, structure, meter and other are printed as lower bounds (`>=`),
+ * and the sites list only those allocations. Then `sampled` is the better guess of
+ * the structure's bytes, and no results are recorded. The recordings are kept for JDK
+ * Mission Control or `jfr print`.
+ *
+ * ## Configuration
+ *
+ * * `-Dallocations.include=`: comma-separated glob patterns of experiments, as for
+ *   `run --include`; all experiments if empty
+ * * `-Dallocations.exclude=`: patterns of experiments to leave out
+ * * `-Dallocations.n=800`: N
+ * * `-Dallocations.warmup=0`: times each experiment is created before the recorded
+ *   time; 0 shows class loading, as in the table
+ * * `-Dallocations.top=5`: sites listed per owner and row
+ * * `-Dallocations.dir=output/jfr`: where the recordings go, one per row
+ */
+public class AllocationProfileSuite {
+
+    private final MemoryMeter meter;
+    private final ExperimentRegistry registry;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final int n;
+    private final int warmup;
+    private final int top;
+    private final Path dir;
+
+    // keeps the structure under test reachable
+    private static Object keep;
+
+    public AllocationProfileSuite(MemoryMeter meter, ExperimentRegistry registry, List<String> includes,
+                                  List<String> excludes, int n, int warmup, int top, Path dir) {
+        this.meter = meter;
+        this.registry = registry;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.n = n;
+        this.warmup = warmup;
+        this.top = top;
+        this.dir = dir;
+    }
+
+    public static AllocationProfileSuite fromSystemProperties(MemoryMeter meter, ExperimentRegistry registry, int n) {
+        return new AllocationProfileSuite(meter, registry,
+                patterns(System.getProperty("allocations.include", "")),
+                patterns(System.getProperty("allocations.exclude", "")),
+                Integer.getInteger("allocations.n", n),
+                Integer.getInteger("allocations.warmup", 0),
+                Integer.getInteger("allocations.top", 5),
+                Paths.get(System.getProperty("allocations.dir", "output/jfr")));
+    }
+
+    private static List<String> patterns(String value) {
+        List<String> patterns = new ArrayList<String>();
+        for (String pattern : Arrays.asList(value.split(","))) {
+            if (!pattern.trim().isEmpty()) {
+                patterns.add(pattern.trim());
+            }
+        }
+        return patterns;
+    }
+
+    public void run() throws IOException {
+        Files.createDirectories(dir);
+        boolean exact = AllocationProfile.isExact();
+        System.out.println(String.format("meter = %s, N = %d, %d warm-up, %s", meter.getName(), n, warmup, exact
+                ? "every allocation recorded (G1, -XX:-UseTLAB)"
+                : "only allocations that start a TLAB, bytes are lower bounds and not recorded: "
+                        + "run with -XX:+UseG1GC -XX:-UseTLAB for all of them"));
+        printDivider();
+        System.out.println(String.format("| %-9s | %60s | %7s | %10s | %10s | %10s | %10s | %8s | %12s | %11s |",
+                "suite", "experiment", "N", "m1 - m2", "m_deep", "structure", "sampled", "meter", "other", "unexplained"));
+        printDivider();
+        for (Map.Entry<String, List<Experiment>> suite : registry.select(includes, excludes).entrySet()) {
+            for (Experiment experiment : suite.getValue()) {
+                profile(suite.getKey(), experiment, exact);
+            }
+        }
+        printDivider();
+        System.out.println("recordings in " + dir);
+    }
+
+    private void profile(String suite, Experiment experiment, boolean exact) throws IOException {
+        int size = experiment.isScalar() ? 1 : n;
+        for (int w = 0; w < warmup; w++) {
+            keep = experiment.create(size);
+            keep = null;
+        }
+        Path file = dir.resolve(suite + "-" + experiment.getId() + ".jfr");
+        long m1;
+        long m2;
+        try (Recording recording = AllocationProfile.newRecording()) {
+            recording.start();
+            m1 = meter.sample();
+            keep = experiment.create(size);
+            m2 = meter.sample();
+            recording.stop();
+            recording.dump(file);
+        }
+        long used = meter.used(m1, m2);
+        long deep = ObjectSizes.deepSizeOf(keep);
+        keep = null;
+
+        AllocationProfile profile = AllocationProfile.read(file, Thread.currentThread().getId());
+        long structure = profile.getBytes(Owner.STRUCTURE);
+        long harness = profile.getBytes(Owner.METER);
+        System.out.println(String.format("| %-9s | %60s | %7d | %10d | %10d | %10s | %10d | %8s | %12s | %11s |",
+                suite, experiment.getName(), size, used, deep, bytes(structure, exact),
+                profile.getSampledBytes(Owner.STRUCTURE), bytes(harness, exact), bytes(profile.getBytes(Owner.OTHER), exact),
+                exact ? String.valueOf(used - structure - harness) : "-"));
+        printSites(profile.getSites(Owner.STRUCTURE), "structure");
+        printSites(profile.getSites(Owner.METER), "meter");
+
+        if (exact) {
+            ResultsStore.record("allocations", experiment.getId(), experiment.getName(), size, "structure allocations", "B", structure);
+            ResultsStore.record("allocations", experiment.getId(), experiment.getName(), size, "meter allocations", "B", harness);
+        }
+    }
+
+    private static String bytes(long bytes, boolean exact) {
+        return exact ? String.valueOf(bytes) : ">=" + bytes;
+    }
+
+    private void printSites(List<Site> sites, String owner) {
+        for (int s = 0; s < sites.size() && s < top; s++) {
+            Site site = sites.get(s);
+            System.out.println(String.format("| %9s | %10d B in %5d: %s", owner, site.getBytes(), site.getEvents(), site));
+        }
+        if (sites.size() > top) {
+            long rest = 0;
+            for (int s = top; s < sites.size(); s++) {
+                rest += sites.get(s).getBytes();
+            }
+            System.out.println(String.format("| %9s | %10d B at %d more sites", owner, rest, sites.size() - top));
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 178), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,18 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.List;
+
+/**
+ * The `arrays` suite: the array rows of the table, see
+ * `JavaMemoryUseExperiment.arrayExperiments()`.
+ */
+public class ArrayExperiments implements ExperimentProvider {
+
+    public String getSuite() {
+        return "arrays";
+    }
+
+    public List<Experiment> getExperiments() {
+        return new JavaMemoryUseExperiment().arrayExperiments();
+    }
+}
@@ -0,0 +1,450 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.meng6.java_memory_use_experiment.mapped.DoubleBigArray;
+import net.meng6.java_memory_use_experiment.mapped.LongBigArray;
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+
+/**
+ * ## Summary
+ *
+ * On-heap `long[N]` and `double[N]` against the file-backed `LongBigArray` and
+ * `DoubleBigArray`, for data sets that should not live on the heap:
+ *
+ * * heap bytes (from the meter) of building and filling the array
+ * * growth of the process's resident set (`VmRSS` in `/proc/self/status`) once the
+ *   array is built, loaded again and scanned; for a mapped array these are page cache
+ *   pages that the kernel may evict, for a heap array they are not
+ * * restart: the time until a new process could use the data again, i.e. reading the
+ *   file back into a new array, or mapping it
+ * * the time per element of the first scan after the restart (cold: pages come from
+ *   disk, or at least have to be mapped) and the fastest of the following ones (warm)
+ *
+ * Only with `-Dbigarray.dropCaches=true`, and only as root, does the suite drop the
+ * page cache before each restart, through `/proc/sys/vm/drop_caches`; that empties it
+ * for the whole machine, so it is never done by default. Otherwise the first scan only
+ * pays for mapping pages that are still cached, and is reported and recorded as "not
+ * cold" rather than as a cold scan.
+ *
+ * Before the first measured array each store builds and drops a small one, so that
+ * class loading and first-use allocations do not land in the heap bytes of the first.
+ *
+ * Heap arrays stop at `Integer.MAX_VALUE - 8` elements and at the heap size; the big
+ * arrays only at the disk.
+ *
+ * ## Configuration
+ *
+ * * `-Dbigarray.n=67108864`: comma-separated element counts, 2^26 is 512 MB per array
+ * * `-Dbigarray.dir=<java.io.tmpdir>`: where the files go, deleted afterwards
+ * * `-Dbigarray.scans=3`: warm scans per array, the fastest one is reported
+ * * `-Dbigarray.dropCaches=false`: drop the page cache before each restart (needs root)
+ */
+public class BigArraySuite {
+
+    private static final String DROP_CACHES = "/proc/sys/vm/drop_caches";
+    private static final int IO_BUFFER = 1 << 23;
+    private static final long WARM_UP_N = 1024;
+
+    private final MemoryMeter meter;
+    private final long[] ns;
+    private final Path dir;
+    private final int scans;
+    private final boolean dropCaches;
+
+    // keeps the array under test reachable, and scan results alive
+    private static Object keep;
+    private static long sink;
+
+    private interface Store {
+        String getName();
+
+        /** true if the array lives in `file` rather than on the heap */
+        boolean isMapped();
+
+        /**
+         * Builds and fills an array of `n` elements; a mapped store maps `file` for it,
+         * a heap store leaves `file` to `save`.
+         */
+        Object build(long n, Path file) throws IOException;
+
+        /** after `save`, `load` must be able to recreate the array from `file` */
+        void save(Object array, Path file) throws IOException;
+
+        Object load(Path file) throws IOException;
+
+        long scan(Object array);
+    }
+
+    public BigArraySuite(MemoryMeter meter, long[] ns, Path dir, int scans, boolean dropCaches) {
+        this.meter = meter;
+        this.ns = ns;
+        this.dir = dir;
+        this.scans = scans;
+        this.dropCaches = dropCaches;
+    }
+
+    public static BigArraySuite fromSystemProperties(MemoryMeter meter) {
+        String[] values = System.getProperty("bigarray.n", "67108864").split(",");
+        long[] ns = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Long.parseLong(values[i].trim());
+        }
+        return new BigArraySuite(meter, ns,
+                Paths.get(System.getProperty("bigarray.dir", System.getProperty("java.io.tmpdir"))),
+                Integer.getInteger("bigarray.scans", 3),
+                Boolean.getBoolean("bigarray.dropCaches"));
+    }
+
+    static List<Store> stores() {
+        List<Store> stores = new ArrayList<Store>();
+        stores.add(new Store() {
+            public String getName() {
+                return "long[N]";
+            }
+
+            public boolean isMapped() {
+                return false;
+            }
+
+            public Object build(long n, Path file) {
+                long[] array = new long[checkedLength(n)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = 31L * i;
+                }
+                return array;
+            }
+
+            public void save(Object array, Path file) throws IOException {
+                final long[] a = (long[]) array;
+                write(file, a.length, (buffer, from, count) -> buffer.asLongBuffer().put(a, from, count));
+            }
+
+            public Object load(Path file) throws IOException {
+                final long[] a = new long[checkedLength(Files.size(file) / 8)];
+                read(file, a.length, (buffer, from, count) -> buffer.asLongBuffer().get(a, from, count));
+                return a;
+            }
+
+            public long scan(Object array) {
+                long sum = 0;
+                for (long value : (long[]) array) {
+                    sum += value;
+                }
+                return sum;
+            }
+        });
+        stores.add(new Store() {
+            public String getName() {
+                return "LongBigArray (mapped file)";
+            }
+
+            public boolean isMapped() {
+                return true;
+            }
+
+            public Object build(long n, Path file) throws IOException {
+                LongBigArray array = LongBigArray.map(file, n);
+                for (long i = 0; i < n; i++) {
+                    array.set(i, 31L * i);
+                }
+                return array;
+            }
+
+            public void save(Object array, Path file) {
+                ((LongBigArray) array).force();
+            }
+
+            public Object load(Path file) throws IOException {
+                return LongBigArray.open(file);
+            }
+
+            public long scan(Object array) {
+                return ((LongBigArray) array).sum();
+            }
+        });
+        stores.add(new Store() {
+            public String getName() {
+                return "double[N]";
+            }
+
+            public boolean isMapped() {
+                return false;
+            }
+
+            public Object build(long n, Path file) {
+                double[] array = new double[checkedLength(n)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = 0.5 * i;
+                }
+                return array;
+            }
+
+            public void save(Object array, Path file) throws IOException {
+                final double[] a = (double[]) array;
+                write(file, a.length, (buffer, from, count) -> buffer.asDoubleBuffer().put(a, from, count));
+            }
+
+            public Object load(Path file) throws IOException {
+                final double[] a = new double[checkedLength(Files.size(file) / 8)];
+                read(file, a.length, (buffer, from, count) -> buffer.asDoubleBuffer().get(a, from, count));
+                return a;
+            }
+
+            public long scan(Object array) {
+                double sum = 0;
+                for (double value : (double[]) array) {
+                    sum += value;
+                }
+                return (long) sum;
+            }
+        });
+        stores.add(new Store() {
+            public String getName() {
+                return "DoubleBigArray (mapped file)";
+            }
+
+            public boolean isMapped() {
+                return true;
+            }
+
+            public Object build(long n, Path file) throws IOException {
+                DoubleBigArray array = DoubleBigArray.map(file, n);
+                for (long i = 0; i < n; i++) {
+                    array.set(i, 0.5 * i);
+                }
+                return array;
+            }
+
+            public void save(Object array, Path file) {
+                ((DoubleBigArray) array).force();
+            }
+
+            public Object load(Path file) throws IOException {
+                return DoubleBigArray.open(file);
+            }
+
+            public long scan(Object array) {
+                return (long) ((DoubleBigArray) array).sum();
+            }
+        });
+        return stores;
+    }
+
+    private static int checkedLength(long n) {
+        if (n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(n + " elements do not fit in a Java array");
+        }
+        return (int) n;
+    }
+
+    private interface Transfer {
+        void apply(ByteBuffer buffer, int from, int count);
+    }
+
+    private static void write(Path file, int length, Transfer transfer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.nativeOrder());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            for (int from = 0; from < length; from += IO_BUFFER / 8) {
+                int count = Math.min(IO_BUFFER / 8, length - from);
+                buffer.clear();
+                transfer.apply(buffer, from, count);
+                buffer.limit(count * 8);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void read(Path file, int length, Transfer transfer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.nativeOrder());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            for (int from = 0; from < length; from += IO_BUFFER / 8) {
+                int count = Math.min(IO_BUFFER / 8, length - from);
+                buffer.clear().limit(count * 8);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException(file + " ended before element " + (from + count));
+                    }
+                }
+                buffer.flip();
+                transfer.apply(buffer, from, count);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Resident set size of this process, or -1 if `/proc/self/status` is not there.
+     */
+    static long residentBytes() {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    /**
+     * Drop clean pages from the page cache, so the next read of a file comes from disk.
+     *
+     * @return false if not permitted
+     */
+    static boolean dropPageCache() {
+        try {
+            Writer writer = new FileWriter(DROP_CACHES);
+            try {
+                writer.write("1");
+            } finally {
+                writer.close();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void run() throws IOException {
+        boolean cold = dropCaches && dropPageCache();
+        String pageCache;
+        if (cold) {
+            pageCache = "dropped before each restart";
+        } else if (dropCaches) {
+            pageCache = "kept, first scans not cold (no permission to write " + DROP_CACHES + ")";
+        } else {
+            pageCache = "kept, first scans not cold (-Dbigarray.dropCaches=true drops it, as root)";
+        }
+        System.out.println(String.format("meter = %s, files in %s, page cache %s", meter.getName(), dir, pageCache));
+        printDivider();
+        System.out.println(String.format("| %30s | %11s | %14s | %10s | %11s | %16s | %15s | %11s |",
+                "array", "N", "heap bytes", "RSS MB", "restart ms", cold ? "cold ns/elem" : "not cold ns/elem",
+                "warm ns/elem", "warm GB/s"));
+        printDivider();
+        List<Store> stores = stores();
+        for (Store store : stores) {
+            warmUp(store);
+        }
+        for (long n : ns) {
+            for (Store store : stores) {
+                measure(store, n, cold);
+            }
+            printDivider();
+        }
+    }
+
+    private void warmUp(Store store) throws IOException {
+        Path file = Files.createTempFile(dir, "bigarray", ".bin");
+        try {
+            keep = store.build(WARM_UP_N, file);
+            store.save(keep, file);
+            keep = store.load(file);
+            sink += store.scan(keep);
+        } finally {
+            keep = null;
+            RecordLayoutSuite.settleNativeMemory();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void measure(Store store, long n, boolean cold) throws IOException {
+        if (!store.isMapped() && n > Integer.MAX_VALUE - 8) {
+            System.out.println(String.format("| %30s | %11d | %s", store.getName(), n, "more elements than a Java array holds"));
+            return;
+        }
+        Path file = Files.createTempFile(dir, "bigarray", ".bin");
+        try {
+            RecordLayoutSuite.settleNativeMemory();
+            long rss0 = residentBytes();
+            long m1, m2;
+            try {
+                m1 = meter.sample();
+                keep = store.build(n, file);
+                m2 = meter.sample();
+            } catch (OutOfMemoryError e) {
+                keep = null;
+                System.out.println(String.format("| %30s | %11d | %s", store.getName(), n, "OutOfMemoryError: " + e.getMessage()));
+                return;
+            }
+            long heap = meter.used(m1, m2);
+
+            // restart: only the file is left, unmapped and ideally not cached
+            store.save(keep, file);
+            keep = null;
+            RecordLayoutSuite.settleNativeMemory();
+            if (cold) {
+                dropPageCache();
+            }
+            long t1 = System.nanoTime();
+            keep = store.load(file);
+            long t2 = System.nanoTime();
+            sink += store.scan(keep);
+            long t3 = System.nanoTime();
+            long best = Long.MAX_VALUE;
+            for (int s = 0; s < scans; s++) {
+                long t4 = System.nanoTime();
+                sink += store.scan(keep);
+                best = Math.min(best, System.nanoTime() - t4);
+            }
+            long rss = rss0 < 0 ? -1 : residentBytes() - rss0;
+            keep = null;
+
+            double restartMillis = (t2 - t1) / 1e6;
+            double firstScan = (double) (t3 - t2) / n;
+            double warmScan = (double) best / n;
+            System.out.println(String.format("| %30s | %11d | %14d | %10s | %11.1f | %16.3f | %15.3f | %11.2f |",
+                    store.getName(), n, heap, rss < 0 ? "n/a" : String.format("%.1f", rss / 1048576.0),
+                    restartMillis, firstScan, warmScan, 8.0 * n / best));
+            String id = Experiment.idOf(store.getName());
+            ResultsStore.record("bigarray", id, store.getName(), n, "heap", "B", heap);
+            if (rss >= 0) {
+                ResultsStore.record("bigarray", id, store.getName(), n, "rss", "B", rss);
+            }
+            ResultsStore.record("bigarray", id, store.getName(), n, "restart", "ms", restartMillis);
+            // a first scan of cached pages is not comparable with a cold one, so it gets its own metric
+            ResultsStore.record("bigarray", id, store.getName(), n, cold ? "coldScan" : "notColdScan", "ns/elem",
+                    firstScan);
+            ResultsStore.record("bigarray", id, store.getName(), n, "warmScan", "ns/elem", warmScan);
+        } finally {
+            keep = null;
+            RecordLayoutSuite.settleNativeMemory();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 148), 0).replace("0", "-"));
+    }
+}
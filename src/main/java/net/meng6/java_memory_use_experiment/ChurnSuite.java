@@ -0,0 +1,295 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * What each array experiment costs the collector while it is in use, not just in
+ * bytes: the suite keeps a live set of about `churn.liveMB` of instances of the
+ * structure (each holding `churn.n` elements), and replaces `churn.replace` of it per
+ * second, oldest instance first, as a cache or a window of recent events would. In
+ * the time left over the mutator runs a fixed compute kernel.
+ *
+ * * pauses: every `GarbageCollectorMXBean` notification during the run; p50, p99 and
+ *   max duration, and pause time per second of run. Beans reporting concurrent
+ *   cycles rather than pauses (`ZGC Cycles`, `Shenandoah Cycles`) are left out
+ * * mutator: kernel iterations per second against a run without live set or churn;
+ *   this also shows concurrent collector threads competing for the CPU
+ * * GC cost per live GB: pause milliseconds per second, divided by the live set in GB
+ *
+ * The structures are ranked by GC cost per live GB at the end. `int[N]` is one object
+ * the collector never traces into; `String[N]` of `String.format` results is `2N + 1`
+ * objects, each of them marked and, while young, copied.
+ *
+ * Use the same `-Xmx` and collector for results that are compared; the heap should
+ * be a few times the live set.
+ *
+ * ## Configuration
+ *
+ * * `-Dchurn.liveMB=256`: live set per structure, by deep size
+ * * `-Dchurn.n=1000`: elements per instance
+ * * `-Dchurn.replace=0.2`: share of the live set replaced per second
+ * * `-Dchurn.seconds=5`: run time per structure
+ * * `-Dchurn.experiments=`: comma-separated experiment ids, empty for all array experiments
+ */
+public class ChurnSuite {
+
+    private static final int MAX_PAUSES = 1 << 16;
+    private static final int KERNEL_ITERATIONS = 1000;
+
+    private final List<Experiment> experiments;
+    private final long liveBytes;
+    private final int n;
+    private final double replace;
+    private final int seconds;
+
+    // the live set under test, and the kernel's result, kept reachable
+    private static Object[] live;
+    private static long sink;
+
+    /**
+     * Durations of pauses reported while recording, in a preallocated array so that the
+     * listener adds no garbage of its own to the run.
+     */
+    private static final class Pauses implements NotificationListener {
+        private final long[] millis = new long[MAX_PAUSES];
+        private volatile boolean recording;
+        private int count;
+        private long total;
+
+        public void handleNotification(Notification notification, Object handback) {
+            if (!recording || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Cycles")) {
+                return;
+            }
+            synchronized (this) {
+                long duration = info.getGcInfo().getDuration();
+                if (count < millis.length) {
+                    millis[count] = duration;
+                }
+                count++;
+                total += duration;
+            }
+        }
+
+        synchronized void start() {
+            count = 0;
+            total = 0;
+            recording = true;
+        }
+
+        synchronized void stop() {
+            recording = false;
+        }
+
+        synchronized int getCount() {
+            return count;
+        }
+
+        synchronized long getTotal() {
+            return total;
+        }
+
+        /** duration at quantile `q` of the recorded pauses, 0 if there were none */
+        synchronized long quantile(double q) {
+            int recorded = Math.min(count, millis.length);
+            if (recorded == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(millis, recorded);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(q * recorded) - 1;
+            return sorted[Math.max(0, Math.min(recorded - 1, index))];
+        }
+    }
+
+    private static final class Result {
+        final Experiment experiment;
+        final double liveGB;
+        final double costPerLiveGB;
+
+        Result(Experiment experiment, double liveGB, double costPerLiveGB) {
+            this.experiment = experiment;
+            this.liveGB = liveGB;
+            this.costPerLiveGB = costPerLiveGB;
+        }
+    }
+
+    public ChurnSuite(List<Experiment> experiments, long liveBytes, int n, double replace, int seconds) {
+        this.experiments = experiments;
+        this.liveBytes = liveBytes;
+        this.n = n;
+        this.replace = replace;
+        this.seconds = seconds;
+    }
+
+    public static ChurnSuite fromSystemProperties(List<Experiment> experiments) {
+        String ids = System.getProperty("churn.experiments", "").trim();
+        List<Experiment> selected = new ArrayList<Experiment>();
+        if (ids.isEmpty()) {
+            selected.addAll(experiments);
+        } else {
+            List<String> wanted = Arrays.asList(ids.split("\\s*,\\s*"));
+            for (Experiment experiment : experiments) {
+                if (wanted.contains(experiment.getId())) {
+                    selected.add(experiment);
+                }
+            }
+            if (selected.size() != wanted.size()) {
+                throw new IllegalArgumentException("unknown experiment id in -Dchurn.experiments=" + ids);
+            }
+        }
+        return new ChurnSuite(selected,
+                Long.getLong("churn.liveMB", 256) << 20,
+                Integer.getInteger("churn.n", 1000),
+                Double.parseDouble(System.getProperty("churn.replace", "0.2")),
+                Integer.getInteger("churn.seconds", 5));
+    }
+
+    public void run() {
+        Pauses pauses = new Pauses();
+        List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter) {
+                ((NotificationEmitter) bean).addNotificationListener(pauses, null, null);
+                emitters.add((NotificationEmitter) bean);
+            }
+        }
+        try {
+            run(pauses);
+        } finally {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(pauses);
+                } catch (ListenerNotFoundException e) {
+                    // already gone
+                }
+            }
+        }
+    }
+
+    private void run(Pauses pauses) {
+        StringBuilder collectors = new StringBuilder();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectors.append(collectors.length() == 0 ? "" : ", ").append(bean.getName());
+        }
+        RecordLayoutSuite.settleNativeMemory();
+        double baseline = churn(null, 0, pauses);
+        System.out.println(String.format("collectors = %s, max heap = %d MB, live set = %d MB, N = %d, replaced = %.0f%%/s, %d s per row",
+                collectors, Runtime.getRuntime().maxMemory() >> 20, liveBytes >> 20, n, replace * 100, seconds));
+        System.out.println(String.format("mutator baseline without live set: %.0f kernel iterations/s", baseline));
+        printDivider();
+        System.out.println(String.format("| %75s | %9s | %8s | %10s | %6s | %7s | %7s | %7s | %10s | %9s | %12s |",
+                "structure", "instances", "live MB", "churn MB/s", "pauses", "p50 ms", "p99 ms", "max ms",
+                "pause ms/s", "mutator %", "ms/s per GB"));
+        printDivider();
+        List<Result> results = new ArrayList<Result>();
+        for (Experiment experiment : experiments) {
+            long instanceBytes = Math.max(1, ObjectSizes.deepSizeOf(experiment.create(n)));
+            int instances = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, liveBytes / instanceBytes));
+            double liveGB = (double) instanceBytes * instances / (1L << 30);
+            try {
+                live = new Object[instances];
+                for (int i = 0; i < instances; i++) {
+                    live[i] = experiment.create(n);
+                }
+                RecordLayoutSuite.settleNativeMemory();
+                double rate = churn(experiment, instances, pauses);
+                double pauseMillisPerSecond = (double) pauses.getTotal() / seconds;
+                double cost = pauseMillisPerSecond / liveGB;
+                double mutator = 100 * rate / baseline;
+                System.out.println(String.format("| %75s | %9d | %8.1f | %10.1f | %6d | %7d | %7d | %7d | %10.2f | %9.1f | %12.2f |",
+                        experiment.getName(), instances, liveGB * 1024, liveGB * 1024 * replace,
+                        pauses.getCount(), pauses.quantile(0.5), pauses.quantile(0.99), pauses.quantile(1),
+                        pauseMillisPerSecond, mutator, cost));
+                results.add(new Result(experiment, liveGB, cost));
+                String id = experiment.getId();
+                ResultsStore.record("churn", id, experiment.getName(), n, "pauseP99", "ms", pauses.quantile(0.99));
+                ResultsStore.record("churn", id, experiment.getName(), n, "pauseMax", "ms", pauses.quantile(1));
+                ResultsStore.record("churn", id, experiment.getName(), n, "pauseTime", "ms/s", pauseMillisPerSecond, false);
+                ResultsStore.record("churn", id, experiment.getName(), n, "mutator", "%", mutator, true);
+                ResultsStore.record("churn", id, experiment.getName(), n, "gcCostPerLiveGB", "ms/s/GB", cost);
+            } catch (OutOfMemoryError e) {
+                live = null;
+                System.out.println(String.format("| %75s | %9d | %s", experiment.getName(), instances,
+                        "OutOfMemoryError, raise -Xmx or lower -Dchurn.liveMB"));
+            } finally {
+                live = null;
+            }
+        }
+        printDivider();
+
+        Collections.sort(results, new Comparator<Result>() {
+            public int compare(Result a, Result b) {
+                return Double.compare(a.costPerLiveGB, b.costPerLiveGB);
+            }
+        });
+        System.out.println();
+        System.out.println("ranked by GC cost per live GB (pause ms per second per GB of live set):");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            System.out.println(String.format("%3d. %12.2f  %s", i + 1, result.costPerLiveGB, result.experiment.getName()));
+        }
+    }
+
+    /**
+     * Run for `churn.seconds`, replacing instances of `experiment` in `live` at the
+     * configured rate and running the kernel in between.
+     *
+     * @return kernel iterations per second
+     */
+    private double churn(Experiment experiment, int instances, Pauses pauses) {
+        double replacementsPerNano = replace * instances / 1e9;
+        long replaced = 0;
+        long iterations = 0;
+        int next = 0;
+        long x = 0x9E3779B97F4A7C15L;
+        pauses.start();
+        long t0 = System.nanoTime();
+        long end = t0 + seconds * 1000000000L;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            long due = (long) ((now - t0) * replacementsPerNano);
+            while (replaced < due) {
+                live[next] = experiment.create(n);
+                next = next + 1 == instances ? 0 : next + 1;
+                replaced++;
+            }
+            for (int k = 0; k < KERNEL_ITERATIONS; k++) {
+                x ^= x << 13;
+                x ^= x >>> 7;
+                x ^= x << 17;
+            }
+            iterations += KERNEL_ITERATIONS;
+        }
+        long elapsed = System.nanoTime() - t0;
+        pauses.stop();
+        sink += x;
+        return iterations * 1e9 / elapsed;
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 194), 0).replace("0", "-"));
+    }
+}
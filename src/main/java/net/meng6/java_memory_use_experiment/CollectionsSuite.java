@@ -0,0 +1,252 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.primitive.IntArrayList;
+import net.meng6.java_memory_use_experiment.primitive.IntIntHashMap;
+import net.meng6.java_memory_use_experiment.primitive.LongArrayList;
+import net.meng6.java_memory_use_experiment.primitive.LongLongHashMap;
+import net.meng6.java_memory_use_experiment.primitive.ObjectHashSet;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * Footprint of `java.util` collections next to the primitive-specialized,
+ * open-addressing containers in `net.meng6.java_memory_use_experiment.primitive`.
+ *
+ * Each group starts with the usual JDK container (the baseline) followed by
+ * alternatives holding the same N entries. `m_deep` is the retained size of the
+ * whole container including keys and values; `m1 - m2` is what the meter saw while
+ * filling it, which for growing containers includes the discarded smaller tables.
+ *
+ * ## Configuration
+ *
+ * * `-Dcollections.n=1000,100000`: comma-separated entry counts
+ */
+public class CollectionsSuite {
+
+    private final MemoryMeter meter;
+    private final int[] ns;
+
+    // keeps the structure under test reachable until the second sample
+    private static Object keep;
+
+    public CollectionsSuite(MemoryMeter meter, int[] ns) {
+        this.meter = meter;
+        this.ns = ns;
+    }
+
+    public static CollectionsSuite fromSystemProperties(MemoryMeter meter) {
+        String[] values = System.getProperty("collections.n", "1000,100000").split(",");
+        int[] ns = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Integer.parseInt(values[i].trim());
+        }
+        return new CollectionsSuite(meter, ns);
+    }
+
+    /**
+     * Distinct, well spread keys outside the `Long.valueOf` cache.
+     */
+    static long key(int i) {
+        return 1280 + i * 2654435761L;
+    }
+
+    public static List<List<Experiment>> groups() {
+        List<List<Experiment>> groups = new ArrayList<List<Experiment>>();
+
+        List<Experiment> longMaps = new ArrayList<Experiment>();
+        longMaps.add(Experiment.of("HashMap<Long,Long> (grown, load factor 0.75)", n -> {
+            HashMap<Long, Long> map = new HashMap<Long, Long>();
+            for (int i = 0; i < n; i++) {
+                map.put(key(i), (long) 1280 + i);
+            }
+            return map;
+        }));
+        for (final float loadFactor : new float[] {0.5f, 0.9f}) {
+            longMaps.add(Experiment.of(String.format("HashMap<Long,Long> (presized, load factor %.2f)", loadFactor), n -> {
+                HashMap<Long, Long> map = new HashMap<Long, Long>((int) (n / loadFactor) + 1, loadFactor);
+                for (int i = 0; i < n; i++) {
+                    map.put(key(i), (long) 1280 + i);
+                }
+                return map;
+            }));
+        }
+        longMaps.add(Experiment.of("TreeMap<Long,Long>", n -> {
+            TreeMap<Long, Long> map = new TreeMap<Long, Long>();
+            for (int i = 0; i < n; i++) {
+                map.put(key(i), (long) 1280 + i);
+            }
+            return map;
+        }));
+        longMaps.add(Experiment.of("ConcurrentHashMap<Long,Long> (grown)", n -> {
+            ConcurrentHashMap<Long, Long> map = new ConcurrentHashMap<Long, Long>();
+            for (int i = 0; i < n; i++) {
+                map.put(key(i), (long) 1280 + i);
+            }
+            return map;
+        }));
+        longMaps.add(Experiment.of("LongLongHashMap (grown, load factor 0.75)", n -> {
+            LongLongHashMap map = new LongLongHashMap();
+            for (int i = 0; i < n; i++) {
+                map.put(key(i), 1280 + i);
+            }
+            return map;
+        }));
+        for (final float loadFactor : new float[] {0.5f, 0.9f}) {
+            longMaps.add(Experiment.of(String.format("LongLongHashMap (presized, load factor %.2f)", loadFactor), n -> {
+                LongLongHashMap map = new LongLongHashMap(n, loadFactor, 0);
+                for (int i = 0; i < n; i++) {
+                    map.put(key(i), 1280 + i);
+                }
+                return map;
+            }));
+        }
+        groups.add(longMaps);
+
+        List<Experiment> intMaps = new ArrayList<Experiment>();
+        intMaps.add(Experiment.of("HashMap<Integer,Integer> (grown)", n -> {
+            HashMap<Integer, Integer> map = new HashMap<Integer, Integer>();
+            for (int i = 0; i < n; i++) {
+                map.put((int) key(i), 128 + i);
+            }
+            return map;
+        }));
+        intMaps.add(Experiment.of("IntIntHashMap (grown)", n -> {
+            IntIntHashMap map = new IntIntHashMap();
+            for (int i = 0; i < n; i++) {
+                map.put((int) key(i), 128 + i);
+            }
+            return map;
+        }));
+        groups.add(intMaps);
+
+        List<Experiment> intLists = new ArrayList<Experiment>();
+        intLists.add(Experiment.of("ArrayList<Integer> (grown)", n -> {
+            ArrayList<Integer> list = new ArrayList<Integer>();
+            for (int i = 0; i < n; i++) {
+                list.add(128 + i);
+            }
+            return list;
+        }));
+        intLists.add(Experiment.of("ArrayList<Integer> (trimToSize)", n -> {
+            ArrayList<Integer> list = new ArrayList<Integer>();
+            for (int i = 0; i < n; i++) {
+                list.add(128 + i);
+            }
+            list.trimToSize();
+            return list;
+        }));
+        intLists.add(Experiment.of("IntArrayList (grown)", n -> {
+            IntArrayList list = new IntArrayList();
+            for (int i = 0; i < n; i++) {
+                list.add(128 + i);
+            }
+            return list;
+        }));
+        intLists.add(Experiment.of("IntArrayList (trimToSize)", n -> {
+            IntArrayList list = new IntArrayList();
+            for (int i = 0; i < n; i++) {
+                list.add(128 + i);
+            }
+            list.trimToSize();
+            return list;
+        }));
+        groups.add(intLists);
+
+        List<Experiment> longLists = new ArrayList<Experiment>();
+        longLists.add(Experiment.of("ArrayList<Long> (grown)", n -> {
+            ArrayList<Long> list = new ArrayList<Long>();
+            for (int i = 0; i < n; i++) {
+                list.add(key(i));
+            }
+            return list;
+        }));
+        longLists.add(Experiment.of("LongArrayList (grown)", n -> {
+            LongArrayList list = new LongArrayList();
+            for (int i = 0; i < n; i++) {
+                list.add(key(i));
+            }
+            return list;
+        }));
+        groups.add(longLists);
+
+        List<Experiment> stringSets = new ArrayList<Experiment>();
+        stringSets.add(Experiment.of("HashSet<String> (grown)", n -> {
+            HashSet<String> set = new HashSet<String>();
+            for (int i = 0; i < n; i++) {
+                set.add(String.format("abc%07d", i));
+            }
+            return set;
+        }));
+        for (final float loadFactor : new float[] {0.5f, 0.75f}) {
+            stringSets.add(Experiment.of(String.format("ObjectHashSet<String> (presized, load factor %.2f)", loadFactor), n -> {
+                ObjectHashSet<String> set = new ObjectHashSet<String>(n, loadFactor);
+                for (int i = 0; i < n; i++) {
+                    set.add(String.format("abc%07d", i));
+                }
+                return set;
+            }));
+        }
+        groups.add(stringSets);
+
+        return groups;
+    }
+
+    public void run() {
+        List<List<Experiment>> groups = groups();
+        printHeader();
+        for (int n : ns) {
+            for (List<Experiment> group : groups) {
+                long baseline = 0;
+                for (Experiment experiment : group) {
+                    // load classes and compile the fill loop, so they are not billed to the container
+                    keep = experiment.create(n);
+                    keep = null;
+                    long m1 = meter.sample();
+                    keep = experiment.create(n);
+                    long m2 = meter.sample();
+                    long m_deep = ObjectSizes.deepSizeOf(keep);
+                    keep = null;
+                    if (baseline == 0) {
+                        baseline = m_deep;
+                    }
+                    printRow(experiment.getName(), n, meter.used(m1, m2), m_deep, baseline);
+                    ResultsStore.record("collections", experiment.getId(), experiment.getName(), n,
+                            "m1 - m2", "B", meter.used(m1, m2));
+                    ResultsStore.record("collections", experiment.getId(), experiment.getName(), n,
+                            "m_deep", "B", m_deep);
+                }
+                printDivider();
+            }
+        }
+    }
+
+    private void printHeader() {
+        System.out.println(String.format("meter = %s (%s)", meter.getName(), meter.getDescription()));
+        printDivider();
+        System.out.println(String.format(
+                "| %75s | %9s | %12s %12s | %14s | %16s |",
+                "collection", "N", "m1 - m2", "m_deep", "m_deep / N", "vs. first in group"));
+        printDivider();
+    }
+
+    private static void printRow(String name, int n, long used, long m_deep, long baseline) {
+        System.out.println(String.format(
+                "| %75s | %9d | %12d %12d | %14.2f | %16s |",
+                name, n, used, m_deep, (double) m_deep / n,
+                baseline == 0 ? "?" : String.format("%+.1f%%", 100.0 * (m_deep - baseline) / baseline)));
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 155), 0).replace("0", "-"));
+    }
+}
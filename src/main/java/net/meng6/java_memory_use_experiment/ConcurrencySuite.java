@@ -0,0 +1,356 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+import net.meng6.java_memory_use_experiment.concurrent.Counters;
+import net.meng6.java_memory_use_experiment.concurrent.StripedLockMap;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * What the extra bytes of the concurrent structures buy: footprint against throughput
+ * with 1 to nCPU threads updating at once, for
+ *
+ * * one counter shared by all threads: `AtomicLong` against `LongAdder`, which grows a
+ *   padded cell per contending thread
+ * * one counter per thread, thread t updating slot t: counter objects allocated next
+ *   to each other, manually padded or `@Contended` (see `Counters`); `AtomicLongArray`
+ *   and `long[]` with a `VarHandle`, with adjacent slots and with slots 16 longs
+ *   (two cache lines) apart
+ * * a map of counters: `ConcurrentHashMap` against a `StripedLockMap`, each thread
+ *   incrementing random keys
+ *
+ * The footprint is the `ObjectSizes.deepSizeOf` of the structure after the run, since
+ * `LongAdder` and `ConcurrentHashMap` only grow their contention cells when contended.
+ * Counters are checked against the number of updates made.
+ *
+ * With one thread every row is contention free; the rows that lose throughput as
+ * threads are added, while their footprint stays small, are the ones sharing a cache
+ * line. `@Contended` needs `-XX:-RestrictContended` (set by `gradle run`), otherwise
+ * its rows behave like the plain counters; the header says which.
+ *
+ * ## Configuration
+ *
+ * * `-Dconcurrent.threads=1,2,4,..,nCPU`: comma-separated thread counts
+ * * `-Dconcurrent.millis=500`: time per measurement
+ * * `-Dconcurrent.keys=4096`: keys of the maps
+ * * `-Dconcurrent.stripes=16`: stripes of the `StripedLockMap`
+ */
+public class ConcurrencySuite {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // updates between two checks of the stop flag
+    private static final int BATCH = 1024;
+    // slot distance of the padded arrays, 2 x 64B so that adjacent-line prefetch does not pair them
+    private static final int STRIDE = 16;
+
+    private final int[] threads;
+    private final long millis;
+    private final int keys;
+    private final int stripes;
+
+    private interface Worker {
+        void run(Object structure, int thread, int updates);
+    }
+
+    private static class Case {
+        final String name;
+        final IntFunction<Object> create;
+        final Worker worker;
+        // sum of the counters, to check against the updates made, or null
+        final ToLongFunction<Object> count;
+
+        Case(String name, IntFunction<Object> create, Worker worker, ToLongFunction<Object> count) {
+            this.name = name;
+            this.create = create;
+            this.worker = worker;
+            this.count = count;
+        }
+    }
+
+    public ConcurrencySuite(int[] threads, long millis, int keys, int stripes) {
+        this.threads = threads;
+        this.millis = millis;
+        this.keys = keys;
+        this.stripes = stripes;
+    }
+
+    public static ConcurrencySuite fromSystemProperties() {
+        String property = System.getProperty("concurrent.threads");
+        int[] threads;
+        if (property == null) {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            List<Integer> counts = new ArrayList<Integer>();
+            for (int t = 1; t < cpus; t *= 2) {
+                counts.add(t);
+            }
+            counts.add(cpus);
+            threads = new int[counts.size()];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = counts.get(i);
+            }
+        } else {
+            String[] values = property.split(",");
+            threads = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                threads[i] = Integer.parseInt(values[i].trim());
+            }
+        }
+        return new ConcurrencySuite(threads,
+                Long.getLong("concurrent.millis", 500),
+                Integer.getInteger("concurrent.keys", 4096),
+                Integer.getInteger("concurrent.stripes", 16));
+    }
+
+    List<Case> cases() {
+        final Long[] boxedKeys = new Long[keys];
+        for (int k = 0; k < keys; k++) {
+            boxedKeys[k] = 1280 + k * 2654435761L;
+        }
+        List<Case> cases = new ArrayList<Case>();
+
+        cases.add(new Case("AtomicLong, shared", t -> new AtomicLong(), (s, thread, updates) -> {
+            AtomicLong counter = (AtomicLong) s;
+            for (int i = 0; i < updates; i++) {
+                counter.incrementAndGet();
+            }
+        }, s -> ((AtomicLong) s).get()));
+        cases.add(new Case("LongAdder, shared", t -> new LongAdder(), (s, thread, updates) -> {
+            LongAdder counter = (LongAdder) s;
+            for (int i = 0; i < updates; i++) {
+                counter.increment();
+            }
+        }, s -> ((LongAdder) s).sum()));
+
+        cases.add(new Case("Counters.Plain[T], adjacent", t -> {
+            Counters.Plain[] counters = new Counters.Plain[t];
+            for (int i = 0; i < t; i++) {
+                counters[i] = new Counters.Plain();
+            }
+            return counters;
+        }, (s, thread, updates) -> {
+            Counters.Plain counter = ((Counters.Plain[]) s)[thread];
+            for (int i = 0; i < updates; i++) {
+                counter.incrementAndGet();
+            }
+        }, s -> {
+            long sum = 0;
+            for (Counters.Plain counter : (Counters.Plain[]) s) {
+                sum += counter.get();
+            }
+            return sum;
+        }));
+        cases.add(new Case("Counters.Padded[T], 56B padding", t -> {
+            Counters.Padded[] counters = new Counters.Padded[t];
+            for (int i = 0; i < t; i++) {
+                counters[i] = new Counters.Padded();
+            }
+            return counters;
+        }, (s, thread, updates) -> {
+            Counters.Padded counter = ((Counters.Padded[]) s)[thread];
+            for (int i = 0; i < updates; i++) {
+                counter.incrementAndGet();
+            }
+        }, s -> {
+            long sum = 0;
+            for (Counters.Padded counter : (Counters.Padded[]) s) {
+                sum += counter.get();
+            }
+            return sum;
+        }));
+        cases.add(new Case("Counters.Contended[T], @Contended", t -> {
+            Counters.Contended[] counters = new Counters.Contended[t];
+            for (int i = 0; i < t; i++) {
+                counters[i] = new Counters.Contended();
+            }
+            return counters;
+        }, (s, thread, updates) -> {
+            Counters.Contended counter = ((Counters.Contended[]) s)[thread];
+            for (int i = 0; i < updates; i++) {
+                counter.incrementAndGet();
+            }
+        }, s -> {
+            long sum = 0;
+            for (Counters.Contended counter : (Counters.Contended[]) s) {
+                sum += counter.get();
+            }
+            return sum;
+        }));
+
+        for (final int stride : new int[] {1, STRIDE}) {
+            String slots = stride == 1 ? "adjacent slots" : "slots " + stride + " apart";
+            cases.add(new Case("AtomicLongArray(" + (stride == 1 ? "T" : stride + " T") + "), " + slots,
+                    t -> new AtomicLongArray(t * stride), (s, thread, updates) -> {
+                AtomicLongArray array = (AtomicLongArray) s;
+                int slot = thread * stride;
+                for (int i = 0; i < updates; i++) {
+                    array.incrementAndGet(slot);
+                }
+            }, s -> {
+                AtomicLongArray array = (AtomicLongArray) s;
+                long sum = 0;
+                for (int i = 0; i < array.length(); i++) {
+                    sum += array.get(i);
+                }
+                return sum;
+            }));
+            cases.add(new Case("long[" + (stride == 1 ? "T" : stride + " T") + "] + VarHandle, " + slots,
+                    t -> new long[t * stride], (s, thread, updates) -> {
+                long[] array = (long[]) s;
+                int slot = thread * stride;
+                for (int i = 0; i < updates; i++) {
+                    LONGS.getAndAdd(array, slot, 1L);
+                }
+            }, s -> {
+                long sum = 0;
+                for (long value : (long[]) s) {
+                    sum += value;
+                }
+                return sum;
+            }));
+        }
+
+        cases.add(new Case("ConcurrentHashMap<Long, Long>(" + keys + " keys)", t -> {
+            ConcurrentHashMap<Long, Long> map = new ConcurrentHashMap<Long, Long>();
+            for (Long key : boxedKeys) {
+                map.put(key, 0L);
+            }
+            return map;
+        }, (s, thread, updates) -> {
+            @SuppressWarnings("unchecked")
+            ConcurrentHashMap<Long, Long> map = (ConcurrentHashMap<Long, Long>) s;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < updates; i++) {
+                map.merge(boxedKeys[random.nextInt(boxedKeys.length)], 1L, Long::sum);
+            }
+        }, s -> {
+            long sum = 0;
+            for (Object value : ((ConcurrentHashMap<?, ?>) s).values()) {
+                sum += (Long) value;
+            }
+            return sum;
+        }));
+        cases.add(new Case("StripedLockMap<Long, Long>(" + keys + " keys, " + stripes + " stripes)", t -> {
+            StripedLockMap<Long, Long> map = new StripedLockMap<Long, Long>(stripes);
+            for (Long key : boxedKeys) {
+                map.put(key, 0L);
+            }
+            return map;
+        }, (s, thread, updates) -> {
+            @SuppressWarnings("unchecked")
+            StripedLockMap<Long, Long> map = (StripedLockMap<Long, Long>) s;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < updates; i++) {
+                map.merge(boxedKeys[random.nextInt(boxedKeys.length)], 1L, Long::sum);
+            }
+        }, s -> {
+            @SuppressWarnings("unchecked")
+            StripedLockMap<Long, Long> map = (StripedLockMap<Long, Long>) s;
+            long sum = 0;
+            for (Long key : boxedKeys) {
+                sum += map.get(key);
+            }
+            return sum;
+        }));
+        return cases;
+    }
+
+    public void run() throws InterruptedException {
+        long plain = ObjectSizes.sizeOf(new Counters.Plain());
+        long contended = ObjectSizes.sizeOf(new Counters.Contended());
+        System.out.println(String.format("availableProcessors = %d, Counters.Plain = %d B, Counters.Contended = %d B%s",
+                Runtime.getRuntime().availableProcessors(), plain, contended,
+                contended > plain ? "" : " (@Contended ignored, run with -XX:-RestrictContended)"));
+        printDivider();
+        System.out.println(String.format("| %60s | %7s | %10s | %14s | %16s | %12s |",
+                "structure", "threads", "bytes", "updates/s", "updates/s/thread", "vs 1 thread"));
+        printDivider();
+        for (Case c : cases()) {
+            // compile the update loop before the first measurement
+            measure(c.create.apply(1), c, 1, Math.max(1, millis / 2));
+            double single = 0;
+            for (int t : threads) {
+                Object structure = c.create.apply(t);
+                double rate = measure(structure, c, t, millis);
+                if (t == 1) {
+                    single = rate;
+                }
+                long bytes = ObjectSizes.deepSizeOf(structure);
+                System.out.println(String.format("| %60s | %7d | %10d | %14.0f | %16.0f | %12s |",
+                        c.name, t, bytes, rate, rate / t,
+                        single == 0 ? "" : String.format("%.2f", rate / t / single)));
+                String id = Experiment.idOf(c.name);
+                ResultsStore.record("concurrent", id, c.name, t, "footprint", "B", bytes);
+                ResultsStore.record("concurrent", id, c.name, t, "updates", "ops/s", rate);
+            }
+            printDivider();
+        }
+    }
+
+    /**
+     * Runs `threads` threads updating `structure` for `millis`.
+     *
+     * @return updates per second, all threads together
+     */
+    private static double measure(final Object structure, final Case c, int threads, long millis)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        // only read by the workers until the end, so it stays in every core's cache
+        final AtomicBoolean stop = new AtomicBoolean();
+        final long[] updates = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                long n = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    c.worker.run(structure, thread, BATCH);
+                    n += BATCH;
+                }
+                updates[thread] = n;
+            }, "concurrent-" + t);
+            workers[t].start();
+        }
+        long t1 = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - t1;
+
+        long total = 0;
+        for (long n : updates) {
+            total += n;
+        }
+        if (c.count != null && c.count.applyAsLong(structure) != total) {
+            System.err.println(c.name + ": counted " + c.count.applyAsLong(structure) + " of " + total + " updates");
+        }
+        return total * 1e9 / elapsed;
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 135), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,141 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.DeepSizeWalker;
+
+/**
+ * ## Summary
+ *
+ * Time taken by `DeepSizeWalker` to size production-scale graphs:
+ *
+ * * `BigDecimal[N] and N BigDecimal`: wide, two levels below the array
+ * * `LinkedList<Long>` of N elements: N nodes deep, which overflows the stack of a recursive walk
+ * * `HashMap<Integer, String>` of N entries
+ *
+ * each walked with visited objects tracked in an `IdentityHashMap`, by address on one
+ * thread, and by address with wide arrays split across a `ForkJoinPool`. All three
+ * must agree on the bytes and objects found.
+ *
+ * ## Configuration
+ *
+ * * `-Ddeepsize.n=1000000`: comma-separated element counts
+ * * `-Ddeepsize.parallelism=<available processors>`: threads of the pool
+ */
+public class DeepSizeSuite {
+
+    private final int[] ns;
+    private final int parallelism;
+
+    private static class Graph {
+        final String name;
+        final IntFunction<Object> build;
+
+        Graph(String name, IntFunction<Object> build) {
+            this.name = name;
+            this.build = build;
+        }
+    }
+
+    public DeepSizeSuite(int[] ns, int parallelism) {
+        this.ns = ns;
+        this.parallelism = parallelism;
+    }
+
+    public static DeepSizeSuite fromSystemProperties() {
+        String[] values = System.getProperty("deepsize.n", "1000000").split(",");
+        int[] ns = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Integer.parseInt(values[i].trim());
+        }
+        return new DeepSizeSuite(ns, Integer.getInteger("deepsize.parallelism", Runtime.getRuntime().availableProcessors()));
+    }
+
+    static List<Graph> graphs() {
+        List<Graph> graphs = new ArrayList<Graph>();
+        graphs.add(new Graph("BigDecimal[N] and N BigDecimal", n -> {
+            BigDecimal[] array = new BigDecimal[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = BigDecimal.valueOf(1280L + i, 2);
+            }
+            return array;
+        }));
+        graphs.add(new Graph("LinkedList<Long> of N", n -> {
+            LinkedList<Long> list = new LinkedList<Long>();
+            for (int i = 0; i < n; i++) {
+                list.add(Long.valueOf(1280L + i));
+            }
+            return list;
+        }));
+        graphs.add(new Graph("HashMap<Integer, String> of N", n -> {
+            Map<Integer, String> map = new HashMap<Integer, String>();
+            for (int i = 0; i < n; i++) {
+                map.put(Integer.valueOf(128 + i), String.format("abc%07d", i));
+            }
+            return map;
+        }));
+        return graphs;
+    }
+
+    public void run() {
+        DeepSizeWalker identity = new DeepSizeWalker();
+        identity.setIdentityVisited(true);
+        DeepSizeWalker address = new DeepSizeWalker();
+        DeepSizeWalker parallel = new DeepSizeWalker();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        parallel.setPool(pool, 1 << 16);
+
+        printDivider();
+        System.out.println(String.format("| %40s | %10s | %36s | %14s %12s | %9s | %8s |",
+                "graph", "N", "visited set", "bytes", "objects", "walks", "ms"));
+        printDivider();
+        for (int n : ns) {
+            for (Graph graph : graphs()) {
+                Object root;
+                try {
+                    root = graph.build.apply(n);
+                } catch (OutOfMemoryError e) {
+                    System.out.println(String.format("| %40s | %10d | %s", graph.name, n, "OutOfMemoryError: " + e.getMessage()));
+                    continue;
+                }
+                DeepSizeWalker.DeepSize expected = measure(graph.name, n, "IdentityHashMap", identity, root);
+                check(expected, measure(graph.name, n, "address, 1 thread", address, root));
+                check(expected, measure(graph.name, n, "address, ForkJoinPool(" + parallelism + ")", parallel, root));
+                root = null;
+            }
+            printDivider();
+        }
+        pool.shutdown();
+    }
+
+    private static DeepSizeWalker.DeepSize measure(String name, int n, String visited, DeepSizeWalker walker, Object root) {
+        // one walk to load and compile, one timed
+        walker.walk(root);
+        long t1 = System.nanoTime();
+        DeepSizeWalker.DeepSize size = walker.walk(root);
+        long t2 = System.nanoTime();
+        System.out.println(String.format("| %40s | %10d | %36s | %14d %12d | %9d | %8.1f |",
+                name, n, visited, size.getBytes(), size.getObjects(), size.getAttempts(), (t2 - t1) / 1e6));
+        ResultsStore.record("deepsize", Experiment.idOf(name + " " + visited), name + ", " + visited, n,
+                "walk", "ns/elem", (double) (t2 - t1) / Math.max(1, size.getObjects()));
+        return size;
+    }
+
+    private static void check(DeepSizeWalker.DeepSize expected, DeepSizeWalker.DeepSize actual) {
+        if (expected.getBytes() != actual.getBytes() || expected.getObjects() != actual.getObjects()) {
+            System.out.println("  ! does not match the IdentityHashMap walk: " + expected + " vs " + actual);
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 155), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,93 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * ## Summary
+ *
+ * A data structure whose memory use is measured: a name for the table and a
+ * factory that builds an instance holding `n` elements.
+ *
+ * `create(n)` is called between two `MemoryMeter` samples, so everything it
+ * allocates is attributed to the structure.
+ *
+ * Experiments are grouped into suites by `ExperimentProvider`s, which
+ * `ExperimentRegistry` finds through `ServiceLoader`.
+ */
+public interface Experiment {
+
+    String getName();
+
+    Object create(int n);
+
+    /**
+     * True for a single variable or object rather than a structure of `n` elements;
+     * it is measured at N = 1 whatever N is.
+     */
+    default boolean isScalar() {
+        return false;
+    }
+
+    /**
+     * Name reduced to letters, digits and single underscores, e.g. `Integer_N_and_N_Integer`,
+     * for use on command lines and as a JMH parameter.
+     */
+    default String getId() {
+        return idOf(getName());
+    }
+
+    static String idOf(String name) {
+        return name.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    static Experiment of(final String name, final IntFunction<Object> factory) {
+        return new Experiment() {
+            public String getName() {
+                return name;
+            }
+
+            public Object create(int n) {
+                return factory.apply(n);
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    /**
+     * A single object, e.g. `Experiment.scalar("Long", () -> Long.valueOf(123456789))`.
+     */
+    static Experiment scalar(final String name, final Supplier<Object> factory) {
+        return new Experiment() {
+            public String getName() {
+                return name;
+            }
+
+            public Object create(int n) {
+                return factory.get();
+            }
+
+            public boolean isScalar() {
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    /**
+     * A local variable of a primitive type, which takes no heap at all. `create` hands
+     * out `boxed`, allocated here, so the meter reads nothing, and the sizes are those of
+     * the wrapper the value would need on the heap.
+     */
+    static Experiment primitive(String name, final Object boxed) {
+        return scalar(name, () -> boxed);
+    }
+}
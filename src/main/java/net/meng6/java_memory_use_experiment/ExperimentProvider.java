@@ -0,0 +1,25 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.List;
+
+/**
+ * ## Summary
+ *
+ * A suite of experiments, found by `ExperimentRegistry` through `ServiceLoader`. To
+ * measure classes of your own, implement this in a class with a public no-argument
+ * constructor, list it in
+ *
+ *     META-INF/services/net.meng6.java_memory_use_experiment.ExperimentProvider
+ *
+ * of a jar on the classpath, and select it with `JavaMemoryUseExperiment run --include
+ * <suite>/*`. The built-in suites are `variables` and `arrays`, the rows of the table.
+ */
+public interface ExperimentProvider {
+
+    /**
+     * Name of the suite in include and exclude patterns: letters, digits, `_` and `-`.
+     */
+    String getSuite();
+
+    List<Experiment> getExperiments();
+}
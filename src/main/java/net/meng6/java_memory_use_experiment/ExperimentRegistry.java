@@ -0,0 +1,120 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * ## Summary
+ *
+ * All experiments of all `ExperimentProvider`s on the classpath, by suite, in the
+ * order `ServiceLoader` finds them; the built-in suites come first.
+ *
+ * `select` picks experiments by glob patterns (`*` any characters, `?` one), matched
+ * against `<suite>/<id>`, or only against the id if the pattern has no `/`:
+ *
+ *     arrays/*           every array row
+ *     *String*           rows with String in the id, in any suite
+ *     variables/Big*     BigInteger and BigDecimal
+ *
+ * An experiment is selected if it matches an include pattern (or there are none) and
+ * no exclude pattern.
+ */
+public class ExperimentRegistry {
+
+    private final Map<String, List<Experiment>> suites;
+
+    public ExperimentRegistry(Map<String, List<Experiment>> suites) {
+        this.suites = suites;
+    }
+
+    public static ExperimentRegistry load() {
+        Map<String, List<Experiment>> suites = new LinkedHashMap<String, List<Experiment>>();
+        for (ExperimentProvider provider : ServiceLoader.load(ExperimentProvider.class)) {
+            List<Experiment> experiments = suites.get(provider.getSuite());
+            if (experiments == null) {
+                experiments = new ArrayList<Experiment>();
+                suites.put(provider.getSuite(), experiments);
+            }
+            Set<String> ids = new HashSet<String>();
+            for (Experiment experiment : experiments) {
+                ids.add(experiment.getId());
+            }
+            for (Experiment experiment : provider.getExperiments()) {
+                if (!ids.add(experiment.getId())) {
+                    throw new IllegalStateException("two experiments " + provider.getSuite() + "/" + experiment.getId()
+                            + ", from " + provider.getClass().getName());
+                }
+                experiments.add(experiment);
+            }
+        }
+        return new ExperimentRegistry(suites);
+    }
+
+    public List<String> getSuites() {
+        return new ArrayList<String>(suites.keySet());
+    }
+
+    /**
+     * @return the experiments of `suite`, empty if there is no such suite
+     */
+    public List<Experiment> getExperiments(String suite) {
+        List<Experiment> experiments = suites.get(suite);
+        return experiments == null ? Collections.<Experiment>emptyList() : Collections.unmodifiableList(experiments);
+    }
+
+    /**
+     * @return the selected experiments by suite, suites without any left out
+     */
+    public Map<String, List<Experiment>> select(List<String> includes, List<String> excludes) {
+        List<Pattern> include = compile(includes);
+        List<Pattern> exclude = compile(excludes);
+        Map<String, List<Experiment>> selected = new LinkedHashMap<String, List<Experiment>>();
+        for (Map.Entry<String, List<Experiment>> suite : suites.entrySet()) {
+            List<Experiment> experiments = new ArrayList<Experiment>();
+            for (Experiment experiment : suite.getValue()) {
+                String path = suite.getKey() + "/" + experiment.getId();
+                if ((include.isEmpty() || matchesAny(include, path)) && !matchesAny(exclude, path)) {
+                    experiments.add(experiment);
+                }
+            }
+            if (!experiments.isEmpty()) {
+                selected.put(suite.getKey(), experiments);
+            }
+        }
+        return selected;
+    }
+
+    private static List<Pattern> compile(List<String> globs) {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        for (String glob : globs) {
+            StringBuilder regex = new StringBuilder(glob.contains("/") ? "" : "[^/]*/");
+            for (char c : glob.toCharArray()) {
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            patterns.add(Pattern.compile(regex.toString()));
+        }
+        return patterns;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String path) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,235 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+
+/**
+ * ## Summary
+ *
+ * Measures the array rows under every combination of a grid of JVM flags, each
+ * experiment in a child JVM of its own (see `ForkedRunner`), and pivots the result:
+ * one row per structure, one column of `m_deep / N` per flag combination.
+ *
+ * The axes of the grid are heap size, compressed oops, compressed class pointers,
+ * object alignment, compact object headers and collector. An empty value leaves the
+ * flag at the JVM's default, which is what shows the effect of the heap size: past
+ * about 32 GB the JVM turns compressed oops off by itself, and every reference field
+ * and array slot doubles from 4 to 8 bytes.
+ *
+ * Before measuring, every combination is started once with `-XX:+PrintFlagsFinal
+ * -version`. That gives the flags the JVM actually ended up with, printed in the
+ * column legend, and skips combinations this JVM rejects (e.g. Shenandoah on a
+ * build without it, compact headers before JDK 24).
+ *
+ * ## Configuration
+ *
+ * * `-Dmatrix.heap=-Xmx1g,-Xmx40g`: `-Xmx` values
+ * * `-Dmatrix.oops=`: `+`, `-` or empty for `UseCompressedOops`
+ * * `-Dmatrix.klass=`: `+`, `-` or empty for `UseCompressedClassPointers`
+ * * `-Dmatrix.align=8,16`: `ObjectAlignmentInBytes`, empty for the default
+ * * `-Dmatrix.compactHeaders=`: `+`, `-` or empty for `UseCompactObjectHeaders` (JDK 24+)
+ * * `-Dmatrix.gc=Serial,G1`: `Serial`, `Parallel`, `G1`, `Z`, `Shenandoah`, or empty
+ * * `-Dmatrix.configs=`: `;`-separated explicit flag sets, replacing the grid above
+ * * `-Dmatrix.jvmArgs=-Xms64m`: flags added to every combination
+ *
+ * `-Dfork.count` and `-Dfork.timeoutSeconds` work as for `ForkedRunner`.
+ */
+public class FlagMatrix {
+
+    private final List<List<String>> configs;
+    private final List<String> jvmArgs;
+    private final int forks;
+    private final long timeoutSeconds;
+
+    /**
+     * One flag combination, and what the JVM made of it.
+     */
+    static class Column {
+        final String label;
+        final List<String> flags;
+        String effective;
+        String rejected;
+
+        Column(String label, List<String> flags) {
+            this.label = label;
+            this.flags = flags;
+        }
+    }
+
+    public FlagMatrix(List<List<String>> configs, List<String> jvmArgs, int forks, long timeoutSeconds) {
+        this.configs = configs;
+        this.jvmArgs = jvmArgs;
+        this.forks = forks;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public static FlagMatrix fromSystemProperties() {
+        List<List<String>> configs = new ArrayList<List<String>>();
+        String explicit = System.getProperty("matrix.configs", "").trim();
+        if (!explicit.isEmpty()) {
+            for (String config : explicit.split(";")) {
+                configs.add(split(config));
+            }
+        } else {
+            configs.add(new ArrayList<String>());
+            configs = cross(configs, values("matrix.heap", "-Xmx1g,-Xmx40g"), v -> v);
+            configs = cross(configs, values("matrix.oops", ""), v -> "-XX:" + v + "UseCompressedOops");
+            configs = cross(configs, values("matrix.klass", ""), v -> "-XX:" + v + "UseCompressedClassPointers");
+            configs = cross(configs, values("matrix.align", "8,16"), v -> "-XX:ObjectAlignmentInBytes=" + v);
+            configs = cross(configs, values("matrix.compactHeaders", ""),
+                    v -> "-XX:+UnlockExperimentalVMOptions -XX:" + v + "UseCompactObjectHeaders");
+            configs = cross(configs, values("matrix.gc", "Serial,G1"), v -> "-XX:+Use" + v + "GC");
+        }
+        List<String> jvmArgs = split(System.getProperty("matrix.jvmArgs", "-Xms64m"));
+        jvmArgs.addAll(ForkedRunner.inheritedJvmArgs());
+        return new FlagMatrix(configs, jvmArgs,
+                Integer.getInteger("fork.count", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("fork.timeoutSeconds", 600));
+    }
+
+    private static List<String> values(String property, String defaultValue) {
+        return Arrays.asList(System.getProperty(property, defaultValue).split(",", -1));
+    }
+
+    private static List<String> split(String flags) {
+        List<String> list = new ArrayList<String>();
+        for (String flag : flags.trim().split("\\s+")) {
+            if (!flag.isEmpty()) {
+                list.add(flag);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Every config extended by every value of one axis; an empty value adds no flag.
+     */
+    private static List<List<String>> cross(List<List<String>> configs, List<String> values, UnaryOperator<String> flag) {
+        List<List<String>> crossed = new ArrayList<List<String>>();
+        for (List<String> config : configs) {
+            for (String value : values) {
+                List<String> extended = new ArrayList<String>(config);
+                if (!value.trim().isEmpty()) {
+                    extended.addAll(split(flag.apply(value.trim())));
+                }
+                crossed.add(extended);
+            }
+        }
+        return crossed;
+    }
+
+    /**
+     * Start the JVM once with `flags` to see which of them it accepts and what it derives.
+     */
+    void probe(Column column) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(column.flags);
+        command.add("-XX:+PrintFlagsFinal");
+        command.add("-version");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Map<String, String> flags = new LinkedHashMap<String, String>();
+        String firstLine = null;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (firstLine == null) {
+                    firstLine = line;
+                }
+                // "     bool UseCompressedOops                        = true                  {product lp64_product} {ergonomic}"
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length >= 4 && "=".equals(fields[2])) {
+                    flags.put(fields[1], fields[3]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+            column.rejected = "no answer within " + timeoutSeconds + " s";
+            return;
+        }
+        if (process.exitValue() != 0) {
+            column.rejected = firstLine;
+            return;
+        }
+        String gc = "?";
+        for (String name : new String[] {"Serial", "Parallel", "G1", "Z", "Shenandoah"}) {
+            if ("true".equals(flags.get("Use" + name + "GC"))) {
+                gc = name;
+            }
+        }
+        column.effective = String.format("%s, oops %s, klass %s, align %s%s", gc,
+                "true".equals(flags.get("UseCompressedOops")) ? "compressed" : "wide",
+                "true".equals(flags.get("UseCompressedClassPointers")) ? "compressed" : "wide",
+                flags.get("ObjectAlignmentInBytes"),
+                "true".equals(flags.get("UseCompactObjectHeaders")) ? ", compact headers" : "");
+    }
+
+    public void run(List<Experiment> experiments) throws IOException, InterruptedException {
+        List<Column> columns = new ArrayList<Column>();
+        for (List<String> config : configs) {
+            Column column = new Column("C" + (columns.size() + 1), config);
+            probe(column);
+            columns.add(column);
+        }
+        for (Column column : columns) {
+            System.out.println(String.format("%-4s %-70s %s", column.label, String.join(" ", column.flags),
+                    column.rejected == null ? "-> " + column.effective : "rejected: " + column.rejected));
+        }
+        System.out.println("m_deep / N in bytes, N = " + JavaMemoryUseExperiment.getN() + ", other flags " + jvmArgs);
+
+        Map<String, Map<String, Measurement>> cells = new LinkedHashMap<String, Map<String, Measurement>>();
+        List<Column> measured = new ArrayList<Column>();
+        for (Column column : columns) {
+            if (column.rejected != null) {
+                continue;
+            }
+            List<String> flags = new ArrayList<String>(jvmArgs);
+            flags.addAll(column.flags);
+            List<Measurement> measurements = new ForkedRunner(forks, flags, timeoutSeconds).run(experiments);
+            Map<String, Measurement> byId = new LinkedHashMap<String, Measurement>();
+            for (Measurement m : measurements) {
+                byId.put(m.getId(), m);
+                ResultsStore.record("matrix", m.getId(), m.getName(), m.getN(),
+                        "m_deep / N " + String.join(" ", column.flags), "B/elem", (double) m.getDeep() / m.getN());
+            }
+            cells.put(column.label, byId);
+            measured.add(column);
+        }
+
+        StringBuilder header = new StringBuilder(String.format("| %75s |", "structure"));
+        for (Column column : measured) {
+            header.append(String.format(" %7s |", column.label));
+        }
+        printLine(header.length());
+        System.out.println(header);
+        printLine(header.length());
+        for (Experiment experiment : experiments) {
+            StringBuilder row = new StringBuilder(String.format("| %75s |", experiment.getName()));
+            for (Column column : measured) {
+                Measurement m = cells.get(column.label).get(experiment.getId());
+                row.append(String.format(" %7.2f |", (double) m.getDeep() / m.getN()));
+            }
+            System.out.println(row);
+        }
+        printLine(header.length());
+    }
+
+    private static void printLine(int width) {
+        System.out.println(String.format(String.format("%%0%dd", width), 0).replace("0", "-"));
+    }
+}
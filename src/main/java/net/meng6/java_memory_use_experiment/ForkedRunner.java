@@ -0,0 +1,184 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ## Summary
+ *
+ * Runs every experiment in a child JVM of its own, several at a time, and collects
+ * the results in the original order.
+ *
+ * A child starts with identical, fixed heap flags and measures exactly one
+ * experiment (`JavaMemoryUseExperiment measure <id>`), so garbage, loaded classes
+ * and JIT state of one experiment cannot leak into the next. The child prints one
+ * `RESULT` line per experiment on stdout, everything else it prints is passed
+ * through to stderr of the parent.
+ *
+ * ## Configuration
+ *
+ * * `-Dfork.count=<cores>`: child JVMs running at the same time
+ * * `-Dfork.jvmArgs="-Xms512m -Xmx512m -XX:+UseSerialGC"`: flags of every child
+ * * `-Dfork.timeoutSeconds=600`: a child running longer than this is killed
+ *
+ * `-Dmeter` and any `-javaagent` of the parent are passed on to the children.
+ */
+public class ForkedRunner {
+
+    static final String RESULT_PREFIX = "RESULT\t";
+
+    private final int forks;
+    private final List<String> jvmArgs;
+    private final long timeoutSeconds;
+
+    public ForkedRunner(int forks, List<String> jvmArgs, long timeoutSeconds) {
+        if (forks < 1) {
+            throw new IllegalArgumentException("fork count must be positive: " + forks);
+        }
+        this.forks = forks;
+        this.jvmArgs = jvmArgs;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public static ForkedRunner fromSystemProperties() {
+        List<String> jvmArgs = new ArrayList<String>(Arrays.asList(
+                System.getProperty("fork.jvmArgs", "-Xms512m -Xmx512m -XX:+UseSerialGC").trim().split("\\s+")));
+        jvmArgs.addAll(inheritedJvmArgs());
+        return new ForkedRunner(
+                Integer.getInteger("fork.count", Runtime.getRuntime().availableProcessors()),
+                jvmArgs,
+                Long.getLong("fork.timeoutSeconds", 600));
+    }
+
+    /**
+     * Flags of this JVM that children must have too: the meter and any agent.
+     */
+    static List<String> inheritedJvmArgs() {
+        List<String> inherited = new ArrayList<String>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-javaagent:") || arg.startsWith("-Dmeter=")) {
+                inherited.add(arg);
+            }
+        }
+        return inherited;
+    }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    /**
+     * Measure each experiment in its own child JVM.
+     *
+     * @return one measurement per experiment, in the order given
+     */
+    public List<Measurement> run(List<Experiment> experiments) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(forks);
+        try {
+            List<Future<Map<String, Measurement>>> futures = new ArrayList<Future<Map<String, Measurement>>>();
+            for (final Experiment experiment : experiments) {
+                futures.add(pool.submit(new Callable<Map<String, Measurement>>() {
+                    public Map<String, Measurement> call() throws IOException, InterruptedException {
+                        return fork(experiment.getId());
+                    }
+                }));
+            }
+            List<Measurement> measurements = new ArrayList<Measurement>();
+            for (int i = 0; i < experiments.size(); i++) {
+                String id = experiments.get(i).getId();
+                Measurement measurement;
+                try {
+                    measurement = futures.get(i).get().get(id);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("child JVM for " + id + " failed", e.getCause());
+                }
+                if (measurement == null) {
+                    throw new IllegalStateException("child JVM for " + id + " did not report a result");
+                }
+                measurements.add(measurement);
+            }
+            return measurements;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Map<String, Measurement> fork(String... ids) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(JavaMemoryUseExperiment.class.getName());
+        command.add("measure");
+        command.addAll(Arrays.asList(ids));
+
+        final Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        // kill a hanging child, which also ends the read loop below
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        process.onExit().orTimeout(timeoutSeconds, TimeUnit.SECONDS).exceptionally(t -> {
+            timedOut.set(true);
+            process.destroyForcibly();
+            return null;
+        });
+        Map<String, Measurement> results = new HashMap<String, Measurement>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    Measurement measurement = parseResult(line);
+                    results.put(measurement.getId(), measurement);
+                } else {
+                    System.err.println(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        process.waitFor();
+        if (timedOut.get()) {
+            throw new IOException("child JVM timed out after " + timeoutSeconds + " s: " + command);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("child JVM exited with " + process.exitValue() + ": " + command);
+        }
+        return results;
+    }
+
+    /**
+     * `RESULT <id> <name> <n> <used> <m_obj> <m_deep>`, tab separated.
+     */
+    static String formatResult(Measurement m) {
+        return RESULT_PREFIX + m.getId() + "\t" + m.getName() + "\t" + m.getN() + "\t"
+                + m.getUsed() + "\t" + m.getObj() + "\t" + m.getDeep();
+    }
+
+    static Measurement parseResult(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length != 7) {
+            throw new IllegalArgumentException("malformed result line: " + line);
+        }
+        return new Measurement(fields[1], fields[2], Integer.parseInt(fields[3]),
+                Long.parseLong(fields[4]), Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+    }
+}
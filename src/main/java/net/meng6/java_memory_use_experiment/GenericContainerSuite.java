@@ -0,0 +1,291 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToLongFunction;
+
+import net.meng6.java_memory_use_experiment.generic.DoubleArray;
+import net.meng6.java_memory_use_experiment.generic.GenericArray;
+import net.meng6.java_memory_use_experiment.generic.IntArray;
+import net.meng6.java_memory_use_experiment.generic.LongArray;
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * What erasure costs a container holding primitive values: `GenericArray<Integer>`,
+ * `<Long>` and `<Double>` against `IntArray`, `LongArray` and `DoubleArray`, the same
+ * container generated for each primitive type by `gradle generateSpecializations`.
+ *
+ * For each container the suite fills N elements (none of them from the `Integer` or
+ * `Long` cache) and reports
+ *
+ * * `m1 - m2` of building and filling it, after one warm-up instance was built and
+ *   dropped, `m_deep` and `m_deep / N`
+ * * get: time per element of summing all elements with `get`
+ * * put: time per element of overwriting all elements with `set`, and the bytes that
+ *   allocates per element, the boxes of the generic container
+ *
+ * and after each pair how much of the generic container's memory and time the
+ * specialized one takes. Both containers of a pair must sum to the same value.
+ *
+ * ## Configuration
+ *
+ * * `-Dgenerics.n=1000000`: comma-separated element counts
+ * * `-Dgenerics.runs=5`: timed runs of get and put, the fastest one is reported
+ */
+public class GenericContainerSuite {
+
+    private final MemoryMeter meter;
+    private final int[] ns;
+    private final int runs;
+
+    // keeps the container under test reachable, and sums alive
+    private static Object keep;
+    private static long sink;
+
+    private static class Container {
+        final String name;
+        final IntFunction<Object> build;
+        final ToLongFunction<Object> sum;
+        // overwrites every element with a value depending on the run
+        final ObjIntConsumer<Object> put;
+
+        Container(String name, IntFunction<Object> build, ToLongFunction<Object> sum, ObjIntConsumer<Object> put) {
+            this.name = name;
+            this.build = build;
+            this.sum = sum;
+            this.put = put;
+        }
+    }
+
+    private static class Result {
+        final long deep;
+        final double get;
+        final double put;
+
+        Result(long deep, double get, double put) {
+            this.deep = deep;
+            this.get = get;
+            this.put = put;
+        }
+    }
+
+    public GenericContainerSuite(MemoryMeter meter, int[] ns, int runs) {
+        this.meter = meter;
+        this.ns = ns;
+        this.runs = runs;
+    }
+
+    public static GenericContainerSuite fromSystemProperties(MemoryMeter meter) {
+        String[] values = System.getProperty("generics.n", "1000000").split(",");
+        int[] ns = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Integer.parseInt(values[i].trim());
+        }
+        return new GenericContainerSuite(meter, ns, Integer.getInteger("generics.runs", 5));
+    }
+
+    /**
+     * Pairs of containers, generic first.
+     */
+    static List<Container> containers() {
+        List<Container> containers = new ArrayList<Container>();
+        containers.add(new Container("GenericArray<Integer> + N Integer", n -> {
+            GenericArray<Integer> array = new GenericArray<Integer>(Integer.class, n);
+            for (int i = 0; i < n; i++) {
+                array.set(i, 1000 + i);
+            }
+            return array;
+        }, o -> {
+            @SuppressWarnings("unchecked")
+            GenericArray<Integer> array = (GenericArray<Integer>) o;
+            long sum = 0;
+            for (int i = 0; i < array.size(); i++) {
+                sum += array.get(i);
+            }
+            return sum;
+        }, (o, run) -> {
+            @SuppressWarnings("unchecked")
+            GenericArray<Integer> array = (GenericArray<Integer>) o;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, 1000 + i + run);
+            }
+        }));
+        containers.add(new Container("IntArray (generated)", n -> {
+            IntArray array = new IntArray(n);
+            for (int i = 0; i < n; i++) {
+                array.set(i, 1000 + i);
+            }
+            return array;
+        }, o -> {
+            IntArray array = (IntArray) o;
+            long sum = 0;
+            for (int i = 0; i < array.size(); i++) {
+                sum += array.get(i);
+            }
+            return sum;
+        }, (o, run) -> {
+            IntArray array = (IntArray) o;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, 1000 + i + run);
+            }
+        }));
+        containers.add(new Container("GenericArray<Long> + N Long", n -> {
+            GenericArray<Long> array = new GenericArray<Long>(Long.class, n);
+            for (int i = 0; i < n; i++) {
+                array.set(i, 1000003L * i + 1000);
+            }
+            return array;
+        }, o -> {
+            @SuppressWarnings("unchecked")
+            GenericArray<Long> array = (GenericArray<Long>) o;
+            long sum = 0;
+            for (int i = 0; i < array.size(); i++) {
+                sum += array.get(i);
+            }
+            return sum;
+        }, (o, run) -> {
+            @SuppressWarnings("unchecked")
+            GenericArray<Long> array = (GenericArray<Long>) o;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, 1000003L * i + 1000 + run);
+            }
+        }));
+        containers.add(new Container("LongArray (generated)", n -> {
+            LongArray array = new LongArray(n);
+            for (int i = 0; i < n; i++) {
+                array.set(i, 1000003L * i + 1000);
+            }
+            return array;
+        }, o -> {
+            LongArray array = (LongArray) o;
+            long sum = 0;
+            for (int i = 0; i < array.size(); i++) {
+                sum += array.get(i);
+            }
+            return sum;
+        }, (o, run) -> {
+            LongArray array = (LongArray) o;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, 1000003L * i + 1000 + run);
+            }
+        }));
+        containers.add(new Container("GenericArray<Double> + N Double", n -> {
+            GenericArray<Double> array = new GenericArray<Double>(Double.class, n);
+            for (int i = 0; i < n; i++) {
+                array.set(i, 0.5 * i);
+            }
+            return array;
+        }, o -> {
+            @SuppressWarnings("unchecked")
+            GenericArray<Double> array = (GenericArray<Double>) o;
+            double sum = 0;
+            for (int i = 0; i < array.size(); i++) {
+                sum += array.get(i);
+            }
+            return Double.doubleToLongBits(sum);
+        }, (o, run) -> {
+            @SuppressWarnings("unchecked")
+            GenericArray<Double> array = (GenericArray<Double>) o;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, 0.5 * i + run);
+            }
+        }));
+        containers.add(new Container("DoubleArray (generated)", n -> {
+            DoubleArray array = new DoubleArray(n);
+            for (int i = 0; i < n; i++) {
+                array.set(i, 0.5 * i);
+            }
+            return array;
+        }, o -> {
+            DoubleArray array = (DoubleArray) o;
+            double sum = 0;
+            for (int i = 0; i < array.size(); i++) {
+                sum += array.get(i);
+            }
+            return Double.doubleToLongBits(sum);
+        }, (o, run) -> {
+            DoubleArray array = (DoubleArray) o;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, 0.5 * i + run);
+            }
+        }));
+        return containers;
+    }
+
+    public void run() {
+        System.out.println(String.format("meter = %s, fastest of %d runs", meter.getName(), runs));
+        printDivider();
+        System.out.println(String.format("| %40s | %9s | %12s | %12s | %8s | %12s | %12s | %11s |",
+                "container", "N", "m1 - m2", "m_deep", "B/elem", "get ns/elem", "put ns/elem", "put B/elem"));
+        printDivider();
+        List<Container> containers = containers();
+        for (int n : ns) {
+            Result generic = null;
+            long genericSum = 0;
+            for (int c = 0; c < containers.size(); c++) {
+                Container container = containers.get(c);
+                // build and drop one first, so that m1 - m2 holds no class loading or first-use
+                // allocations of the container's code
+                keep = container.build.apply(n);
+                keep = null;
+                long m1 = meter.sample();
+                keep = container.build.apply(n);
+                long m2 = meter.sample();
+                long used = meter.used(m1, m2);
+                long deep = ObjectSizes.deepSizeOf(keep);
+
+                long sum = container.sum.applyAsLong(keep);
+                long bestGet = Long.MAX_VALUE;
+                long bestPut = Long.MAX_VALUE;
+                long putBytes = 0;
+                for (int r = 1; r <= runs; r++) {
+                    long t1 = System.nanoTime();
+                    sink += container.sum.applyAsLong(keep);
+                    long t2 = System.nanoTime();
+                    bestGet = Math.min(bestGet, t2 - t1);
+                    // the samples outside the timed put, with the gc meter they collect
+                    long m3 = meter.sample();
+                    long t3 = System.nanoTime();
+                    container.put.accept(keep, r);
+                    long t4 = System.nanoTime();
+                    long m4 = meter.sample();
+                    bestPut = Math.min(bestPut, t4 - t3);
+                    putBytes = meter.used(m3, m4);
+                }
+                keep = null;
+
+                Result result = new Result(deep, (double) bestGet / n, (double) bestPut / n);
+                System.out.println(String.format("| %40s | %9d | %12d | %12d | %8.2f | %12.3f | %12.3f | %11.2f |",
+                        container.name, n, used, deep, (double) deep / n, result.get, result.put, (double) putBytes / n));
+                String id = Experiment.idOf(container.name);
+                ResultsStore.record("generics", id, container.name, n, "m_deep / N", "B/elem", (double) deep / n);
+                ResultsStore.record("generics", id, container.name, n, "get", "ns/elem", result.get);
+                ResultsStore.record("generics", id, container.name, n, "put", "ns/elem", result.put);
+                ResultsStore.record("generics", id, container.name, n, "put allocation", "B/elem", (double) putBytes / n);
+
+                if (c % 2 == 0) {
+                    generic = result;
+                    genericSum = sum;
+                } else {
+                    if (sum != genericSum) {
+                        throw new IllegalStateException(container.name + " sums to " + sum + ", its generic container to " + genericSum);
+                    }
+                    System.out.println(String.format("| %40s | %9s | %12s | %12s | %7.1f%% | %11.1f%% | %11.1f%% | %11s |",
+                            "  specialized / generic", "", "", "",
+                            100.0 * result.deep / generic.deep, 100 * result.get / generic.get, 100 * result.put / generic.put, ""));
+                }
+            }
+            printDivider();
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 141), 0).replace("0", "-"));
+    }
+}
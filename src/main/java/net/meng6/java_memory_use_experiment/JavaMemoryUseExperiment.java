@@ -1,16 +1,28 @@
 package net.meng6.java_memory_use_experiment;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
-// Java object memory use measurement tool.
-// c.f. http://www.javamex.com/classmexer/
-import com.javamex.classmexer.MemoryUtil;
-import com.javamex.classmexer.MemoryUtil.VisibilityFilter;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import net.meng6.java_memory_use_experiment.hprof.HeapDumpAnalyzer;
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.meter.MemoryMeters;
+import net.meng6.java_memory_use_experiment.results.RegressionCompare;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ClassLayout;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+import net.meng6.java_memory_use_experiment.sizeof.SizeOfAgent;
+import net.meng6.java_memory_use_experiment.stats.TrialStatistics;
 
 // for sending output to both the console and a file.
 import org.apache.commons.io.output.TeeOutputStream;
@@ -25,6 +37,25 @@ import org.apache.commons.io.output.TeeOutputStream;
  * including 1) variables of primary types, 2) objects of wrapper class, 3) arrays
  * of 1) and 2). 4) strings created in different ways.
  *
+ * ## Measurement strategy
+ *
+ * The `m1 - m2` column comes from a pluggable `MemoryMeter`, chosen with `-Dmeter=...`:
+ *
+ * * `allocation` (default): bytes allocated by the measuring thread, from
+ *   `com.sun.management.ThreadMXBean`. Fast and deterministic.
+ * * `gc`: the original approach, decrease in `Runtime.getRuntime().freeMemory()`
+ *   after `System.gc()` settles. Takes minutes for a full table.
+ *
+ * Nothing but the code under test runs between the two samples of a row: readings go
+ * into a preallocated `MeasurementBuffer`, and sizes and the table are only computed
+ * once all rows are taken. Before measuring, the modes that use the meter take empty
+ * rows and exit with status 3 if they read more than `-Dharness.maxNoise=0` bytes.
+ *
+ * Each row of the table is measured repeatedly by `Trials`, after a warm-up round,
+ * until the bootstrap confidence interval of the median is tight; `m1 - m2` is the
+ * median without outliers, and the last column shows the interval and the number of
+ * trials, so that noise can be told from a real difference to `m_deep`.
+ *
  * ## Typical output
  *
  * See under project root output/stdout.log, or online at
@@ -61,19 +92,13 @@ import org.apache.commons.io.output.TeeOutputStream;
  */
 public class JavaMemoryUseExperiment {
 
-    private static boolean DEBUG = false;
-
     private static int N = 800;
 
-    private static long m1;
-    private static long m2;
-    private static long m_obj;
-    private static long m_deep;
+    private static MemoryMeter meter;
 
-
-    private static long measurement1;
-    private static long measurement2;
-    private static int measurement_count = 0;
+    static int getN() {
+        return N;
+    }
 
     private class EmptyClass {};    //   16B (object metadata)
 
@@ -83,7 +108,9 @@ public class JavaMemoryUseExperiment {
         //    4B (padding)
     }                               // = 32B
 
-    private class ComplexClassWithTypeParameter<E> {    //    16 B (object metadata)
+    // estimate for uncompressed references; the "ComplexClassWithTypeParameter<Long> + N Long" row
+    // measures 28n + 40 B with compressed ones, see also GenericContainerSuite
+    class ComplexClassWithTypeParameter<E> {            //    16 B (object metadata)
         private int n;                                  //     4 B
         private E[] items;                              //     8 B (array reference)
                                                         //   24n B (n Long objects)
@@ -95,40 +122,22 @@ public class JavaMemoryUseExperiment {
             @SuppressWarnings("unchecked")
             final E[] items = (E[]) Array.newInstance(c, n);
             this.n = n;
+            this.items = items;
         }
-    }                                                   // = 32n + 56 B
-
-    private static long getFreeMemory () {
-        measurement1 = Runtime.getRuntime().freeMemory();
-
-
-        // waits for free memory measurement to stabilize
-        do {
-            if (DEBUG) {
-                System.out.println(
-                        String.format(
-                                "Run garbage collector, re-measure free memory ..., %s " +
-                                        "time(s) confirmed: %s bytes",
-                                measurement_count, measurement1
-                        )
-                );
-            }
-            System.gc();
-            try { Thread.sleep(250); } catch (Exception x) { }
-            measurement2 = measurement1;
-            measurement1 = Runtime.getRuntime().freeMemory();
-            if (measurement1 == measurement2) ++measurement_count; else measurement_count = 0;
-        } while (measurement_count < 5);
-        if (DEBUG) {System.out.println("Free memory = " + measurement1 + " bytes");}
-        return measurement1;
-    }
 
+        // for StructureBenchmark, which reads the elements back
+        E[] getItems() {
+            return items;
+        }
+    }                                                   // = 32n + 56 B
 
     JavaMemoryUseExperiment () {
+    }
 
+    private static void teeOutput(String stdoutLog, String stderrLog) {
         try {
-            FileOutputStream fileout= new FileOutputStream("output/stdout.log");
-            FileOutputStream fileerr= new FileOutputStream("output/stderr.log");
+            FileOutputStream fileout= new FileOutputStream(stdoutLog);
+            FileOutputStream fileerr= new FileOutputStream(stderrLog);
 
             TeeOutputStream multiOut= new TeeOutputStream(System.out, fileout);
             TeeOutputStream multiErr= new TeeOutputStream(System.err, fileerr);
@@ -141,8 +150,158 @@ public class JavaMemoryUseExperiment {
         } catch (FileNotFoundException ex) {
             System.err.println("Could not create/find the file.");
         }
+    }
+
+    /**
+     * The array rows of the table, as experiments that can be built for any N.
+     */
+    List<Experiment> arrayExperiments() {
+        List<Experiment> experiments = new ArrayList<Experiment>();
+        experiments.add(Experiment.of("int[N]", n -> new int[n]));
+        experiments.add(Experiment.of("short[N]", n -> new short[n]));
+        experiments.add(Experiment.of("long[N]", n -> new long[n]));
+        experiments.add(Experiment.of("float[N]", n -> new float[n]));
+        experiments.add(Experiment.of("double[N]", n -> new double[n]));
+        experiments.add(Experiment.of("char[N]", n -> new char[n]));
+        experiments.add(Experiment.of("boolean[N]", n -> new boolean[n]));
+        experiments.add(Experiment.of("byte[N]", n -> new byte[n]));
+        experiments.add(Experiment.of("Integer[N]", n -> new Integer[n]));
+        experiments.add(Experiment.of("Integer[N] and N Integer", n -> {
+            Integer[] array = new Integer[n];
+            // above the cache of -128..127, so every valueOf is a new box
+            for (int i = 0; i < n; i++) {
+                array[i] = Integer.valueOf(128 + i);
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("Long[N]", n -> new Long[n]));
+        experiments.add(Experiment.of("Long[N] and N Long", n -> {
+            Long[] array = new Long[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = Long.valueOf(1280 + i);
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("BigInteger[N] and N BigInteger", n -> {
+            BigInteger[] array = new BigInteger[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new BigInteger(String.format("%s", 12345678 + i));
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("BigDecimal[N]", n -> new BigDecimal[n]));
+        experiments.add(Experiment.of("BigDecimal[N] and N BigDecimal", n -> {
+            BigDecimal[] array = new BigDecimal[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new BigDecimal(123456789.123456 + i);
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("String[N]", n -> new String[n]));
+        experiments.add(Experiment.of("String[N] and N literal string \"abcdefghij\"", n -> {
+            String[] array = new String[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = "abcdefghij";
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("String[N] and N new String(\"abc0000000\")", n -> {
+            String[] array = new String[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new String("abc0000000");
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("String[N] and N different strings String.format(\"abc%07d\", i)", n -> {
+            String[] array = new String[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = String.format("abc%07d", i);
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("EmptyClass[N] + N EmptyClass", n -> {
+            EmptyClass[] array = new EmptyClass[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new EmptyClass();
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("SimpleClass[N] + N SimpleClass", n -> {
+            SimpleClass[] array = new SimpleClass[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new SimpleClass();
+            }
+            return array;
+        }));
+        experiments.add(Experiment.of("ComplexClassWithTypeParameter<Long> + N Long", n -> {
+            ComplexClassWithTypeParameter<Long> complex = new ComplexClassWithTypeParameter<Long>(Long.class, n);
+            for (int i = 0; i < n; i++) {
+                complex.items[i] = Long.valueOf(1280 + i);
+            }
+            return complex;
+        }));
+        return experiments;
+    }
+
+    /**
+     * Measure one experiment at N the way the table does, after one warm-up instance.
+     */
+    static Measurement measure(Experiment experiment, int n) {
+        // once unmeasured, like the warm-up round of Trials: class loading and first-use
+        // allocations are not the structure's
+        experiment.create(n);
+        // locals only between the samples, nothing the harness would have to allocate
+        long m1 = meter.sample();
+        Object instance = experiment.create(n);
+        long m2 = meter.sample();
+        return new Measurement(experiment.getId(), experiment.getName(), n, meter.used(m1, m2),
+                ObjectSizes.sizeOf(instance), ObjectSizes.deepSizeOf(instance));
+    }
+
+    void printTable() {
+        Trials trials = Trials.fromSystemProperties(meter);
+        printHeader(trials);
+
+        ExperimentRegistry registry = ExperimentRegistry.load();
+        List<Experiment> experiments = new ArrayList<Experiment>(registry.getExperiments("variables"));
+        experiments.addAll(registry.getExperiments("arrays"));
+        // every row is measured until its interval is tight, then printed
+        List<Measurement> measurements = trials.measure(experiments, N);
+
+        for (int row = 0; row < measurements.size(); row++) {
+            Measurement measurement = measurements.get(row);
+            if (experiments.get(row).isScalar()) {
+                printVariableMemoryUse(measurement, trials.describe(measurement.getStatistics()));
+            } else {
+                printArrayMemoryUse(measurement, trials.describe(measurement.getStatistics()));
+            }
+        }
+        printDivider();
+    }
 
+    /**
+     * Fails the run with exit status 3 if empty measurements read more than
+     * `-Dharness.maxNoise=0` bytes, since the harness itself would then be in every row.
+     */
+    static void checkHarnessNoise(boolean quiet) {
+        long limit = Long.getLong("harness.maxNoise", 0);
+        long noise = MeasurementBuffer.noise(meter, 100, 2000);
+        if (noise > limit) {
+            System.err.println(String.format(
+                    "Harness noise of %d bytes in empty measurements with meter %s exceeds -Dharness.maxNoise=%d.",
+                    noise, meter.getName(), limit));
+            System.exit(3);
+        }
+        if (!quiet) {
+            System.out.println(String.format("harness noise = %d bytes in empty measurements (-Dharness.maxNoise=%d)",
+                    noise, limit));
+        }
+    }
 
+    /**
+     * @param trials how rows are repeated, null if they are measured once
+     */
+    private static void printHeader(Trials trials) {
         System.out.println("Java environment:");
         System.out.println("System.getProperty(\"sun.arch.data.model\") = "
                 + System.getProperty("sun.arch.data.model"));
@@ -154,418 +313,93 @@ public class JavaMemoryUseExperiment {
                 + System.getProperty("java.vm.version"));
         System.out.println("System.getProperty(\"java.runtime.version\") = "
                 + System.getProperty("java.runtime.version"));
+        System.out.println("layout = " + ObjectSizes.getVmLayout());
+        System.out.println("meter = " + meter.getName());
         printDivider();
-        System.out.println(String.format("| %-175s |", charSequence(" ", 60) + "Empirically Measured Memory Use of some Java Data Structures"));
+        System.out.println(String.format("| %-210s |", charSequence(" ", 60) + "Empirically Measured Memory Use of some Java Data Structures"));
         printDivider();
-        System.out.println(String.format("| %-6s | %-83s | %-80s |", "m1, m2", "Runtime.getRuntime().freeMemory()", ""));
-        System.out.println(String.format("| %-6s | %-83s | %-80s |", "m1-m2", "", "decrease in free memory"));
-        System.out.println(String.format("| %-6s | %-83s | %-80s |", "m_obj", "com.javamex.classmexer.MemoryUtil.memoryUsageOf(<object>) ", "equivalent to java.lang.instrument.Instrumentation.getObjectSize()"));
-        System.out.println(String.format("| %-6s | %-83s | %-80s |", "m_deep", "com.javamex.classmexer.MemoryUtil.deepMemoryUsageOf(<object>, VisibilityFilter.ALL)", "recursively use Instrumentation.getObjectSize() to include referenced objects"));
-
-        int i; // iterator
+        System.out.println(String.format("| %-6s | %-83s | %-115s |", "m1, m2", "MemoryMeter.sample() (-Dmeter=" + meter.getName() + ")", ""));
+        System.out.println(String.format("| %-6s | %-83s | %-115s |", "m1-m2", "MemoryMeter.used(m1, m2)" + (trials == null ? "" : ", median of the trials"), meter.getDescription()));
+        System.out.println(String.format("| %-6s | %-83s | %-115s |", "m_obj", "ObjectSizes.sizeOf(<object>)", "equivalent to java.lang.instrument.Instrumentation.getObjectSize()"));
+        System.out.println(String.format("| %-6s | %-83s | %-115s |", "m_deep", "ObjectSizes.deepSizeOf(<object>)", "sum of ObjectSizes.sizeOf() over all objects reachable through instance fields"));
+        System.out.println(String.format("| %-6s | %-83s | %-115s |", "trials", "Trials (-Dtrials.*)", trials == null ? "measured once" : trials.getDescription()));
         printDivider();
         System.out.println(String.format(
-                "| %75s | %29s | %20s | %20s | %19s |",
+                "| %75s | %29s | %20s | %20s | %19s | %32s |",
                 "variable/object/array type (N="+N+")",
                 "  total memory M (bytes)    ",
                 " bytes per element ",
                 "metadata [+ padding]",
-                "scaling      "
+                "scaling      ",
+                "CI of m1 - m2, trials     "
         ));
         System.out.println(String.format(
-                "| %75s | %9s %9s %9s | %20s | %20s | %19s |",
+                "| %75s | %9s %9s %9s | %20s | %20s | %19s | %32s |",
                 "measurement",
                 "m1 - m2",
                 "m_obj",
                 "m_deep",
                 "       M/N       ",
                 "M - N * ((int) M/N)",
-                ""
+                "",
+                "[low, high] n (-outliers)"
         ));
         printDivider();
-
-        m1 = getFreeMemory();
-        // no-op here
-        m2 = getFreeMemory();
-        if (m1 != m2) {
-            printArrayMemoryUse("(nothing)");
-        }
-
-
-        m1 = getFreeMemory();
-        int var_int = 129;
-        // using var_int or not does not make a difference
-//        System.out.println(var_int*2);
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_int);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_int, VisibilityFilter.ALL);
-        printVariableMemoryUse("int");
-
-
-        m1 = getFreeMemory();
-        short var_short = 12;
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_short);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_short, VisibilityFilter.ALL);
-        printVariableMemoryUse("short");
-
-
-        m1 = getFreeMemory();
-        long var_long = 123456789;
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_long);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_long, VisibilityFilter.ALL);
-        printVariableMemoryUse("long");
-
-
-        m1 = getFreeMemory();
-        float var_float = 1234.56789f;
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_float);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_float, VisibilityFilter.ALL);
-        printVariableMemoryUse("float");
-
-
-        m1 = getFreeMemory();
-        double var_double = 1234.56789;
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_double);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_double, VisibilityFilter.ALL);
-        printVariableMemoryUse("double");
-
-
-        m1 = getFreeMemory();
-        char var_char = 'a';
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_char);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_char, VisibilityFilter.ALL);
-        printVariableMemoryUse("char");
-
-
-        m1 = getFreeMemory();
-        boolean var_boolean = true;
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_boolean);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_boolean, VisibilityFilter.ALL);
-        printVariableMemoryUse("boolean");
-
-
-
-        m1 = getFreeMemory();
-        byte var_byte = 100;
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_byte);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_byte, VisibilityFilter.ALL);
-        printVariableMemoryUse("byte");
-
-
-        m1 = getFreeMemory();
-        Integer var_Integer = new Integer(12345);
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_Integer);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_Integer, VisibilityFilter.ALL);
-        printVariableMemoryUse("Integer");
-
-
-        m1 = getFreeMemory();
-        Long var_Long = new Long(123456789);
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_Long);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_Long, VisibilityFilter.ALL);
-        printVariableMemoryUse("Long");
-
-
-        m1 = getFreeMemory();
-        BigInteger var_BigInteger = new BigInteger("123456789");
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_BigInteger);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_BigInteger, VisibilityFilter.ALL);
-        printVariableMemoryUse("BigInteger");
-
-
-        m1 = getFreeMemory();
-        BigDecimal var_BigDecimal = new BigDecimal(12345.6789);
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_BigDecimal);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_BigDecimal, VisibilityFilter.ALL);
-        printVariableMemoryUse("BigDecimal");
-
-
-        m1 = getFreeMemory();
-        String var_literal_string = "foobar";
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_literal_string);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_literal_string, VisibilityFilter.ALL);
-        printVariableMemoryUse("literal string \"foobar\"");
-
-
-
-        m1 = getFreeMemory();
-        String var_literal_object = new String("foobar");
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(var_literal_object);
-        m_deep = MemoryUtil.deepMemoryUsageOf(var_literal_object, VisibilityFilter.ALL);
-        printVariableMemoryUse("string object new String(\"foobar\")");
-
-
-        m1 = getFreeMemory();
-        int[] array_int = new int[N];
-        for (i = 0; i < N; i++){
-            array_int[i] = 128 + i;
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_int);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_int, VisibilityFilter.ALL);
-        printArrayMemoryUse("int[N]");
-        array_int = null;
-
-
-        m1 = getFreeMemory();
-        short[] array_short = new short[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_short);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_short, VisibilityFilter.ALL);
-        printArrayMemoryUse("short[N]");
-        array_short = null;
-
-
-        m1 = getFreeMemory();
-        long[] array_long = new long[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_long);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_long, VisibilityFilter.ALL);
-        printArrayMemoryUse("long[N]");
-        array_long = null;
-
-
-        m1 = getFreeMemory();
-        float[] array_float = new float[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_float);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_float, VisibilityFilter.ALL);
-        printArrayMemoryUse("float[N]");
-        array_float = null;
-
-
-        m1 = getFreeMemory();
-        double[] array_double = new double[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_double);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_double, VisibilityFilter.ALL);
-        printArrayMemoryUse("double[N]");
-        array_double = null;
-
-
-        m1 = getFreeMemory();
-        char[] array_char = new char[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_char);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_char, VisibilityFilter.ALL);
-        printArrayMemoryUse("char[N]");
-        array_char = null;
-
-
-        m1 = getFreeMemory();
-        boolean[] array_boolean = new boolean[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_boolean);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_boolean, VisibilityFilter.ALL);
-        printArrayMemoryUse("boolean[N]");
-        array_boolean = null;
-
-        m1 = getFreeMemory();
-        byte[] array_byte = new byte[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_byte);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_byte, VisibilityFilter.ALL);
-        printArrayMemoryUse("byte[N]");
-        array_byte = null;
-
-
-        m1 = getFreeMemory();
-        Integer[] array_Integer1 = new Integer[N];
-        // TODO why m2 becomes smaller than m1 if the following is enabled?
-//        for (i = 0; i < N; i++) {
-//            array_Integer1[i] = new Integer(123);
-//        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_Integer1);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_Integer1, VisibilityFilter.ALL);
-        printArrayMemoryUse("Integer[N]");
-        array_Integer1 = null;
-
-
-        m1 = getFreeMemory();
-        Integer[] array_Integer2 = new Integer[N];
-        for (i = 0; i < N; i++) {
-            array_Integer2[i] = new Integer(128 + i);  // 128+i so interning does not matter (or rather matters less?)
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_Integer2);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_Integer2, VisibilityFilter.ALL);
-        printArrayMemoryUse("Integer[N] and N Integer");
-        array_Integer2 = null;
-
-
-        m1 = getFreeMemory();
-        Long[] array_Long = new Long[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_Long);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_Long, VisibilityFilter.ALL);
-        printArrayMemoryUse("Long[N]");
-        array_Long = null;
-
-
-        m1 = getFreeMemory();
-        array_Long = new Long[N];
-        for (i = 0; i < N; i++) {
-            array_Long[i] = new Long(1280 + i);  // 128+i so interning does not matter (or rather matters less?)
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_Long);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_Long, VisibilityFilter.ALL);
-        printArrayMemoryUse("Long[N] and N Long");
-        array_Long = null;
-
-
-
-        m1 = getFreeMemory();
-        BigInteger[] array_BigInteger = new BigInteger[N];
-        for (i = 0; i < N; i++) {
-            array_BigInteger[i] = new BigInteger(String.format("%s", 12345678 + i));  // 128+i so interning does not matter (or rather matters less?)
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_BigInteger);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_BigInteger, VisibilityFilter.ALL);
-        printArrayMemoryUse("BigInteger[N] and N BigInteger");
-        array_BigInteger = null;
-
-
-        m1 = getFreeMemory();
-        BigDecimal[] array_BigDecimal1 = new BigDecimal[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_BigDecimal1);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_BigDecimal1, VisibilityFilter.ALL);
-        printArrayMemoryUse("BigDecimal[N]");
-        array_BigDecimal1 = null;
-        System.gc();
-
-
-
-        m1 = getFreeMemory();
-        BigDecimal[] array_BigDecimal2 = new BigDecimal[N];
-        for (i = 0; i < N; i++) {
-            array_BigDecimal2[i] = new BigDecimal(123456789.123456 + i);
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_BigDecimal2);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_BigDecimal2, VisibilityFilter.ALL);
-        printArrayMemoryUse("BigDecimal[N] and N BigDecimal");
-        array_BigDecimal2 = null;
-
-
-
-        m1 = getFreeMemory();
-        String[] array_String1 = new String[N];
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_String1);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_String1, VisibilityFilter.ALL);
-        printArrayMemoryUse("String[N]");
-        array_String1 = null;
-
-
-        m1 = getFreeMemory();
-        String[] array_String2 = new String[N];
-        for (i = 0; i < N; i++) {
-            array_String2[i] = "abcdefghij";
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_String2);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_String2, VisibilityFilter.ALL);
-        printArrayMemoryUse("String[N] and N literal string \"abcdefghij\" (w/ string interning?)");
-        array_String2 = null;
-
-
-
-        m1 = getFreeMemory();
-        String[] array_String3 = new String[N];
-        for (i = 0; i < N; i++) {
-            array_String3[i] = new String("abc0000000");
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_String3);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_String3, VisibilityFilter.ALL);
-        printArrayMemoryUse("String[N] and N new String(\"abc0000000\") (w/ string interning?)");
-        array_String3 = null;
-
-
-
-        m1 = getFreeMemory();
-        String[] array_String4 = new String[N];
-        for (i = 0; i < N; i++) {
-            array_String4[i] = String.format("abc%07d", i);
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_String4);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_String4, VisibilityFilter.ALL);
-        printArrayMemoryUse("String[N] and N different strings String.format(\"abc%07d\", i)");
-        array_String4 = null;
-
-
-        m1 = getFreeMemory();
-        EmptyClass[] array_EmptyClass = new EmptyClass[N];
-        for (i = 0; i < N; i++) {
-            array_EmptyClass[i] = new EmptyClass();
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_EmptyClass);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_EmptyClass, VisibilityFilter.ALL);
-        printArrayMemoryUse("EmptyClass[N] + N EmptyClass");
-        array_EmptyClass = null;
-
-
-        m1 = getFreeMemory();
-        SimpleClass[] array_SimpleClass = new SimpleClass[N];
-        for (i = 0; i < N; i++) {
-            array_SimpleClass[i] = new SimpleClass();
-        }
-        m2 = getFreeMemory();
-        m_obj = MemoryUtil.memoryUsageOf(array_SimpleClass);
-        m_deep = MemoryUtil.deepMemoryUsageOf(array_SimpleClass, VisibilityFilter.ALL);
-        printArrayMemoryUse("SimpleClass[N] + N SimpleClass");
-        array_SimpleClass = null;
-
-        printDivider();
-
     }
 
-    private static void printArrayMemoryUse(String type) {
+    private static void printArrayMemoryUse(Measurement measurement, String trials) {
+        String type = measurement.getName();
+        long m_used = measurement.getUsed();
+        long m_obj = measurement.getObj();
+        long m_deep = measurement.getDeep();
+        recordMemoryUse(measurement);
         System.out.println(
                 String.format(
-                        "| %75s | %9d %9d %9d | %6d %6d %6d | %6d %6d %6d | %19s |",
+                        "| %75s | %9d %9d %9d | %6d %6d %6d | %6d %6d %6d | %19s | %32s |",
                         type,
-                        (m1-m2), m_obj, m_deep,
-                        (m1-m2)/N, m_obj/N, m_deep/N,
-                        (m1-m2) - N * ((int) (m1 - m2)/N), m_obj - N*((int) m_obj/N), m_deep - N*((int) m_deep/N),
-                        (m1-m2) == m_deep ? String.format("%6d * N + %6d", m_deep/N, m_deep - N*((int) m_deep/N)) : "?"
+                        m_used, m_obj, m_deep,
+                        m_used/N, m_obj/N, m_deep/N,
+                        m_used - N * ((int) m_used/N), m_obj - N*((int) m_obj/N), m_deep - N*((int) m_deep/N),
+                        m_used == m_deep ? String.format("%6d * N + %6d", m_deep/N, m_deep - N*((int) m_deep/N)) : "?",
+                        trials
                 )
         );
     }
 
-    private static void printVariableMemoryUse(String type) {
+    private static void printVariableMemoryUse(Measurement measurement, String trials) {
+        long m_used = measurement.getUsed();
+        long m_obj = measurement.getObj();
+        long m_deep = measurement.getDeep();
+        recordMemoryUse(measurement);
         System.out.println(
                 String.format("| %75s | %9d %9d %9d | %6d %6d %6d |"
                                 + String.format(String.format("%%0%dd", 22), 0).replace("0", " ") + "|"
-                                + String.format(String.format("%%0%dd", 21), 0).replace("0", " ") + "|",
-                        type,
-                        (m1-m2), m_obj, m_deep,
-                        (m1-m2), m_obj, m_deep
+                                + String.format(String.format("%%0%dd", 21), 0).replace("0", " ") + "| %32s |",
+                        measurement.getName(),
+                        m_used, m_obj, m_deep,
+                        m_used, m_obj, m_deep,
+                        trials
                 )
         );
     }
 
+    private static void recordMemoryUse(Measurement measurement) {
+        String id = measurement.getId();
+        String type = measurement.getName();
+        int n = measurement.getN();
+        ResultsStore.record("table", id, type, n, "m1 - m2", "B", measurement.getUsed());
+        ResultsStore.record("table", id, type, n, "m_obj", "B", measurement.getObj());
+        ResultsStore.record("table", id, type, n, "m_deep", "B", measurement.getDeep());
+        ResultsStore.record("table", id, type, n, "m_deep / N", "B/elem", (double) measurement.getDeep() / n);
+        TrialStatistics statistics = measurement.getStatistics();
+        if (statistics != null) {
+            ResultsStore.record("table", id, type, n, "m1 - m2 CI low", "B", statistics.getCiLow());
+            ResultsStore.record("table", id, type, n, "m1 - m2 CI high", "B", statistics.getCiHigh());
+        }
+    }
+
     private static void printDivider() {
-        printLine("-", 179);
+        printLine("-", 214);
     }
 
     private static void printLine(String charStr, int width) {
@@ -576,8 +410,301 @@ public class JavaMemoryUseExperiment {
         return String.format(String.format("%%0%dd", width), 0).replace("0", charStr);
     }
 
+    /**
+     * Computed layout of every class the array rows contain, and the shallow size of
+     * each array and its first element next to what the VM reports, if the agent is loaded.
+     */
+    void printLayouts() {
+        System.out.println(ObjectSizes.getVmLayout());
+        System.out.println(SizeOfAgent.isLoaded()
+                ? "Instrumentation.getObjectSize() from SizeOfAgent"
+                : "SizeOfAgent not loaded, run with -javaagent:<project jar> to cross-check");
+        System.out.println();
+
+        List<Class<?>> printed = new ArrayList<Class<?>>();
+        printLine("-", 155);
+        System.out.println(String.format("| %75s | %14s %14s | %14s %14s |",
+                "array / first element", "array", "Instrument.", "element", "Instrument."));
+        printLine("-", 155);
+        int mismatches = 0;
+        for (Experiment experiment : arrayExperiments()) {
+            Object array = experiment.create(N);
+            Object element = array instanceof Object[] && N > 0 ? ((Object[]) array)[0] : null;
+            long arraySize = ObjectSizes.sizeOf(array);
+            long arrayCheck = SizeOfAgent.getObjectSize(array);
+            long elementSize = ObjectSizes.sizeOf(element);
+            long elementCheck = element == null ? 0 : SizeOfAgent.getObjectSize(element);
+            if (SizeOfAgent.isLoaded() && (arraySize != arrayCheck || elementSize != elementCheck)) {
+                mismatches++;
+            }
+            System.out.println(String.format("| %75s | %14d %14s | %14d %14s |",
+                    experiment.getName(), arraySize, arrayCheck < 0 ? "-" : Long.toString(arrayCheck),
+                    elementSize, elementCheck < 0 ? "-" : Long.toString(elementCheck)));
+            if (element != null && !printed.contains(element.getClass())) {
+                printed.add(element.getClass());
+            }
+        }
+        printLine("-", 155);
+        if (SizeOfAgent.isLoaded()) {
+            System.out.println(mismatches == 0 ? "all sizes agree with Instrumentation"
+                    : mismatches + " rows disagree with Instrumentation");
+        }
+        System.out.println();
+        for (Class<?> type : printed) {
+            ClassLayout layout = ObjectSizes.layoutOf(type);
+            System.out.println(layout);
+        }
+    }
+
+    private static void analyzeHeapDump(File file) throws IOException {
+        List<Object> instances = new ArrayList<Object>();
+        if (file == null) {
+            // a dump of our own heap, with every array row alive in it
+            for (Experiment experiment : new JavaMemoryUseExperiment().arrayExperiments()) {
+                instances.add(experiment.create(N));
+            }
+            file = File.createTempFile("java-memory-use-experiment", ".hprof");
+            file.delete();
+            file.deleteOnExit();
+            ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).dumpHeap(file.getPath(), true);
+            System.out.println(String.format("dumped %d bytes to %s holding %d structures at N=%d",
+                    file.length(), file, instances.size(), N));
+        }
+        HeapDumpAnalyzer analyzer = HeapDumpAnalyzer.fromSystemProperties();
+        long t1 = System.nanoTime();
+        analyzer.analyze(file.toPath());
+        long t2 = System.nanoTime();
+        System.out.println(String.format("analyzed %s in %.1f s", file, (t2 - t1) / 1e9));
+        analyzer.printClassTable(Integer.getInteger("hprof.top", 40));
+        analyzer.printBoxedWaste();
+        instances.clear();
+    }
+
+    /**
+     * Usage:
+     *
+     *     JavaMemoryUseExperiment            the table at N = 800
+     *     JavaMemoryUseExperiment sweep      scaling curves of the array rows, see ScalingSweep
+     *     JavaMemoryUseExperiment collections
+     *                                        java.util collections vs. primitive containers, see CollectionsSuite
+     *     JavaMemoryUseExperiment throughput [results.csv]
+     *                                        footprint next to JMH results of StructureBenchmark, see ThroughputReport
+     *     JavaMemoryUseExperiment records    object-per-record vs. struct-of-arrays vs. off-heap, see RecordLayoutSuite
+     *     JavaMemoryUseExperiment fork       the array rows, each in its own child JVM, in parallel, see ForkedRunner
+     *     JavaMemoryUseExperiment hprof [file.hprof]
+     *                                        per-class footprint of a heap dump, see HeapDumpAnalyzer; without a
+     *                                        file, dumps this JVM holding the array rows and analyzes that
+     *     JavaMemoryUseExperiment layout     field layouts of the element classes, checked against
+     *                                        Instrumentation.getObjectSize() when run with the SizeOfAgent
+     *     JavaMemoryUseExperiment deepsize   time of deep size walks over graphs of 10^6+ objects
+     *     JavaMemoryUseExperiment strings    duplicate string ids: interning, G1 deduplication, UTF-8 storage
+     *     JavaMemoryUseExperiment compare <baseline.jsonl> <candidate.jsonl>
+     *                                        structures whose cost rose or rate fell beyond -Dcompare.threshold
+     *                                        percent between two result files; exit status 2 if any did
+     *     JavaMemoryUseExperiment matrix     the array rows under a grid of layout, heap and GC flags, see FlagMatrix
+     *     JavaMemoryUseExperiment live       background sampled footprint of growing structures over JMX and
+     *                                        a Prometheus endpoint, against the exact deep size
+     *     JavaMemoryUseExperiment concurrent footprint against throughput of contended counters and maps,
+     *                                        1..nCPU threads (-XX:-RestrictContended for the @Contended rows)
+     *     JavaMemoryUseExperiment columns    boxed numbers vs. scaled-long, frame-of-reference and bit-packed columns
+     *     JavaMemoryUseExperiment bigarray   heap arrays vs. memory-mapped LongBigArray/DoubleBigArray: RSS, restart, scans
+     *     JavaMemoryUseExperiment generics   GenericArray<E> of boxed values vs. generated IntArray/LongArray/DoubleArray
+     *     JavaMemoryUseExperiment scale      array rows at 10^8..10^9 elements filled in parallel, largest N for -Xmx
+     *     JavaMemoryUseExperiment allocations
+     *                                        JFR allocation sites behind each row, structure vs. meter
+     *                                        (-XX:+UseG1GC -XX:-UseTLAB to record every allocation)
+     *     JavaMemoryUseExperiment churn      GC pauses and mutator throughput with a live set of each array experiment
+     *                                        under constant replacement, ranked by GC cost per live GB
+     *     JavaMemoryUseExperiment run [--include <glob>,...] [--exclude <glob>,...] [--n <N>] [--repeat <count>]
+     *                                 [--format table|csv|jsonl] [--list]
+     *                                        selected experiments of all ExperimentProviders on the classpath
+     *     JavaMemoryUseExperiment measure <id>...
+     *                                        (child JVM side of fork) print a RESULT line per experiment id
+     */
     public static void main(String[] args) {
-        new JavaMemoryUseExperiment();
+        meter = MemoryMeters.fromSystemProperty();
+        String mode = args.length > 0 ? args[0] : "table";
+        if ("table".equals(mode)) {
+            teeOutput("output/stdout.log", "output/stderr.log");
+            checkHarnessNoise(false);
+            new JavaMemoryUseExperiment().printTable();
+        } else if ("sweep".equals(mode)) {
+            teeOutput("output/sweep_stdout.log", "output/sweep_stderr.log");
+            checkHarnessNoise(false);
+            ScalingSweep.fromSystemProperties(meter).run(new JavaMemoryUseExperiment().arrayExperiments());
+        } else if ("collections".equals(mode)) {
+            teeOutput("output/collections_stdout.log", "output/collections_stderr.log");
+            checkHarnessNoise(false);
+            CollectionsSuite.fromSystemProperties(meter).run();
+        } else if ("throughput".equals(mode)) {
+            teeOutput("output/throughput_stdout.log", "output/throughput_stderr.log");
+            ThroughputReport report = new ThroughputReport(meter);
+            String results = args.length > 1 ? args[1] : "build/reports/jmh/results.csv";
+            try {
+                report.load(results);
+            } catch (IOException ex) {
+                System.err.println("Could not read JMH results " + results + ": " + ex.getMessage());
+                System.exit(1);
+            }
+            report.print(new JavaMemoryUseExperiment().arrayExperiments());
+        } else if ("records".equals(mode)) {
+            teeOutput("output/records_stdout.log", "output/records_stderr.log");
+            checkHarnessNoise(false);
+            RecordLayoutSuite.fromSystemProperties(meter).run();
+        } else if ("fork".equals(mode)) {
+            teeOutput("output/fork_stdout.log", "output/fork_stderr.log");
+            ForkedRunner runner = ForkedRunner.fromSystemProperties();
+            long t1 = System.nanoTime();
+            List<Measurement> measurements;
+            try {
+                measurements = runner.run(new JavaMemoryUseExperiment().arrayExperiments());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long t2 = System.nanoTime();
+            printHeader(null);
+            for (Measurement measurement : measurements) {
+                printArrayMemoryUse(measurement, "1");
+            }
+            printDivider();
+            System.out.println(String.format("%d experiments in %d child JVMs at a time with %s, %.1f s",
+                    measurements.size(), runner.getForks(), runner.getJvmArgs(), (t2 - t1) / 1e9));
+        } else if ("hprof".equals(mode)) {
+            teeOutput("output/hprof_stdout.log", "output/hprof_stderr.log");
+            try {
+                analyzeHeapDump(args.length > 1 ? new File(args[1]) : null);
+            } catch (IOException ex) {
+                System.err.println("Could not analyze heap dump: " + ex.getMessage());
+                System.exit(1);
+            }
+        } else if ("layout".equals(mode)) {
+            teeOutput("output/layout_stdout.log", "output/layout_stderr.log");
+            new JavaMemoryUseExperiment().printLayouts();
+        } else if ("deepsize".equals(mode)) {
+            teeOutput("output/deepsize_stdout.log", "output/deepsize_stderr.log");
+            DeepSizeSuite.fromSystemProperties().run();
+        } else if ("strings".equals(mode)) {
+            teeOutput("output/strings_stdout.log", "output/strings_stderr.log");
+            StringSuite.fromSystemProperties().run();
+        } else if ("matrix".equals(mode)) {
+            teeOutput("output/matrix_stdout.log", "output/matrix_stderr.log");
+            try {
+                FlagMatrix.fromSystemProperties().run(new JavaMemoryUseExperiment().arrayExperiments());
+            } catch (IOException ex) {
+                System.err.println("Could not run the flag matrix: " + ex.getMessage());
+                System.exit(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        } else if ("live".equals(mode)) {
+            teeOutput("output/live_stdout.log", "output/live_stderr.log");
+            try {
+                LiveFootprintSuite.fromSystemProperties().run();
+            } catch (IOException ex) {
+                System.err.println("Could not run the live footprint suite: " + ex.getMessage());
+                System.exit(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        } else if ("concurrent".equals(mode)) {
+            teeOutput("output/concurrent_stdout.log", "output/concurrent_stderr.log");
+            try {
+                ConcurrencySuite.fromSystemProperties().run();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        } else if ("columns".equals(mode)) {
+            teeOutput("output/columns_stdout.log", "output/columns_stderr.log");
+            NumericColumnSuite.fromSystemProperties().run();
+        } else if ("bigarray".equals(mode)) {
+            teeOutput("output/bigarray_stdout.log", "output/bigarray_stderr.log");
+            checkHarnessNoise(false);
+            try {
+                BigArraySuite.fromSystemProperties(meter).run();
+            } catch (IOException ex) {
+                System.err.println("Could not run the big array suite: " + ex.getMessage());
+                System.exit(1);
+            }
+        } else if ("generics".equals(mode)) {
+            teeOutput("output/generics_stdout.log", "output/generics_stderr.log");
+            checkHarnessNoise(false);
+            GenericContainerSuite.fromSystemProperties(meter).run();
+        } else if ("scale".equals(mode)) {
+            teeOutput("output/scale_stdout.log", "output/scale_stderr.log");
+            ScaleSuite.fromSystemProperties().run();
+        } else if ("allocations".equals(mode)) {
+            teeOutput("output/allocations_stdout.log", "output/allocations_stderr.log");
+            checkHarnessNoise(false);
+            try {
+                AllocationProfileSuite.fromSystemProperties(meter, ExperimentRegistry.load(), N).run();
+            } catch (IOException ex) {
+                System.err.println("Could not record allocations: " + ex.getMessage());
+                System.exit(1);
+            }
+        } else if ("churn".equals(mode)) {
+            teeOutput("output/churn_stdout.log", "output/churn_stderr.log");
+            ChurnSuite.fromSystemProperties(new JavaMemoryUseExperiment().arrayExperiments()).run();
+        } else if ("run".equals(mode)) {
+            // no tee: csv and jsonl output is meant for pipes
+            RunCommand command;
+            try {
+                command = RunCommand.parse(args, 1, N);
+            } catch (IllegalArgumentException ex) {
+                System.err.println(ex.getMessage());
+                System.exit(1);
+                return;
+            }
+            checkHarnessNoise(true);
+            if (command.run(ExperimentRegistry.load(), Trials.fromSystemProperties(meter)) == 0) {
+                System.err.println("No experiment matches the --include and --exclude patterns.");
+                System.exit(1);
+            }
+        } else if ("compare".equals(mode)) {
+            if (args.length != 3) {
+                System.err.println("Usage: compare <baseline.jsonl> <candidate.jsonl>");
+                System.exit(1);
+            }
+            int regressed;
+            try {
+                regressed = RegressionCompare.fromSystemProperties().compare(
+                        ResultsStore.read(new File(args[1])), ResultsStore.read(new File(args[2])));
+            } catch (IOException ex) {
+                System.err.println("Could not read results: " + ex.getMessage());
+                System.exit(1);
+                return;
+            }
+            if (regressed > 0) {
+                System.exit(2);
+            }
+        } else if ("measure".equals(mode)) {
+            // no tee: the parent collects stdout
+            checkHarnessNoise(true);
+            List<Experiment> experiments = new JavaMemoryUseExperiment().arrayExperiments();
+            for (int a = 1; a < args.length; a++) {
+                Experiment experiment = null;
+                for (Experiment e : experiments) {
+                    if (e.getId().equals(args[a])) {
+                        experiment = e;
+                    }
+                }
+                if (experiment == null) {
+                    System.err.println("No experiment with id \"" + args[a] + "\".");
+                    System.exit(1);
+                }
+                System.out.println(ForkedRunner.formatResult(measure(experiment, N)));
+            }
+        } else {
+            System.err.println("Unknown mode \"" + mode + "\", expected \"table\", \"sweep\", \"collections\", "
+                    + "\"throughput\", \"records\", \"fork\", \"hprof\", \"layout\", \"deepsize\", \"strings\", \"matrix\", \"live\", \"concurrent\", \"columns\", \"bigarray\", \"churn\", \"generics\", \"scale\", \"allocations\", \"run\" or \"compare\".");
+            System.exit(1);
+        }
+        if (ResultsStore.getFile() != null) {
+            System.out.println("results written to " + ResultsStore.getFile());
+        }
     }
 }
 
@@ -0,0 +1,171 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import net.meng6.java_memory_use_experiment.live.FootprintSampler;
+import net.meng6.java_memory_use_experiment.live.PrometheusEndpoint;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * `FootprintSampler` watching structures that grow while it runs, as in a service:
+ *
+ * * `HashMap<Long, String>`: sampled through its `Node[]` table
+ * * `ArrayList<BigDecimal>`: sampled through its `Object[]`
+ * * `LinkedList<Long>`: too deep for the object budget, so a lower bound
+ *
+ * Once a second the suite prints each sampler estimate, whether it is exact, sampled
+ * or a lower bound, next to the exact `ObjectSizes.deepSizeOf`, and the CPU the
+ * sampler used as a share of one core, which must stay below its budget. While the structures grow the estimates lag
+ * behind by up to a round of the sampler; the `end` rows, taken after one more round
+ * once growth stopped, show the error of the sampling itself and are recorded. At
+ * the end the suite scrapes its own Prometheus endpoint and prints the response.
+ *
+ * ## Configuration
+ *
+ * * `-Dlive.seconds=10`: how long to run
+ * * `-Dlive.growth=20000`: elements added to each structure per second
+ * * `-Dlive.port=0`: port of the endpoint, 0 for any free one
+ * * and the `-Dlive.*` properties of `FootprintSampler`; here the interval defaults to 500 ms
+ *   and the object budget to 10000, so that estimates keep up within the CPU budget
+ */
+public class LiveFootprintSuite {
+
+    private final int seconds;
+    private final int growth;
+    private final int port;
+
+    public LiveFootprintSuite(int seconds, int growth, int port) {
+        this.seconds = seconds;
+        this.growth = growth;
+        this.port = port;
+    }
+
+    public static LiveFootprintSuite fromSystemProperties() {
+        if (System.getProperty("live.intervalMillis") == null) {
+            System.setProperty("live.intervalMillis", "500");
+        }
+        if (System.getProperty("live.maxObjects") == null) {
+            System.setProperty("live.maxObjects", "10000");
+        }
+        return new LiveFootprintSuite(
+                Integer.getInteger("live.seconds", 10),
+                Integer.getInteger("live.growth", 20000),
+                Integer.getInteger("live.port", 0));
+    }
+
+    public void run() throws IOException, InterruptedException {
+        final Map<Long, String> map = new HashMap<Long, String>();
+        final List<BigDecimal> list = new ArrayList<BigDecimal>();
+        final LinkedList<Long> linked = new LinkedList<Long>();
+
+        FootprintSampler sampler = FootprintSampler.fromSystemProperties();
+        sampler.register("HashMap<Long, String>", map);
+        sampler.register("ArrayList<BigDecimal>", list);
+        sampler.register("LinkedList<Long>", linked);
+        PrometheusEndpoint endpoint = new PrometheusEndpoint(sampler).start(port);
+        System.out.println(String.format("cpu budget = %.1f%% of one core, metrics at http://127.0.0.1:%d/metrics",
+                100 * sampler.getCpuBudget(), endpoint.getPort()));
+
+        printDivider();
+        System.out.println(String.format("| %4s | %24s | %10s | %14s | %-11s | %14s | %8s | %12s |",
+                "s", "structure", "elements", "estimate", "", "deepSizeOf", "error", "sampler CPU"));
+        printDivider();
+        Object[] structures = { map, list, linked };
+        long start = System.nanoTime();
+        long next = 0;
+        for (int s = 1; s <= seconds; s++) {
+            // grow in ten steps per second; the sampler reads without locking, as it would in a service
+            for (int step = 0; step < 10; step++) {
+                synchronized (map) {
+                    for (int i = 0; i < growth / 10; i++, next++) {
+                        map.put(1280 + next * 2654435761L, String.format("order-%09d", next));
+                        list.add(BigDecimal.valueOf(next, 2));
+                        linked.add(1280 + next);
+                    }
+                }
+                if (s == 1 && step == 0) {
+                    // the first, JIT-cold round takes long enough that the CPU budget holds off the second
+                    // for a second or two; started on empty structures it would show 48 B all that time
+                    sampler.start();
+                }
+                Thread.sleep(100);
+            }
+            printRows(Integer.toString(s), sampler, next, structures, start, false);
+        }
+        printDivider();
+        // let every structure be re-estimated once after the last change, so the estimates are not stale
+        long settled = System.currentTimeMillis();
+        for (FootprintSampler.Registration r : sampler.getRegistrations()) {
+            while (r.getLastUpdateMillis() <= settled && System.currentTimeMillis() - settled < 60000) {
+                Thread.sleep(50);
+            }
+        }
+        printRows("end", sampler, next, structures, start, true);
+        printDivider();
+        System.out.println(String.format("%d estimates, %.3f s sampler CPU in %.1f s",
+                sampler.getEstimates(), sampler.getCpuNanos() / 1e9, (System.nanoTime() - start) / 1e9));
+
+        System.out.println();
+        System.out.println("GET /metrics:");
+        System.out.print(scrape(endpoint.getPort()));
+        endpoint.close();
+        sampler.close();
+    }
+
+    private static void printRows(String time, FootprintSampler sampler, long elements, Object[] structures,
+                                  long start, boolean record) {
+        double cpuShare = sampler.getCpuNanos() / (double) (System.nanoTime() - start);
+        List<FootprintSampler.Registration> registrations = sampler.getRegistrations();
+        for (int i = 0; i < registrations.size(); i++) {
+            FootprintSampler.Registration r = registrations.get(i);
+            long exact;
+            synchronized (structures[0]) {  // the lock the writer holds
+                exact = ObjectSizes.deepSizeOf(structures[i]);
+            }
+            long estimate = r.getEstimatedBytes();
+            System.out.println(String.format("| %4s | %24s | %10d | %14d | %-11s | %14d | %7.1f%% | %11.2f%% |",
+                    time, r.getName(), elements, estimate,
+                    r.isExact() ? "exact" : r.isLowerBound() ? "lower bound" : "sampled", exact,
+                    estimate < 0 ? 0.0 : 100.0 * (estimate - exact) / exact, 100 * cpuShare));
+            if (record) {
+                ResultsStore.record("live", r.getName(), r.getName() + " estimate", elements, "estimatedBytes", "B", estimate);
+                ResultsStore.record("live", r.getName(), r.getName() + " exact", elements, "deepSize", "B", exact);
+            }
+        }
+    }
+
+    private static String scrape(int port) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/metrics").openConnection();
+        InputStream in = connection.getInputStream();
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+            connection.disconnect();
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 122), 0).replace("0", "-"));
+    }
+}
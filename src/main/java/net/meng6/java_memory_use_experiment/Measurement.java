@@ -0,0 +1,70 @@
+package net.meng6.java_memory_use_experiment;
+
+import net.meng6.java_memory_use_experiment.stats.TrialStatistics;
+
+/**
+ * ## Summary
+ *
+ * One row of the table: an experiment measured at N.
+ *
+ * * `used`: `MemoryMeter.used(m1, m2)`, the `m1 - m2` column
+ * * `m_obj`: shallow size of the object
+ * * `m_deep`: size of the object and everything reachable from it
+ * * `statistics`: of `used` over repeated trials, if there were any; `used` is then
+ *   their median
+ */
+public class Measurement {
+
+    private final String id;
+    private final String name;
+    private final int n;
+    private final long used;
+    private final long m_obj;
+    private final long m_deep;
+    private final TrialStatistics statistics;
+
+    public Measurement(String id, String name, int n, long used, long m_obj, long m_deep) {
+        this(id, name, n, used, m_obj, m_deep, null);
+    }
+
+    public Measurement(String id, String name, int n, long used, long m_obj, long m_deep, TrialStatistics statistics) {
+        this.id = id;
+        this.name = name;
+        this.n = n;
+        this.used = used;
+        this.m_obj = m_obj;
+        this.m_deep = m_deep;
+        this.statistics = statistics;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public long getUsed() {
+        return used;
+    }
+
+    public long getObj() {
+        return m_obj;
+    }
+
+    public long getDeep() {
+        return m_deep;
+    }
+
+    /**
+     * @return null if measured once
+     */
+    public TrialStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,131 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.Arrays;
+
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+
+/**
+ * ## Summary
+ *
+ * Preallocated rows of `MemoryMeter` readings, so that taking a measurement allocates
+ * nothing outside the code under test:
+ *
+ *     rows.begin("Integer", 1);
+ *     Integer var_Integer = Integer.valueOf(12345);
+ *     rows.end();
+ *     rows.setSizes(ObjectSizes.sizeOf(var_Integer), ObjectSizes.deepSizeOf(var_Integer));
+ *     ...
+ *     for (int i = 0; i < rows.size(); i++) { ... rows.getUsed(i) ... }
+ *
+ * `begin` and `end` only store the readings, the name and N into primitive and
+ * reference arrays sized in the constructor. The name is passed to `begin`, before
+ * the first reading: the first execution of a string literal creates the `String`.
+ * Sizes, results and formatting are computed after `end`, and a table is best printed
+ * once all rows are taken, so that no garbage from formatting is around when the next
+ * row is measured.
+ *
+ * `noise` measures rows around no code at all: whatever they report is the harness's
+ * own allocation (or, for the `gc` meter, the jitter of its readings), which is in
+ * every other row too.
+ */
+public class MeasurementBuffer {
+
+    private final MemoryMeter meter;
+    private final String[] names;
+    private final int[] ns;
+    private final long[] m1;
+    private final long[] m2;
+    private final long[] m_obj;
+    private final long[] m_deep;
+    private int size;
+
+    public MeasurementBuffer(MemoryMeter meter, int capacity) {
+        this.meter = meter;
+        this.names = new String[capacity];
+        this.ns = new int[capacity];
+        this.m1 = new long[capacity];
+        this.m2 = new long[capacity];
+        this.m_obj = new long[capacity];
+        this.m_deep = new long[capacity];
+    }
+
+    /**
+     * Starts the next row and takes its first reading.
+     */
+    public void begin(String name, int n) {
+        if (size == names.length) {
+            throw new IllegalStateException("all " + names.length + " rows are taken");
+        }
+        names[size] = name;
+        ns[size] = n;
+        m1[size] = meter.sample();
+    }
+
+    /**
+     * Takes the second reading and completes the row.
+     */
+    public void end() {
+        m2[size] = meter.sample();
+        size++;
+    }
+
+    /**
+     * Shallow and deep size of the object measured by the last row.
+     */
+    public void setSizes(long obj, long deep) {
+        m_obj[size - 1] = obj;
+        m_deep[size - 1] = deep;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public int getN(int row) {
+        return ns[row];
+    }
+
+    public long getUsed(int row) {
+        return meter.used(m1[row], m2[row]);
+    }
+
+    public long getObj(int row) {
+        return m_obj[row];
+    }
+
+    public long getDeep(int row) {
+        return m_deep[row];
+    }
+
+    public Measurement getMeasurement(int row) {
+        return new Measurement(Experiment.idOf(names[row]), names[row], ns[row], getUsed(row), m_obj[row], m_deep[row]);
+    }
+
+    /**
+     * Largest `|m1 - m2|` of up to `runs` empty rows, taking no more than about `millis`
+     * (the `gc` meter needs seconds per row) but at least one row.
+     */
+    public static long noise(MemoryMeter meter, int runs, long millis) {
+        MeasurementBuffer rows = new MeasurementBuffer(meter, runs);
+        long deadline = System.nanoTime() + millis * 1000000L;
+        long noise = 0;
+        for (int r = 0; r < runs; r++) {
+            rows.begin("(nothing)", 0);
+            rows.end();
+            noise = Math.max(noise, Math.abs(rows.getUsed(r)));
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        return noise;
+    }
+}
@@ -0,0 +1,301 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+
+import net.meng6.java_memory_use_experiment.columns.DecimalColumn;
+import net.meng6.java_memory_use_experiment.columns.FrameOfReferenceLongColumn;
+import net.meng6.java_memory_use_experiment.columns.PackedIntColumn;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+
+/**
+ * ## Summary
+ *
+ * Boxed numbers in a table column against compact column types, for three kinds of
+ * data:
+ *
+ * * amounts of money with 2 decimals, one in 10000 with 4: `BigDecimal[N]` against
+ *   a `DecimalColumn` of scale 2, which keeps the 4 decimal ones as `BigDecimal`
+ * * epoch millisecond timestamps about a second apart: `Long[N]` and `long[N]`
+ *   against a `FrameOfReferenceLongColumn`
+ * * quantities between 0 and 1000: `Integer[N]` and `int[N]` against a
+ *   `PackedIntColumn`
+ *
+ * For each column the suite reports the retained size (`ObjectSizes.deepSizeOf`),
+ * relative to the boxed column of the same data, the time per element of a
+ * sequential sum, and the time of a get at a random index. Gets of `BigDecimal`
+ * include creating it, which the JIT may elide when the value does not escape.
+ *
+ * ## Configuration
+ *
+ * * `-Dcolumns.n=1000000`: comma-separated element counts
+ * * `-Dcolumns.gets=1000000`: random gets per timed run
+ * * `-Dcolumns.scans=5`: timed runs per column, the fastest one is reported
+ */
+public class NumericColumnSuite {
+
+    private final int[] ns;
+    private final int gets;
+    private final int scans;
+
+    // keeps the column under test reachable, and results alive
+    private static Object keep;
+    private static long sink;
+
+    // sum of the boxed column of the current data
+    private Long expectedSum;
+
+    private static class Column {
+        final String name;
+        final Supplier<Object> build;
+        final ToLongFunction<Object> sum;
+        final ToLongBiFunction<Object, int[]> get;
+        // first column of its data: the others are compared with it
+        final boolean boxed;
+
+        Column(String name, boolean boxed, Supplier<Object> build, ToLongFunction<Object> sum,
+               ToLongBiFunction<Object, int[]> get) {
+            this.name = name;
+            this.boxed = boxed;
+            this.build = build;
+            this.sum = sum;
+            this.get = get;
+        }
+    }
+
+    public NumericColumnSuite(int[] ns, int gets, int scans) {
+        this.ns = ns;
+        this.gets = gets;
+        this.scans = scans;
+    }
+
+    public static NumericColumnSuite fromSystemProperties() {
+        String[] values = System.getProperty("columns.n", "1000000").split(",");
+        int[] ns = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Integer.parseInt(values[i].trim());
+        }
+        return new NumericColumnSuite(ns,
+                Integer.getInteger("columns.gets", 1000000),
+                Integer.getInteger("columns.scans", 5));
+    }
+
+    static List<Column> columns(final int n) {
+        final BigDecimal[] amounts = new BigDecimal[n];
+        final long[] timestamps = new long[n];
+        final int[] quantities = new int[n];
+        long t = 1500000000000L;
+        for (int i = 0; i < n; i++) {
+            long h = (i + 1) * 2654435761L;
+            amounts[i] = i % 10000 == 9999
+                    ? BigDecimal.valueOf(Math.floorMod(h >>> 3, 100000000L), 4)
+                    : BigDecimal.valueOf(Math.floorMod(h, 10000000L), 2);
+            t += 500 + Math.floorMod(h, 1000L);
+            timestamps[i] = t;
+            quantities[i] = (int) Math.floorMod(h >>> 7, 1001L);
+        }
+
+        List<Column> columns = new ArrayList<Column>();
+        columns.add(new Column("BigDecimal[N] and N BigDecimal (amounts)", true, () -> amounts.clone(), o -> {
+            BigDecimal sum = BigDecimal.ZERO;
+            for (BigDecimal value : (BigDecimal[]) o) {
+                sum = sum.add(value);
+            }
+            // equal sums may differ in scale
+            return sum.stripTrailingZeros().hashCode();
+        }, (o, indexes) -> {
+            BigDecimal[] array = (BigDecimal[]) o;
+            long h = 0;
+            for (int i : indexes) {
+                h += array[i].hashCode();
+            }
+            return h;
+        }));
+        columns.add(new Column("DecimalColumn, scale 2 (amounts)", false, () -> {
+            DecimalColumn column = new DecimalColumn(n, 2);
+            for (int i = 0; i < n; i++) {
+                column.set(i, amounts[i]);
+            }
+            return column;
+        }, o -> ((DecimalColumn) o).sum().stripTrailingZeros().hashCode(), (o, indexes) -> {
+            DecimalColumn column = (DecimalColumn) o;
+            long h = 0;
+            for (int i : indexes) {
+                h += column.get(i).hashCode();
+            }
+            return h;
+        }));
+
+        columns.add(new Column("Long[N] and N Long (timestamps)", true, () -> {
+            Long[] array = new Long[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = timestamps[i];
+            }
+            return array;
+        }, o -> {
+            long sum = 0;
+            for (Long value : (Long[]) o) {
+                sum += value;
+            }
+            return sum;
+        }, (o, indexes) -> {
+            Long[] array = (Long[]) o;
+            long sum = 0;
+            for (int i : indexes) {
+                sum += array[i];
+            }
+            return sum;
+        }));
+        columns.add(new Column("long[N] (timestamps)", false, () -> timestamps.clone(), o -> {
+            long sum = 0;
+            for (long value : (long[]) o) {
+                sum += value;
+            }
+            return sum;
+        }, (o, indexes) -> {
+            long[] array = (long[]) o;
+            long sum = 0;
+            for (int i : indexes) {
+                sum += array[i];
+            }
+            return sum;
+        }));
+        columns.add(new Column("FrameOfReferenceLongColumn (timestamps)", false,
+                () -> FrameOfReferenceLongColumn.of(timestamps),
+                o -> ((FrameOfReferenceLongColumn) o).sum(), (o, indexes) -> {
+            FrameOfReferenceLongColumn column = (FrameOfReferenceLongColumn) o;
+            long sum = 0;
+            for (int i : indexes) {
+                sum += column.get(i);
+            }
+            return sum;
+        }));
+
+        columns.add(new Column("Integer[N] and N Integer (quantities)", true, () -> {
+            Integer[] array = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                // not Integer.valueOf: values up to 127 would share the cached Integers,
+                // and the baseline is one box per element
+                @SuppressWarnings("removal")
+                Integer boxed = new Integer(quantities[i]);
+                array[i] = boxed;
+            }
+            return array;
+        }, o -> {
+            long sum = 0;
+            for (Integer value : (Integer[]) o) {
+                sum += value;
+            }
+            return sum;
+        }, (o, indexes) -> {
+            Integer[] array = (Integer[]) o;
+            long sum = 0;
+            for (int i : indexes) {
+                sum += array[i];
+            }
+            return sum;
+        }));
+        columns.add(new Column("int[N] (quantities)", false, () -> quantities.clone(), o -> {
+            long sum = 0;
+            for (int value : (int[]) o) {
+                sum += value;
+            }
+            return sum;
+        }, (o, indexes) -> {
+            int[] array = (int[]) o;
+            long sum = 0;
+            for (int i : indexes) {
+                sum += array[i];
+            }
+            return sum;
+        }));
+        columns.add(new Column("PackedIntColumn (quantities)", false, () -> PackedIntColumn.of(quantities),
+                o -> ((PackedIntColumn) o).sum(), (o, indexes) -> {
+            PackedIntColumn column = (PackedIntColumn) o;
+            long sum = 0;
+            for (int i : indexes) {
+                sum += column.get(i);
+            }
+            return sum;
+        }));
+        return columns;
+    }
+
+    public void run() {
+        printDivider();
+        System.out.println(String.format("| %50s | %10s | %14s | %10s | %8s | %12s | %10s |",
+                "column", "N", "retained bytes", "bytes/elem", "vs boxed", "sum ns/elem", "get ns"));
+        printDivider();
+        for (int n : ns) {
+            int[] indexes = new int[gets];
+            for (int g = 0; g < gets; g++) {
+                indexes[g] = (int) Math.floorMod(g * 0x9E3779B97F4A7C15L, (long) n);
+            }
+            long baseline = 0;
+            for (Column column : columns(n)) {
+                if (column.boxed) {
+                    baseline = 0;
+                    expectedSum = null;
+                }
+                long retained = measure(column, n, indexes, baseline);
+                if (column.boxed) {
+                    baseline = retained;
+                }
+            }
+            printDivider();
+        }
+    }
+
+    private long measure(Column column, int n, int[] indexes, long baseline) {
+        try {
+            keep = column.build.get();
+        } catch (OutOfMemoryError e) {
+            keep = null;
+            System.out.println(String.format("| %50s | %10d | %s", column.name, n, "OutOfMemoryError: " + e.getMessage()));
+            return 0;
+        }
+        long retained = ObjectSizes.deepSizeOf(keep);
+
+        long bestSum = Long.MAX_VALUE;
+        long bestGet = Long.MAX_VALUE;
+        // one untimed run of each loop to compile it, and to check the sum against the boxed column
+        long sum = column.sum.applyAsLong(keep);
+        if (expectedSum == null) {
+            expectedSum = sum;
+        } else if (expectedSum != sum) {
+            System.err.println(column.name + ": sum differs from that of the boxed column");
+        }
+        sink += column.get.applyAsLong(keep, indexes);
+        for (int s = 0; s < scans; s++) {
+            long t1 = System.nanoTime();
+            sink += column.sum.applyAsLong(keep);
+            long t2 = System.nanoTime();
+            sink += column.get.applyAsLong(keep, indexes);
+            long t3 = System.nanoTime();
+            bestSum = Math.min(bestSum, t2 - t1);
+            bestGet = Math.min(bestGet, t3 - t2);
+        }
+        keep = null;
+
+        double sumPerElement = (double) bestSum / n;
+        double get = (double) bestGet / indexes.length;
+        System.out.println(String.format("| %50s | %10d | %14d | %10.2f | %8s | %12.2f | %10.2f |",
+                column.name, n, retained, (double) retained / n,
+                baseline == 0 ? "" : String.format("%.3f", (double) retained / baseline),
+                sumPerElement, get));
+        String id = Experiment.idOf(column.name);
+        ResultsStore.record("columns", id, column.name, n, "retained", "B/elem", (double) retained / n);
+        ResultsStore.record("columns", id, column.name, n, "sum", "ns/elem", sumPerElement);
+        ResultsStore.record("columns", id, column.name, n, "randomGet", "ns/elem", get);
+        return retained;
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 136), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,221 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+import net.meng6.java_memory_use_experiment.layout.SimpleRecordArrays;
+import net.meng6.java_memory_use_experiment.layout.SimpleRecordBuffer;
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+
+/**
+ * ## Summary
+ *
+ * Cost of the object-per-record layout of `SimpleClass` (an `int` and a `long`,
+ * 12 bytes of payload) against two record stores holding the same N records:
+ *
+ * * `SimpleRecordArrays`: on-heap struct of arrays, an `int[]` and a `long[]`
+ * * `SimpleRecordBuffer`: off-heap, 12 byte records in direct or file-mapped buffers
+ *
+ * For each layout the suite reports heap bytes (from the meter), native bytes (the
+ * change in `BufferPoolMXBean.getMemoryUsed()` of the `direct` and `mapped` pools),
+ * their sum extrapolated to 10^8 records, and the time per record of a scan that
+ * sums both fields.
+ *
+ * `SimpleRecord` below mirrors `SimpleClass` but is a static nested class, so that
+ * its objects do not carry the reference to an enclosing instance that every
+ * `SimpleClass` object has.
+ *
+ * ## Configuration
+ *
+ * * `-Drecords.n=1000000`: comma-separated record counts
+ * * `-Drecords.scans=5`: timed scans per layout, the fastest one is reported
+ */
+public class RecordLayoutSuite {
+
+    private static final long EXTRAPOLATE_TO = 100000000L;
+
+    private final MemoryMeter meter;
+    private final int[] ns;
+    private final int scans;
+
+    // keeps the structure under test reachable, and scan results alive
+    private static Object keep;
+    private static long sink;
+
+    static class SimpleRecord {
+        int member_int;
+        long member_long;
+    }
+
+    private static class Layout {
+        final String name;
+        final IntFunction<Object> build;
+        final ToLongFunction<Object> scan;
+
+        Layout(String name, IntFunction<Object> build, ToLongFunction<Object> scan) {
+            this.name = name;
+            this.build = build;
+            this.scan = scan;
+        }
+    }
+
+    public RecordLayoutSuite(MemoryMeter meter, int[] ns, int scans) {
+        this.meter = meter;
+        this.ns = ns;
+        this.scans = scans;
+    }
+
+    public static RecordLayoutSuite fromSystemProperties(MemoryMeter meter) {
+        String[] values = System.getProperty("records.n", "1000000").split(",");
+        int[] ns = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Integer.parseInt(values[i].trim());
+        }
+        return new RecordLayoutSuite(meter, ns, Integer.getInteger("records.scans", 5));
+    }
+
+    static List<Layout> layouts() {
+        List<Layout> layouts = new ArrayList<Layout>();
+        layouts.add(new Layout("SimpleRecord[N] + N SimpleRecord", n -> {
+            SimpleRecord[] records = new SimpleRecord[n];
+            for (int i = 0; i < n; i++) {
+                SimpleRecord record = new SimpleRecord();
+                record.member_int = i;
+                record.member_long = 31L * i;
+                records[i] = record;
+            }
+            return records;
+        }, o -> {
+            long sum = 0;
+            for (SimpleRecord record : (SimpleRecord[]) o) {
+                sum += record.member_int + record.member_long;
+            }
+            return sum;
+        }));
+        layouts.add(new Layout("SimpleRecordArrays (int[N] + long[N])", n -> {
+            SimpleRecordArrays records = new SimpleRecordArrays(n);
+            for (int i = 0; i < n; i++) {
+                records.set(i, i, 31L * i);
+            }
+            return records;
+        }, o -> ((SimpleRecordArrays) o).sum()));
+        layouts.add(new Layout("SimpleRecordBuffer.allocateDirect", n -> {
+            SimpleRecordBuffer records = SimpleRecordBuffer.allocateDirect(n);
+            for (int i = 0; i < n; i++) {
+                records.set(i, i, 31L * i);
+            }
+            return records;
+        }, o -> ((SimpleRecordBuffer) o).sum()));
+        layouts.add(new Layout("SimpleRecordBuffer.map", n -> {
+            try {
+                File file = File.createTempFile("simple-records", ".bin");
+                file.deleteOnExit();
+                SimpleRecordBuffer records = SimpleRecordBuffer.map(file.toPath(), n);
+                for (int i = 0; i < n; i++) {
+                    records.set(i, i, 31L * i);
+                }
+                return records;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, o -> ((SimpleRecordBuffer) o).sum()));
+        return layouts;
+    }
+
+    static long nativeMemoryUsed() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            used += pool.getMemoryUsed();
+        }
+        return used;
+    }
+
+    public void run() {
+        System.out.println(String.format("meter = %s (%s)", meter.getName(), meter.getDescription()));
+        printDivider();
+        System.out.println(String.format(
+                "| %50s | %11s | %14s %14s | %12s | %16s | %14s | %14s |",
+                "layout", "N", "heap bytes", "native bytes", "bytes/record",
+                "at 10^8 records", "scan ns/record", "M records/s"));
+        printDivider();
+        for (int n : ns) {
+            for (Layout layout : layouts()) {
+                measure(layout, n);
+            }
+            printDivider();
+        }
+    }
+
+    /**
+     * Direct and mapped buffers are only released once the collector has found them
+     * unreachable and their cleaner has run; wait for that so the previous layout is
+     * not subtracted from the next one.
+     */
+    static long settleNativeMemory() {
+        long before = nativeMemoryUsed();
+        for (int attempt = 0; attempt < 20; attempt++) {
+            System.gc();
+            try { Thread.sleep(50); } catch (InterruptedException x) { Thread.currentThread().interrupt(); }
+            long after = nativeMemoryUsed();
+            if (after == before) {
+                break;
+            }
+            before = after;
+        }
+        return before;
+    }
+
+    private void measure(Layout layout, int n) {
+        long m1, m2, native1, native2;
+        try {
+            // load classes and compile the fill loop, so they are not billed to the layout
+            keep = layout.build.apply(Math.min(n, 1000));
+            keep = null;
+            native1 = settleNativeMemory();
+            m1 = meter.sample();
+            keep = layout.build.apply(n);
+            m2 = meter.sample();
+            native2 = nativeMemoryUsed();
+        } catch (OutOfMemoryError e) {
+            keep = null;
+            System.out.println(String.format("| %50s | %11d | %s", layout.name, n, "OutOfMemoryError: " + e.getMessage()));
+            return;
+        }
+        long heap = meter.used(m1, m2);
+        long off_heap = native2 - native1;
+        double perRecord = (double) (heap + off_heap) / n;
+
+        long best = Long.MAX_VALUE;
+        // one untimed scan to compile the loop and fault in mapped pages
+        sink += layout.scan.applyAsLong(keep);
+        for (int s = 0; s < scans; s++) {
+            long t1 = System.nanoTime();
+            sink += layout.scan.applyAsLong(keep);
+            best = Math.min(best, System.nanoTime() - t1);
+        }
+        keep = null;
+
+        System.out.println(String.format(
+                "| %50s | %11d | %14d %14d | %12.2f | %13.2f GB | %14.3f | %14.1f |",
+                layout.name, n, heap, off_heap, perRecord,
+                perRecord * EXTRAPOLATE_TO / (1L << 30),
+                (double) best / n, n * 1000.0 / best));
+        String id = Experiment.idOf(layout.name);
+        ResultsStore.record("records", id, layout.name, n, "heap", "B", heap);
+        ResultsStore.record("records", id, layout.name, n, "native", "B", off_heap);
+        ResultsStore.record("records", id, layout.name, n, "bytes/record", "B/elem", perRecord);
+        ResultsStore.record("records", id, layout.name, n, "scan", "ns/elem", (double) best / n);
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 175), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,173 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.meng6.java_memory_use_experiment.results.ResultRecord;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.results.RunInfo;
+import net.meng6.java_memory_use_experiment.stats.TrialStatistics;
+
+/**
+ * ## Summary
+ *
+ * The `run` mode: measures the experiments of `ExperimentRegistry` selected on the
+ * command line with `Trials`, the way the table does, and prints the median of
+ * `m1 - m2`, its confidence interval, 10th and 90th percentile and the number of
+ * trials next to `m_obj` and `m_deep`:
+ *
+ *     JavaMemoryUseExperiment run [--include <glob>,...] [--exclude <glob>,...]
+ *                                 [--n <N>] [--repeat <count>] [--format table|csv|jsonl] [--list]
+ *
+ * `--repeat` takes exactly that many trials instead of stopping once the interval is
+ * tight (see `Trials` for the `-Dtrials.*` properties). `--list` prints the selected
+ * experiments instead of measuring them. Only the
+ * `table` format writes a results file; `csv` and `jsonl` print nothing but the data,
+ * `jsonl` as the records that would go to the file.
+ */
+public class RunCommand {
+
+    private static final List<String> FORMATS = Arrays.asList("table", "csv", "jsonl");
+
+    private static final String USAGE = "Usage: run [--include <glob>,...] [--exclude <glob>,...] [--n <N>] "
+            + "[--repeat <count>] [--format " + String.join("|", FORMATS) + "] [--list]";
+
+    private final List<String> includes = new ArrayList<String>();
+    private final List<String> excludes = new ArrayList<String>();
+    private int n;
+    private int repeat;
+    private String format = "table";
+    private boolean list;
+
+    private RunCommand(int n) {
+        this.n = n;
+    }
+
+    /**
+     * @param n default of `--n`
+     * @throws IllegalArgumentException with the usage for anything not understood
+     */
+    public static RunCommand parse(String[] args, int from, int n) {
+        RunCommand command = new RunCommand(n);
+        for (int a = from; a < args.length; a++) {
+            String option = args[a];
+            if ("--list".equals(option)) {
+                command.list = true;
+                continue;
+            }
+            if (a + 1 == args.length) {
+                throw new IllegalArgumentException("missing value of " + option + "\n" + USAGE);
+            }
+            String value = args[++a];
+            try {
+                if ("--include".equals(option)) {
+                    command.includes.addAll(Arrays.asList(value.split(",")));
+                } else if ("--exclude".equals(option)) {
+                    command.excludes.addAll(Arrays.asList(value.split(",")));
+                } else if ("--n".equals(option)) {
+                    command.n = Integer.parseInt(value);
+                } else if ("--repeat".equals(option)) {
+                    command.repeat = Integer.parseInt(value);
+                    if (command.repeat < 1) {
+                        throw new IllegalArgumentException("--repeat must be positive\n" + USAGE);
+                    }
+                } else if ("--format".equals(option)) {
+                    if (!FORMATS.contains(value)) {
+                        throw new IllegalArgumentException("invalid --format " + value + ", must be one of "
+                                + String.join(", ", FORMATS) + "\n" + USAGE);
+                    }
+                    command.format = value;
+                } else {
+                    throw new IllegalArgumentException("unknown option " + option + " " + value + "\n" + USAGE);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a number: " + option + " " + value + "\n" + USAGE);
+            }
+        }
+        if (command.n < 1) {
+            throw new IllegalArgumentException("--n must be positive\n" + USAGE);
+        }
+        return command;
+    }
+
+    /**
+     * @return the number of experiments selected
+     */
+    public int run(ExperimentRegistry registry, Trials trials) {
+        Map<String, List<Experiment>> selected = registry.select(includes, excludes);
+        List<String> suites = new ArrayList<String>();
+        List<Experiment> experiments = new ArrayList<Experiment>();
+        for (Map.Entry<String, List<Experiment>> suite : selected.entrySet()) {
+            for (Experiment experiment : suite.getValue()) {
+                suites.add(suite.getKey());
+                experiments.add(experiment);
+            }
+        }
+        if (experiments.isEmpty()) {
+            return 0;
+        }
+        if (list) {
+            for (int e = 0; e < experiments.size(); e++) {
+                System.out.println(String.format("%-40s %s", suites.get(e) + "/" + experiments.get(e).getId(),
+                        experiments.get(e).getName()));
+            }
+            return experiments.size();
+        }
+
+        if (repeat > 0) {
+            trials = trials.withCount(repeat);
+        }
+        List<Measurement> measurements = trials.measure(experiments, n);
+
+        if ("table".equals(format)) {
+            System.out.println(trials.getDescription());
+            printDivider();
+            System.out.println(String.format("| %-9s | %75s | %9s | %9s | %30s | %19s | %9s | %9s | %9s |",
+                    "suite", "experiment", "N", "m1 - m2", "CI, trials (-outliers)", "p10 .. p90",
+                    "m_obj", "m_deep", "m_deep/N"));
+            printDivider();
+        } else if ("csv".equals(format)) {
+            System.out.println("suite,id,name,n,used_median,used_ci_low,used_ci_high,used_p10,used_p90,trials,outliers,m_obj,m_deep");
+        }
+        for (int e = 0; e < measurements.size(); e++) {
+            Measurement measurement = measurements.get(e);
+            TrialStatistics statistics = measurement.getStatistics();
+            String suite = suites.get(e);
+            if ("table".equals(format)) {
+                System.out.println(String.format("| %-9s | %75s | %9d | %9d | %30s | %19s | %9d | %9d | %9.2f |",
+                        suite, measurement.getName(), measurement.getN(), measurement.getUsed(),
+                        trials.describe(statistics), statistics.getP10() + " .. " + statistics.getP90(),
+                        measurement.getObj(), measurement.getDeep(), (double) measurement.getDeep() / measurement.getN()));
+            } else if ("csv".equals(format)) {
+                System.out.println(String.format("%s,%s,\"%s\",%d,%d,%d,%d,%d,%d,%d,%d,%d,%d", suite, measurement.getId(),
+                        measurement.getName().replace("\"", "\"\""), measurement.getN(), measurement.getUsed(),
+                        statistics.getCiLow(), statistics.getCiHigh(), statistics.getP10(), statistics.getP90(),
+                        statistics.getTrials(), statistics.getOutliers(), measurement.getObj(), measurement.getDeep()));
+            }
+            record(suite, measurement, "m1 - m2", measurement.getUsed());
+            record(suite, measurement, "m1 - m2 CI low", statistics.getCiLow());
+            record(suite, measurement, "m1 - m2 CI high", statistics.getCiHigh());
+            record(suite, measurement, "m_obj", measurement.getObj());
+            record(suite, measurement, "m_deep", measurement.getDeep());
+        }
+        if ("table".equals(format)) {
+            printDivider();
+        }
+        return measurements.size();
+    }
+
+    private void record(String suite, Measurement measurement, String metric, long value) {
+        if ("jsonl".equals(format)) {
+            System.out.println(new ResultRecord(RunInfo.current(), suite, measurement.getId(), measurement.getName(),
+                    measurement.getN(), metric, "B", value).toJson());
+        } else if ("table".equals(format)) {
+            ResultsStore.record(suite, measurement.getId(), measurement.getName(), measurement.getN(), metric, "B", value);
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 206), 0).replace("0", "-"));
+    }
+}
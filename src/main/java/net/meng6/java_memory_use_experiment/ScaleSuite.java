@@ -0,0 +1,303 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+
+/**
+ * ## Summary
+ *
+ * The array rows at the sizes of real heaps, 10^8 to 10^9 elements, where headers
+ * and padding no longer matter but boxing, compressed references and the heap limit
+ * do.
+ *
+ * A structure is allocated on the measuring thread and filled in parallel by a
+ * `ForkJoinPool`, in slices of `scale.slice` elements. Two readings per structure:
+ *
+ * * allocated: increase in `ThreadMXBean.getThreadAllocatedBytes` summed over all
+ *   threads, so the pool's allocations count too. The pool keeps its threads for the
+ *   whole run, a thread that ended between two readings would lose its bytes
+ * * retained: increase in `MemoryMXBean.getHeapMemoryUsage().getUsed()` after one
+ *   `System.gc()` before and one after, instead of collecting until free memory
+ *   stops changing
+ *
+ * Both readings allocate a few hundred bytes themselves, nothing at this scale.
+ *
+ * Sizes are tried in increasing order. Once a structure does not fit, with an
+ * `OutOfMemoryError` while allocating or filling, the larger sizes are skipped and
+ * `scale.bisect` more attempts between the last size that fit and the first one
+ * that did not narrow down the largest N for this `-Xmx`, which the summary reports.
+ *
+ * Running a structure into the heap limit is slow: with boxes the collector works
+ * on an almost full heap for minutes before giving up. A size is therefore not tried
+ * if the retained bytes per element of the last size that fit predict it needs more
+ * than `scale.headroom` of the free heap; it counts as not fitting, and the row
+ * says so.
+ *
+ * ## Configuration
+ *
+ * * `-Dscale.n=100000000,200000000,500000000,1000000000`: sizes to try
+ * * `-Dscale.threads=<cores>`: parallelism of the pool
+ * * `-Dscale.slice=1048576`: elements per fill task
+ * * `-Dscale.bisect=6`: attempts to narrow down the largest N that fits
+ * * `-Dscale.headroom=0.9`: share of the free heap a size may be predicted to need
+ */
+public class ScaleSuite {
+
+    private final long[] ns;
+    private final int threads;
+    private final int slice;
+    private final int bisect;
+    private final double headroom;
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+    // keeps the structure under test reachable between the readings
+    private static Object keep;
+
+    private interface Filler {
+        void fill(Object structure, int from, int to);
+    }
+
+    private static class Structure {
+        final String name;
+        final IntFunction<Object> allocate;
+        final Filler fill;
+
+        Structure(String name, IntFunction<Object> allocate, Filler fill) {
+            this.name = name;
+            this.allocate = allocate;
+            this.fill = fill;
+        }
+    }
+
+    private final class FillTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Structure structure;
+        private final Object target;
+        private final int from;
+        private final int to;
+
+        FillTask(Structure structure, Object target, int from, int to) {
+            this.structure = structure;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= slice) {
+                structure.fill.fill(target, from, to);
+                return;
+            }
+            int middle = (int) (((long) from + to) >>> 1);
+            invokeAll(new FillTask(structure, target, from, middle), new FillTask(structure, target, middle, to));
+        }
+    }
+
+    public ScaleSuite(long[] ns, int threads, int slice, int bisect, double headroom) {
+        this.ns = ns;
+        this.threads = threads;
+        this.slice = slice;
+        this.bisect = bisect;
+        this.headroom = headroom;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("com.sun.management.ThreadMXBean is not available on this JVM");
+        }
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static ScaleSuite fromSystemProperties() {
+        String[] values = System.getProperty("scale.n", "100000000,200000000,500000000,1000000000").split(",");
+        long[] ns = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Long.parseLong(values[i].trim());
+        }
+        return new ScaleSuite(ns,
+                Integer.getInteger("scale.threads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("scale.slice", 1 << 20),
+                Integer.getInteger("scale.bisect", 6),
+                Double.parseDouble(System.getProperty("scale.headroom", "0.9")));
+    }
+
+    static List<Structure> structures() {
+        List<Structure> structures = new ArrayList<Structure>();
+        structures.add(new Structure("int[N]", n -> new int[n], (o, from, to) -> {
+            int[] array = (int[]) o;
+            for (int i = from; i < to; i++) {
+                array[i] = 31 * i;
+            }
+        }));
+        structures.add(new Structure("long[N]", n -> new long[n], (o, from, to) -> {
+            long[] array = (long[]) o;
+            for (int i = from; i < to; i++) {
+                array[i] = 31L * i;
+            }
+        }));
+        structures.add(new Structure("double[N]", n -> new double[n], (o, from, to) -> {
+            double[] array = (double[]) o;
+            for (int i = from; i < to; i++) {
+                array[i] = 0.5 * i;
+            }
+        }));
+        structures.add(new Structure("Integer[N] and N Integer", n -> new Integer[n], (o, from, to) -> {
+            Integer[] array = (Integer[]) o;
+            for (int i = from; i < to; i++) {
+                // above the cache of -128..127, so every valueOf is a new box
+                array[i] = Integer.valueOf(128 + i);
+            }
+        }));
+        structures.add(new Structure("Long[N] and N Long", n -> new Long[n], (o, from, to) -> {
+            Long[] array = (Long[]) o;
+            for (int i = from; i < to; i++) {
+                array[i] = Long.valueOf(1280L + i);
+            }
+        }));
+        return structures;
+    }
+
+    public void run() {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            run(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void run(ForkJoinPool pool) {
+        System.out.println(String.format("max heap = %d MB, %d fill threads, slices of %d elements, gc = %s",
+                Runtime.getRuntime().maxMemory() >> 20, threads, slice, collectors()));
+        printDivider();
+        System.out.println(String.format("| %34s | %13s | %16s | %9s | %16s | %9s | %9s | %12s |",
+                "structure", "N", "allocated", "B/elem", "retained", "B/elem", "fill s", "M elem/s"));
+        printDivider();
+        List<String> summary = new ArrayList<String>();
+        for (Structure structure : structures()) {
+            long fit = 0;
+            long failed = 0;
+            // retained bytes per element of the last size that fit, 0 before the first
+            double perElement = 0;
+            for (long n : ns) {
+                double retained = measure(pool, structure, n, perElement, true);
+                if (retained < 0) {
+                    failed = n;
+                    break;
+                }
+                fit = n;
+                perElement = retained;
+            }
+            for (int step = 0; failed > 0 && step < bisect && failed - fit > 1; step++) {
+                long n = fit + (failed - fit) / 2;
+                double retained = measure(pool, structure, n, perElement, false);
+                if (retained < 0) {
+                    failed = n;
+                } else {
+                    fit = n;
+                    perElement = retained;
+                }
+            }
+            summary.add(String.format("%34s: %s", structure.name, failed == 0
+                    ? "all sizes fit, largest " + fit
+                    : "largest N that fit " + fit + ", " + failed + " did not"));
+            // n = 0: the value is the size, and runs that found different limits still compare
+            ResultsStore.record("scale", Experiment.idOf(structure.name), structure.name, 0, "largest N", "elements", fit, true);
+            printDivider();
+        }
+        System.out.println();
+        System.out.println(String.format("with -Xmx%dm:", Runtime.getRuntime().maxMemory() >> 20));
+        for (String line : summary) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @param perElement retained bytes per element of a smaller size, 0 if none fit yet
+     * @param record whether to record the row, not for the sizes tried to find the limit
+     * @return retained bytes per element, or -1 if it did not fit or was not tried
+     */
+    private double measure(ForkJoinPool pool, Structure structure, long n, double perElement, boolean record) {
+        String name = structure.name + (record ? "" : " (limit)");
+        if (n > Integer.MAX_VALUE - 8) {
+            System.out.println(String.format("| %34s | %13d | %s", name, n, "more elements than a Java array holds"));
+            return -1;
+        }
+        long r1 = retained();
+        long free = Runtime.getRuntime().maxMemory() - r1;
+        double predicted = perElement * n;
+        if (predicted > headroom * free) {
+            System.out.println(String.format("| %34s | %13d | %s", name, n, String.format(
+                    "predicted to need %d MB of %d MB free, not tried", (long) predicted >> 20, free >> 20)));
+            return -1;
+        }
+        try {
+            long a1 = allocatedByAllThreads();
+            long t1 = System.nanoTime();
+            keep = structure.allocate.apply((int) n);
+            pool.invoke(new FillTask(structure, keep, 0, (int) n));
+            long t2 = System.nanoTime();
+            long a2 = allocatedByAllThreads();
+            long r2 = retained();
+            keep = null;
+
+            long allocated = a2 - a1;
+            long retained = r2 - r1;
+            double seconds = (t2 - t1) / 1e9;
+            System.out.println(String.format("| %34s | %13d | %16d | %9.2f | %16d | %9.2f | %9.2f | %12.1f |",
+                    name, n, allocated, (double) allocated / n,
+                    retained, (double) retained / n, seconds, n / seconds / 1e6));
+            if (record) {
+                String id = Experiment.idOf(structure.name);
+                ResultsStore.record("scale", id, structure.name, n, "allocated", "B/elem", (double) allocated / n);
+                ResultsStore.record("scale", id, structure.name, n, "retained", "B/elem", (double) retained / n);
+                ResultsStore.record("scale", id, structure.name, n, "fill", "M/s", n / seconds / 1e6);
+            }
+            return (double) retained / n;
+        } catch (OutOfMemoryError e) {
+            keep = null;
+            System.gc();
+            System.out.println(String.format("| %34s | %13d | %s", name, n, "OutOfMemoryError: " + e.getMessage()));
+            return -1;
+        } finally {
+            keep = null;
+        }
+    }
+
+    private long allocatedByAllThreads() {
+        long sum = 0;
+        for (long bytes : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            // -1 for a thread that ended in between
+            sum += Math.max(0, bytes);
+        }
+        return sum;
+    }
+
+    private long retained() {
+        System.gc();
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static String collectors() {
+        StringBuilder names = new StringBuilder();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            names.append(names.length() == 0 ? "" : ", ").append(bean.getName());
+        }
+        return names.toString();
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 143), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,284 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import com.sun.management.VMOption;
+
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+
+/**
+ * ## Summary
+ *
+ * Scaling-curve mode: measure every `Experiment` over a geometric range of N and
+ * fit
+ *
+ *     M(N) = a * N + b
+ *
+ * by least squares, where `a` is the cost per element and `b` the fixed overhead
+ * (object headers, array length field, padding).
+ *
+ * ## Output
+ *
+ * For each structure the measured curve (N, M, fitted M, residual), followed by a
+ * summary table with `a`, `b`, R^2, the largest relative residual, and the first N
+ * at which the marginal cost per element departs from `a`. The latter is where
+ * behaviour changes, e.g. integer caches running out, backing arrays being resized,
+ * or (with `-Dmeter=gc`) G1 humongous allocation being rounded up to whole regions.
+ *
+ * ## Configuration
+ *
+ * * `-Dsweep.min=1`, `-Dsweep.max=10000000`: range of N
+ * * `-Dsweep.pointsPerDecade=4`: density of the geometric series
+ */
+public class ScalingSweep {
+
+    /** marginal cost per element may differ from the fit by this many bytes before we call it a change */
+    private static final double CHANGE_TOLERANCE_BYTES = 0.5;
+
+    /** object alignment padding, plus one more aligned unit for a nested object */
+    private static final int ALIGNMENT_SLACK_BYTES = 16;
+
+    private final MemoryMeter meter;
+    private final int[] ns;
+
+    // keeps the structure under test reachable until the second sample
+    private static Object keep;
+
+    public ScalingSweep(MemoryMeter meter, int min, int max, int pointsPerDecade) {
+        this.meter = meter;
+        this.ns = geometricSeries(min, max, pointsPerDecade);
+    }
+
+    public static ScalingSweep fromSystemProperties(MemoryMeter meter) {
+        return new ScalingSweep(
+                meter,
+                Integer.getInteger("sweep.min", 1),
+                Integer.getInteger("sweep.max", 10000000),
+                Integer.getInteger("sweep.pointsPerDecade", 4)
+        );
+    }
+
+    static int[] geometricSeries(int min, int max, int pointsPerDecade) {
+        if (min < 1 || max < min || pointsPerDecade < 1) {
+            throw new IllegalArgumentException(
+                    String.format("invalid sweep range [%d, %d] with %d points per decade", min, max, pointsPerDecade));
+        }
+        List<Integer> series = new ArrayList<Integer>();
+        double step = Math.pow(10, 1.0 / pointsPerDecade);
+        for (double x = min; x < max * step; x *= step) {
+            int n = (int) Math.min(max, Math.round(x));
+            if (series.isEmpty() || series.get(series.size() - 1) != n) {
+                series.add(n);
+            }
+        }
+        int[] result = new int[series.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = series.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Measure one structure over the whole series. Stops early, and returns the
+     * points measured so far, if the heap cannot hold the next N.
+     */
+    public Curve measure(Experiment experiment) {
+        Curve curve = new Curve(experiment.getName());
+        // load classes and fill caches touched by the factory, so they are not billed to the first N
+        keep = experiment.create(ns[0]);
+        keep = null;
+        for (int n : ns) {
+            long m1, m2;
+            try {
+                m1 = meter.sample();
+                keep = experiment.create(n);
+                m2 = meter.sample();
+            } catch (OutOfMemoryError e) {
+                keep = null;
+                curve.truncatedAt = n;
+                break;
+            }
+            keep = null;
+            curve.add(n, meter.used(m1, m2));
+            ResultsStore.record("sweep", experiment.getId(), experiment.getName(), n, "m1 - m2", "B", meter.used(m1, m2));
+        }
+        curve.fit();
+        ResultsStore.record("sweep", experiment.getId(), experiment.getName(), 0, "fitted bytes/element", "B/elem", curve.slope);
+        return curve;
+    }
+
+    public void run(List<Experiment> experiments) {
+        printThresholds();
+        List<Curve> curves = new ArrayList<Curve>();
+        for (Experiment experiment : experiments) {
+            Curve curve = measure(experiment);
+            curve.print();
+            curves.add(curve);
+        }
+        printSummary(curves);
+    }
+
+    private void printThresholds() {
+        System.out.println(String.format("meter = %s (%s)", meter.getName(), meter.getDescription()));
+        System.out.println(String.format("N = %d .. %d, %d points", ns[0], ns[ns.length - 1], ns.length));
+        long regionSize = vmOptionAsLong("G1HeapRegionSize");
+        if (regionSize > 0) {
+            System.out.println(String.format(
+                    "G1HeapRegionSize = %d bytes, objects of %d bytes or more are humongous",
+                    regionSize, regionSize / 2));
+        }
+        long minTLABSize = vmOptionAsLong("MinTLABSize");
+        if (minTLABSize > 0) {
+            System.out.println(String.format("MinTLABSize = %d bytes", minTLABSize));
+        }
+    }
+
+    private static long vmOptionAsLong(String name) {
+        try {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            VMOption option = bean.getVMOption(name);
+            return Long.parseLong(option.getValue());
+        } catch (RuntimeException e) {
+            // not HotSpot, or option unknown to this collector
+            return -1;
+        }
+    }
+
+    private static void printSummary(List<Curve> curves) {
+        printDivider();
+        System.out.println(String.format(
+                "| %75s | %9s | %14s | %14s | %9s | %16s | %16s | %14s |",
+                "structure", "points", "bytes/element", "fixed (bytes)", "R^2", "max |residual|", "at N", "changes at N"));
+        printDivider();
+        for (Curve curve : curves) {
+            System.out.println(String.format(
+                    "| %75s | %9d | %14.3f | %14.1f | %9.6f | %15.2f%% | %16s | %14s |",
+                    curve.name, curve.size, curve.slope, curve.intercept, curve.rSquared,
+                    100 * curve.maxRelativeResidual,
+                    curve.maxResidualN > 0 ? Long.toString(curve.maxResidualN) : "-",
+                    curve.changeN > 0 ? Integer.toString(curve.changeN)
+                            : curve.truncatedAt > 0 ? "OOM at " + curve.truncatedAt : "-"));
+        }
+        printDivider();
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 192), 0).replace("0", "-"));
+    }
+
+    /**
+     * Measured points of one structure and their least-squares fit.
+     */
+    public static class Curve {
+
+        final String name;
+
+        long[] n = new long[16];
+        long[] bytes = new long[16];
+        int size;
+
+        double slope;
+        double intercept;
+        double rSquared;
+        double maxRelativeResidual;
+        long maxResidualN;
+        int changeN;
+        int truncatedAt;
+
+        Curve(String name) {
+            this.name = name;
+        }
+
+        void add(long n, long bytes) {
+            if (size == this.n.length) {
+                this.n = java.util.Arrays.copyOf(this.n, 2 * size);
+                this.bytes = java.util.Arrays.copyOf(this.bytes, 2 * size);
+            }
+            this.n[size] = n;
+            this.bytes[size] = bytes;
+            size++;
+        }
+
+        public double getSlope() {
+            return slope;
+        }
+
+        public double getIntercept() {
+            return intercept;
+        }
+
+        private double weight(int i) {
+            double m = Math.max(1, bytes[i]);
+            return 1 / (m * m);
+        }
+
+        double fitted(int i) {
+            return slope * n[i] + intercept;
+        }
+
+        void fit() {
+            if (size == 0) {
+                return;
+            }
+            // weighted by 1/M^2, i.e. minimise relative rather than absolute residuals,
+            // otherwise the largest N of a geometric series decides the fit alone
+            double sumW = 0, sumX = 0, sumY = 0;
+            for (int i = 0; i < size; i++) {
+                double w = weight(i);
+                sumW += w;
+                sumX += w * n[i];
+                sumY += w * bytes[i];
+            }
+            double meanX = sumX / sumW, meanY = sumY / sumW;
+            double sxx = 0, sxy = 0, syy = 0;
+            for (int i = 0; i < size; i++) {
+                double w = weight(i), dx = n[i] - meanX, dy = bytes[i] - meanY;
+                sxx += w * dx * dx;
+                sxy += w * dx * dy;
+                syy += w * dy * dy;
+            }
+            slope = sxx == 0 ? 0 : sxy / sxx;
+            intercept = meanY - slope * meanX;
+
+            double ssRes = 0;
+            for (int i = 0; i < size; i++) {
+                double residual = bytes[i] - fitted(i);
+                ssRes += weight(i) * residual * residual;
+                double relative = Math.abs(residual) / Math.max(1, bytes[i]);
+                if (relative > maxRelativeResidual) {
+                    maxRelativeResidual = relative;
+                    maxResidualN = n[i];
+                }
+            }
+            rSquared = syy == 0 ? 1 : 1 - ssRes / syy;
+
+            // first point at which the marginal cost per element departs from the fit;
+            // up to ALIGNMENT_SLACK_BYTES of padding may be spread over the step
+            for (int i = 1; i < size; i++) {
+                long dn = n[i] - n[i - 1];
+                double marginal = (double) (bytes[i] - bytes[i - 1]) / dn;
+                if (Math.abs(marginal - slope) > CHANGE_TOLERANCE_BYTES + (double) ALIGNMENT_SLACK_BYTES / dn) {
+                    changeN = (int) n[i];
+                    break;
+                }
+            }
+        }
+
+        void print() {
+            System.out.println();
+            System.out.println(String.format("%s: M(N) = %.3f * N + %.1f", name, slope, intercept));
+            System.out.println(String.format("| %12s | %16s | %16s | %12s |", "N", "M (bytes)", "fitted M", "residual"));
+            for (int i = 0; i < size; i++) {
+                System.out.println(String.format("| %12d | %16d | %16.1f | %12.1f |",
+                        n[i], bytes[i], fitted(i), bytes[i] - fitted(i)));
+            }
+            if (truncatedAt > 0) {
+                System.out.println(String.format("| %12d | %16s | %16s | %12s |", truncatedAt, "OutOfMemoryError", "", ""));
+            }
+        }
+    }
+}
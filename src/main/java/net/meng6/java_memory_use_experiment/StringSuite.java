@@ -0,0 +1,304 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+import net.meng6.java_memory_use_experiment.strings.Utf8Dictionary;
+import net.meng6.java_memory_use_experiment.strings.Utf8StringArray;
+import net.meng6.java_memory_use_experiment.strings.WeakInterner;
+
+/**
+ * ## Summary
+ *
+ * Footprint and speed of holding N string ids with D distinct values, the way a
+ * service holds customer or order ids read off the wire: every element arrives as a
+ * fresh `String` decoded from UTF-8 bytes, and is then stored
+ *
+ * * as it is: N `String` objects, each with its own `byte[]`
+ * * as it is, after G1 string deduplication had a chance to make equal strings share
+ *   their `byte[]` (needs `-XX:+UseG1GC -XX:+UseStringDeduplication`)
+ * * canonicalized with `String.intern()`
+ * * canonicalized with a `WeakInterner`
+ * * as UTF-8 only: a `byte[]` per element, a `Utf8StringArray`, or a `Utf8Dictionary`
+ *   of the distinct values plus an `int[N]` of codes
+ *
+ * For each the suite reports the retained size (`ObjectSizes.deepSizeOf`, which counts
+ * a shared string or `byte[]` once), the time per element to build the store,
+ * interning included, and the time per element of a lookup that counts the elements
+ * equal to one value. The build is warmed up on other values than the timed one, so
+ * that `String.intern()` adds every distinct value to the string table rather than
+ * finding it there. Strings in the JVM string table count as retained by the
+ * `String[]`; the table's own native memory is not included.
+ *
+ * ## Configuration
+ *
+ * * `-Dstrings.n=1000000`: comma-separated element counts
+ * * `-Dstrings.distinct=1000`: distinct values among them
+ * * `-Dstrings.internerCapacity=65536`: slots of the `WeakInterner`
+ * * `-Dstrings.scans=5`: timed lookups per store, the fastest one is reported
+ */
+public class StringSuite {
+
+    private final int[] ns;
+    private final int distinct;
+    private final int internerCapacity;
+    private final int scans;
+
+    // keeps the store under test reachable, and lookup results alive
+    private static Object keep;
+    private static long sink;
+
+    private static class Store {
+        final String name;
+        final Supplier<Object> build;
+        final ToLongFunction<Object> lookup;
+        // collect a few times after the build, outside the timed window
+        final boolean settle;
+
+        Store(String name, Supplier<Object> build, ToLongFunction<Object> lookup) {
+            this(name, build, lookup, false);
+        }
+
+        Store(String name, Supplier<Object> build, ToLongFunction<Object> lookup, boolean settle) {
+            this.name = name;
+            this.build = build;
+            this.lookup = lookup;
+            this.settle = settle;
+        }
+    }
+
+    public StringSuite(int[] ns, int distinct, int internerCapacity, int scans) {
+        this.ns = ns;
+        this.distinct = distinct;
+        this.internerCapacity = internerCapacity;
+        this.scans = scans;
+    }
+
+    public static StringSuite fromSystemProperties() {
+        String[] values = System.getProperty("strings.n", "1000000").split(",");
+        int[] ns = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ns[i] = Integer.parseInt(values[i].trim());
+        }
+        return new StringSuite(ns,
+                Integer.getInteger("strings.distinct", 1000),
+                Integer.getInteger("strings.internerCapacity", 65536),
+                Integer.getInteger("strings.scans", 5));
+    }
+
+    static boolean isStringDeduplicationEnabled() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return Boolean.parseBoolean(hotspot.getVMOption("UseStringDeduplication").getValue());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores for N elements drawn from the encoded values `utf8`, element i having value `ids[i]`.
+     */
+    List<Store> stores(byte[][] utf8, int[] ids) {
+        final int n = ids.length;
+        final String probe = new String(utf8[ids[0]], StandardCharsets.UTF_8);
+        final byte[] probeUtf8 = utf8[ids[0]];
+        ToLongFunction<Object> countStrings = o -> {
+            long count = 0;
+            for (String s : (String[]) o) {
+                if (probe.equals(s)) {
+                    count++;
+                }
+            }
+            return count;
+        };
+
+        List<Store> stores = new ArrayList<Store>();
+        stores.add(new Store("String[N], N String", () -> {
+            String[] array = new String[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new String(utf8[ids[i]], StandardCharsets.UTF_8);
+            }
+            return array;
+        }, countStrings));
+        if (isStringDeduplicationEnabled()) {
+            stores.add(new Store("String[N], N String, deduplicated by GC", () -> {
+                String[] array = new String[n];
+                for (int i = 0; i < n; i++) {
+                    array[i] = new String(utf8[ids[i]], StandardCharsets.UTF_8);
+                }
+                return array;
+            }, countStrings, true));
+        }
+        stores.add(new Store("String[N], String.intern()", () -> {
+            String[] array = new String[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = new String(utf8[ids[i]], StandardCharsets.UTF_8).intern();
+            }
+            return array;
+        }, countStrings));
+        stores.add(new Store("String[N], WeakInterner(" + internerCapacity + ")", () -> {
+            WeakInterner interner = new WeakInterner(internerCapacity);
+            String[] array = new String[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = interner.intern(new String(utf8[ids[i]], StandardCharsets.UTF_8));
+            }
+            // the cache belongs to the store's footprint
+            return new Object[] {array, interner};
+        }, o -> countStrings.applyAsLong(((Object[]) o)[0])));
+        stores.add(new Store("byte[N][], N UTF-8 byte[]", () -> {
+            byte[][] array = new byte[n][];
+            for (int i = 0; i < n; i++) {
+                array[i] = new String(utf8[ids[i]], StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+            }
+            return array;
+        }, o -> {
+            long count = 0;
+            for (byte[] b : (byte[][]) o) {
+                if (Arrays.equals(probeUtf8, b)) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+        stores.add(new Store("Utf8StringArray", () -> {
+            Utf8StringArray array = new Utf8StringArray(n, n * probeUtf8.length);
+            for (int i = 0; i < n; i++) {
+                array.add(new String(utf8[ids[i]], StandardCharsets.UTF_8));
+            }
+            array.trimToSize();
+            return array;
+        }, o -> {
+            Utf8StringArray array = (Utf8StringArray) o;
+            long count = 0;
+            for (int i = 0; i < array.size(); i++) {
+                if (array.equals(i, probeUtf8)) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+        stores.add(new Store("Utf8Dictionary + int[N] codes", () -> {
+            Utf8Dictionary dictionary = new Utf8Dictionary();
+            int[] codes = new int[n];
+            for (int i = 0; i < n; i++) {
+                codes[i] = dictionary.encode(new String(utf8[ids[i]], StandardCharsets.UTF_8));
+            }
+            return new Object[] {dictionary, codes};
+        }, o -> {
+            Utf8Dictionary dictionary = (Utf8Dictionary) ((Object[]) o)[0];
+            int code = dictionary.find(probeUtf8);
+            long count = 0;
+            for (int c : (int[]) ((Object[]) o)[1]) {
+                if (c == code) {
+                    count++;
+                }
+            }
+            return count;
+        }));
+        return stores;
+    }
+
+    public void run() {
+        System.out.println("UseStringDeduplication = " + isStringDeduplicationEnabled()
+                + (isStringDeduplicationEnabled() ? "" : " (run with -XX:+UseG1GC -XX:+UseStringDeduplication for the GC row)"));
+        printDivider();
+        System.out.println(String.format("| %50s | %10s | %10s | %14s | %10s | %11s | %14s | %15s |",
+                "store", "N", "distinct", "retained bytes", "bytes/elem", "vs String[N]",
+                "build ns/elem", "lookup ns/elem"));
+        printDivider();
+        int round = 0;
+        for (int n : ns) {
+            int[] ids = new int[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = (int) Math.floorMod(i * 2654435761L, (long) distinct);
+            }
+            List<Store> warmUps = stores(values(round++), ids);
+            List<Store> stores = stores(values(round++), ids);
+            long baseline = 0;
+            for (int s = 0; s < stores.size(); s++) {
+                long retained = measure(stores.get(s), warmUps.get(s), n, baseline);
+                if (baseline == 0) {
+                    baseline = retained;
+                }
+            }
+            printDivider();
+        }
+    }
+
+    /**
+     * The distinct values of one round, UTF-8 encoded, of the same length in every round.
+     */
+    private byte[][] values(int round) {
+        byte[][] utf8 = new byte[distinct][];
+        for (int v = 0; v < distinct; v++) {
+            utf8[v] = String.format("customer-%04d-%08d", round, 1280 + v).getBytes(StandardCharsets.UTF_8);
+        }
+        return utf8;
+    }
+
+    /**
+     * @param warmUp the same store over other values
+     */
+    private long measure(Store store, Store warmUp, int n, long baseline) {
+        long t1, t2;
+        try {
+            // compile the build loop on the warm-up store, then time this one
+            keep = warmUp.build.get();
+            keep = null;
+            t1 = System.nanoTime();
+            keep = store.build.get();
+            t2 = System.nanoTime();
+            if (store.settle) {
+                settle();
+            }
+        } catch (OutOfMemoryError e) {
+            keep = null;
+            System.out.println(String.format("| %50s | %10d | %s", store.name, n, "OutOfMemoryError: " + e.getMessage()));
+            return 0;
+        }
+        long retained = ObjectSizes.deepSizeOf(keep);
+
+        long best = Long.MAX_VALUE;
+        sink += store.lookup.applyAsLong(keep);
+        for (int s = 0; s < scans; s++) {
+            long l1 = System.nanoTime();
+            sink += store.lookup.applyAsLong(keep);
+            best = Math.min(best, System.nanoTime() - l1);
+        }
+        keep = null;
+
+        System.out.println(String.format("| %50s | %10d | %10d | %14d | %10.1f | %11s | %14.1f | %15.2f |",
+                store.name, n, distinct, retained, (double) retained / n,
+                baseline == 0 ? "" : String.format("%.2f", (double) retained / baseline),
+                (double) (t2 - t1) / n, (double) best / n));
+        String id = Experiment.idOf(store.name) + "-d" + distinct;
+        ResultsStore.record("strings", id, store.name, n, "retained", "B/elem", (double) retained / n);
+        ResultsStore.record("strings", id, store.name, n, "build", "ns/elem", (double) (t2 - t1) / n);
+        ResultsStore.record("strings", id, store.name, n, "lookup", "ns/elem", (double) best / n);
+        return retained;
+    }
+
+    /**
+     * Deduplication only looks at strings that survived `StringDeduplicationAgeThreshold`
+     * collections, and then runs concurrently.
+     */
+    private static void settle() {
+        for (int gc = 0; gc < 5; gc++) {
+            System.gc();
+            try { Thread.sleep(100); } catch (InterruptedException x) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 165), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,159 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.results.ResultsStore;
+
+/**
+ * ## Summary
+ *
+ * Joins the footprint measured by a `MemoryMeter` with the throughput that
+ * `StructureBenchmark` (the `jmh` source set) wrote to a JMH CSV result file
+ * (`-rf csv`), one row per structure and N:
+ *
+ *     | structure | N | m1 - m2 | alloc B/op (fill) | fill ops/s | scan ops/s | random ops/s |
+ *
+ * `alloc B/op` is JMH's `gc.alloc.rate.norm` and is only present when the benchmark
+ * ran with `-prof gc`.
+ */
+public class ThroughputReport {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private final MemoryMeter meter;
+
+    // (structure id, N) -> (metric, score), metric is e.g. "scan" or "fill:gc.alloc.rate.norm"
+    private final Map<String, Map<String, Double>> scores = new HashMap<String, Map<String, Double>>();
+    private final TreeSet<Integer> ns = new TreeSet<Integer>();
+
+    // keeps the structure under test reachable until the second sample
+    private static Object keep;
+
+    public ThroughputReport(MemoryMeter meter) {
+        this.meter = meter;
+    }
+
+    public void load(String csvFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(csvFile));
+        try {
+            List<String> header = parseCsvLine(reader.readLine());
+            int benchmarkColumn = header.indexOf("Benchmark");
+            int scoreColumn = header.indexOf("Score");
+            int nColumn = header.indexOf("Param: n");
+            int structureColumn = header.indexOf("Param: structure");
+            if (benchmarkColumn < 0 || scoreColumn < 0 || nColumn < 0 || structureColumn < 0) {
+                throw new IOException(csvFile + " is not a JMH CSV result of StructureBenchmark");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = parseCsvLine(line);
+                String benchmark = fields.get(benchmarkColumn);
+                // "...StructureBenchmark.fill:gc.alloc.rate.norm"; older JMH wrote a middle dot before "gc"
+                String metric = benchmark.substring(benchmark.lastIndexOf('.', indexOfOrLength(benchmark, ':')) + 1)
+                        .replace("\u00b7", "");
+                int n = Integer.parseInt(fields.get(nColumn));
+                ns.add(n);
+                String key = fields.get(structureColumn) + "@" + n;
+                Map<String, Double> metrics = scores.get(key);
+                if (metrics == null) {
+                    metrics = new HashMap<String, Double>();
+                    scores.put(key, metrics);
+                }
+                metrics.put(metric, Double.parseDouble(fields.get(scoreColumn)));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int indexOfOrLength(String s, char c) {
+        int i = s.indexOf(c);
+        return i < 0 ? s.length() : i;
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public void print(List<Experiment> experiments) {
+        printDivider();
+        System.out.println(String.format(
+                "| %75s | %9s | %12s | %14s | %14s | %14s | %14s |",
+                "structure", "N", "m1 - m2", "alloc B/op", "fill ops/s", "scan ops/s", "random ops/s"));
+        printDivider();
+        for (int n : ns) {
+            for (Experiment experiment : experiments) {
+                Map<String, Double> metrics = scores.get(experiment.getId() + "@" + n);
+                if (metrics == null) {
+                    continue;
+                }
+                // warm-up instance, unreachable again before the first sample
+                keep = experiment.create(n);
+                keep = null;
+                long m1 = meter.sample();
+                keep = experiment.create(n);
+                long m2 = meter.sample();
+                keep = null;
+                System.out.println(String.format(
+                        "| %75s | %9d | %12d | %14s | %14s | %14s | %14s |",
+                        experiment.getName(), n, meter.used(m1, m2),
+                        format(metrics.get("fill:" + ALLOC_NORM), "%.0f"),
+                        format(metrics.get("fill"), "%.0f"),
+                        format(metrics.get("scan"), "%.0f"),
+                        format(metrics.get("randomAccess"), "%.0f")));
+                String[][] recorded = {
+                        {"fill:" + ALLOC_NORM, "fill alloc", "B"},
+                        {"fill", "fill", "ops/s"},
+                        {"scan", "scan", "ops/s"},
+                        {"randomAccess", "randomAccess", "ops/s"}};
+                for (String[] r : recorded) {
+                    Double score = metrics.get(r[0]);
+                    if (score != null) {
+                        ResultsStore.record("throughput", experiment.getId(), experiment.getName(), n, r[1], r[2], score);
+                    }
+                }
+            }
+            printDivider();
+        }
+    }
+
+    private static String format(Double value, String format) {
+        return value == null ? "-" : String.format(format, value);
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 179), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,160 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.meng6.java_memory_use_experiment.meter.MemoryMeter;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+import net.meng6.java_memory_use_experiment.stats.TrialStatistics;
+
+/**
+ * ## Summary
+ *
+ * Measures experiments repeatedly, until the confidence interval of each median is
+ * tight enough, and summarizes the readings with `TrialStatistics`.
+ *
+ * Trials go in rounds: each round measures every experiment that is not done yet
+ * once, in order, so that whatever happens to the JVM at one point in time shows up
+ * as one outlier in several experiments rather than in all readings of one. The
+ * first `warmup` rounds are discarded; they load the classes and resolve the string
+ * literals the experiments use. After `min` readings an experiment is done once the
+ * interval is no wider than `relWidth` of the median or `absWidth` bytes, or after
+ * `max` readings; stable experiments, which with the `allocation` meter is most of
+ * them, take `min` rounds.
+ *
+ * Each round takes its readings into one `MeasurementBuffer`, the statistics are
+ * computed in between rounds.
+ *
+ * ## Configuration
+ *
+ * * `-Dtrials.warmup=1`: rounds discarded
+ * * `-Dtrials.min=5`: readings before the interval is checked
+ * * `-Dtrials.max=30`: readings at most
+ * * `-Dtrials.relWidth=0.01`: width of a tight interval, relative to the median
+ * * `-Dtrials.absWidth=8`: width of a tight interval in bytes, for small medians
+ * * `-Dtrials.confidence=0.95`: of the interval
+ * * `-Dtrials.resamples=1000`: bootstrap resamples per interval
+ */
+public class Trials {
+
+    private final MemoryMeter meter;
+    private final int warmup;
+    private final int min;
+    private final int max;
+    private final double relWidth;
+    private final long absWidth;
+    private final double confidence;
+    private final int resamples;
+
+    public Trials(MemoryMeter meter, int warmup, int min, int max, double relWidth, long absWidth,
+                  double confidence, int resamples) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("need 1 <= min <= max trials: " + min + ", " + max);
+        }
+        this.meter = meter;
+        this.warmup = warmup;
+        this.min = min;
+        this.max = max;
+        this.relWidth = relWidth;
+        this.absWidth = absWidth;
+        this.confidence = confidence;
+        this.resamples = resamples;
+    }
+
+    public static Trials fromSystemProperties(MemoryMeter meter) {
+        return new Trials(meter,
+                Integer.getInteger("trials.warmup", 1),
+                Integer.getInteger("trials.min", 5),
+                Integer.getInteger("trials.max", 30),
+                Double.parseDouble(System.getProperty("trials.relWidth", "0.01")),
+                Long.getLong("trials.absWidth", 8),
+                Double.parseDouble(System.getProperty("trials.confidence", "0.95")),
+                Integer.getInteger("trials.resamples", 1000));
+    }
+
+    /**
+     * The same, but exactly `count` readings per experiment.
+     */
+    public Trials withCount(int count) {
+        return new Trials(meter, warmup, count, count, relWidth, absWidth, confidence, resamples);
+    }
+
+    /**
+     * @return a measurement per experiment, in order, `used` being the median; scalar
+     * experiments are measured at N = 1
+     */
+    public List<Measurement> measure(List<Experiment> experiments, int n) {
+        int count = experiments.size();
+        long[][] readings = new long[count][max];
+        int[] taken = new int[count];
+        boolean[] done = new boolean[count];
+        long[] m_obj = new long[count];
+        long[] m_deep = new long[count];
+        TrialStatistics[] statistics = new TrialStatistics[count];
+        MeasurementBuffer rows = new MeasurementBuffer(meter, count);
+
+        int pending = count;
+        for (int round = 0; pending > 0; round++) {
+            rows.clear();
+            for (int e = 0; e < count; e++) {
+                if (done[e]) {
+                    continue;
+                }
+                Experiment experiment = experiments.get(e);
+                int size = experiment.isScalar() ? 1 : n;
+                rows.begin(experiment.getName(), size);
+                Object instance = experiment.create(size);
+                rows.end();
+                if (round == 0) {
+                    m_obj[e] = ObjectSizes.sizeOf(instance);
+                    m_deep[e] = ObjectSizes.deepSizeOf(instance);
+                }
+            }
+            if (round < warmup) {
+                continue;
+            }
+            int row = 0;
+            for (int e = 0; e < count; e++) {
+                if (done[e]) {
+                    continue;
+                }
+                readings[e][taken[e]++] = rows.getUsed(row++);
+                if (taken[e] >= min) {
+                    statistics[e] = TrialStatistics.of(readings[e], taken[e], confidence, resamples);
+                    if (taken[e] == max || isTight(statistics[e])) {
+                        done[e] = true;
+                        pending--;
+                    }
+                }
+            }
+        }
+
+        List<Measurement> measurements = new ArrayList<Measurement>();
+        for (int e = 0; e < count; e++) {
+            Experiment experiment = experiments.get(e);
+            measurements.add(new Measurement(experiment.getId(), experiment.getName(), experiment.isScalar() ? 1 : n,
+                    statistics[e].getMedian(), m_obj[e], m_deep[e], statistics[e]));
+        }
+        return measurements;
+    }
+
+    public boolean isTight(TrialStatistics statistics) {
+        return statistics.isTight(relWidth, absWidth);
+    }
+
+    /**
+     * `TrialStatistics.toString()`, and `*` if the interval is still wider than asked for.
+     */
+    public String describe(TrialStatistics statistics) {
+        return statistics + (isTight(statistics) ? "" : " *");
+    }
+
+    /**
+     * What the interval is and when trials stop, for table headers.
+     */
+    public String getDescription() {
+        return String.format("%.0f%% bootstrap CI of the median, %d-%d trials after %d warm-up, "
+                        + "until the CI is within %.1f%% or %d B (* if not)",
+                confidence * 100, min, max, warmup, relWidth * 100, absWidth);
+    }
+}
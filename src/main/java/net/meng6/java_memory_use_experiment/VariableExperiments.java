@@ -0,0 +1,37 @@
+package net.meng6.java_memory_use_experiment;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The `variables` suite: the rows of the table above the arrays, one variable of each
+ * primitive type and one object of the wrapper, big number and string classes.
+ */
+public class VariableExperiments implements ExperimentProvider {
+
+    public String getSuite() {
+        return "variables";
+    }
+
+    public List<Experiment> getExperiments() {
+        List<Experiment> experiments = new ArrayList<Experiment>();
+        experiments.add(Experiment.primitive("int", 129));
+        experiments.add(Experiment.primitive("short", (short) 12));
+        experiments.add(Experiment.primitive("long", 123456789L));
+        experiments.add(Experiment.primitive("float", 1234.56789f));
+        experiments.add(Experiment.primitive("double", 1234.56789));
+        experiments.add(Experiment.primitive("char", 'a'));
+        experiments.add(Experiment.primitive("boolean", true));
+        experiments.add(Experiment.primitive("byte", (byte) 100));
+        // outside the box caches, so valueOf allocates a new box on every call
+        experiments.add(Experiment.scalar("Integer", () -> Integer.valueOf(12345)));
+        experiments.add(Experiment.scalar("Long", () -> Long.valueOf(123456789)));
+        experiments.add(Experiment.scalar("BigInteger", () -> new BigInteger("123456789")));
+        experiments.add(Experiment.scalar("BigDecimal", () -> new BigDecimal(12345.6789)));
+        experiments.add(Experiment.scalar("literal string \"foobar\"", () -> "foobar"));
+        experiments.add(Experiment.scalar("string object new String(\"foobar\")", () -> new String("foobar")));
+        return experiments;
+    }
+}
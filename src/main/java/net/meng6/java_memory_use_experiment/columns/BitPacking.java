@@ -0,0 +1,57 @@
+package net.meng6.java_memory_use_experiment.columns;
+
+/**
+ * Reading and writing unsigned values of 0 to 64 bits at any bit position of a `long[]`,
+ * shared by the packed columns.
+ */
+final class BitPacking {
+
+    private BitPacking() {}
+
+    /**
+     * Bits needed for unsigned values up to `max`, 0 if `max` is 0.
+     */
+    static int bitsFor(long max) {
+        return 64 - Long.numberOfLeadingZeros(max);
+    }
+
+    /**
+     * `long`s needed for `count` values of `bits` bits.
+     */
+    static int wordsFor(long count, int bits) {
+        long words = (count * bits + 63) >>> 6;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(count + " values of " + bits + " bits do not fit in a long[]");
+        }
+        return (int) words;
+    }
+
+    static long get(long[] words, long bitIndex, int bits) {
+        if (bits == 0) {
+            return 0;
+        }
+        int word = (int) (bitIndex >>> 6);
+        int shift = (int) (bitIndex & 63);
+        long mask = bits == 64 ? -1L : (1L << bits) - 1;
+        long value = words[word] >>> shift;
+        if (shift + bits > 64) {
+            value |= words[word + 1] << (64 - shift);
+        }
+        return value & mask;
+    }
+
+    /**
+     * Sets the bits of a value that are still 0; the columns only write each value once.
+     */
+    static void set(long[] words, long bitIndex, int bits, long value) {
+        if (bits == 0) {
+            return;
+        }
+        int word = (int) (bitIndex >>> 6);
+        int shift = (int) (bitIndex & 63);
+        words[word] |= value << shift;
+        if (shift + bits > 64) {
+            words[word + 1] |= value >>> (64 - shift);
+        }
+    }
+}
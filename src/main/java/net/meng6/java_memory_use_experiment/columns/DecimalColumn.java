@@ -0,0 +1,107 @@
+package net.meng6.java_memory_use_experiment.columns;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ## Summary
+ *
+ * Column of N decimals with a fixed scale, e.g. 2 for amounts of money, stored as
+ * their unscaled `long`: 8 bytes per element against 4 (reference) + 40 (`BigDecimal`)
+ * bytes for a `BigDecimal[N]`, or more once a `BigDecimal` holds a `BigInteger` or
+ * has cached its string.
+ *
+ * A value that does not fit, because it has more fraction digits than the scale or
+ * more than 18 digits, is kept as it is in an overflow map and its slot marked with
+ * `Long.MIN_VALUE`. Nothing is rounded: `get` returns a value that `compareTo` finds
+ * equal to the one set, at the column's scale unless it overflowed. Such values
+ * should be rare, each costs a `HashMap` entry on top of its `BigDecimal`.
+ *
+ * `sum` adds the `long`s, moving to `BigDecimal` only when the running sum would
+ * overflow, so it does not allocate per element. Null values are not supported.
+ */
+public class DecimalColumn {
+
+    private static final long OVERFLOW = Long.MIN_VALUE;
+    private static final BigInteger MIN = BigInteger.valueOf(Long.MIN_VALUE + 1);
+    private static final BigInteger MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final int scale;
+    private final long[] unscaled;
+    private final Map<Integer, BigDecimal> overflow = new HashMap<Integer, BigDecimal>();
+
+    public DecimalColumn(int n, int scale) {
+        this.scale = scale;
+        this.unscaled = new long[n];
+    }
+
+    public int size() {
+        return unscaled.length;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /** values kept as `BigDecimal` */
+    public int getOverflowCount() {
+        return overflow.size();
+    }
+
+    public void set(int index, BigDecimal value) {
+        long v = toUnscaled(value);
+        if (v == OVERFLOW) {
+            overflow.put(index, value);
+        } else if (unscaled[index] == OVERFLOW) {
+            overflow.remove(index);
+        }
+        unscaled[index] = v;
+    }
+
+    /**
+     * @return the unscaled value of `value` at the column's scale, or `OVERFLOW`
+     */
+    private long toUnscaled(BigDecimal value) {
+        BigDecimal scaled;
+        try {
+            scaled = value.setScale(scale);
+        } catch (ArithmeticException e) {
+            // would need rounding
+            return OVERFLOW;
+        }
+        BigInteger u = scaled.unscaledValue();
+        if (u.compareTo(MIN) < 0 || u.compareTo(MAX) > 0) {
+            return OVERFLOW;
+        }
+        return u.longValue();
+    }
+
+    public BigDecimal get(int index) {
+        long v = unscaled[index];
+        return v == OVERFLOW ? overflow.get(index) : BigDecimal.valueOf(v, scale);
+    }
+
+    public BigDecimal sum() {
+        long sum = 0;
+        BigDecimal big = BigDecimal.ZERO;
+        for (long v : unscaled) {
+            if (v == OVERFLOW) {
+                continue;
+            }
+            long s = sum + v;
+            if (((sum ^ s) & (v ^ s)) < 0) {
+                // sum and v had the same sign and s has the other one
+                big = big.add(BigDecimal.valueOf(sum, scale));
+                s = v;
+            }
+            sum = s;
+        }
+        big = big.add(BigDecimal.valueOf(sum, scale));
+        for (BigDecimal value : overflow.values()) {
+            big = big.add(value);
+        }
+        return big;
+    }
+}
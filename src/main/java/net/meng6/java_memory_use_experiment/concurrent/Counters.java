@@ -0,0 +1,103 @@
+package net.meng6.java_memory_use_experiment.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * ## Summary
+ *
+ * One `long` counter per thread, three ways:
+ *
+ *     Plain:      24B = 12B header + 4B (padding) + 8B value, two or three to a 64B cache line
+ *     Padded:     136B, 56B of unused longs on either side of the value
+ *     Contended:  the JVM adds the padding around the field itself (@Contended)
+ *
+ * A `Plain[]` filled in a loop places its counters next to each other in memory, so
+ * threads incrementing their own counter still fight over the same cache line
+ * (false sharing). Padding moves every counter to a line of its own.
+ *
+ * HotSpot is free to reorder the fields of a class, but keeps the fields of a
+ * superclass before those of a subclass; `Padded` stacks three classes to keep its
+ * value between the padding. `@Contended` outside the JDK is only honoured with
+ * `-XX:-RestrictContended`; without it `Contended` is the same size as `Plain`.
+ */
+public final class Counters {
+
+    private Counters() {
+    }
+
+    public static class Plain {
+        private static final VarHandle VALUE;
+
+        private volatile long value;
+
+        public long incrementAndGet() {
+            return (long) VALUE.getAndAdd(this, 1L) + 1;
+        }
+
+        public long get() {
+            return value;
+        }
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Plain.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    static class PaddingBefore {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    static class PaddedValue extends PaddingBefore {
+        volatile long value;
+    }
+
+    public static class Padded extends PaddedValue {
+        private static final VarHandle VALUE;
+
+        long p11, p12, p13, p14, p15, p16, p17;
+
+        public long incrementAndGet() {
+            return (long) VALUE.getAndAdd(this, 1L) + 1;
+        }
+
+        public long get() {
+            return value;
+        }
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(PaddedValue.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    public static class Contended {
+        private static final VarHandle VALUE;
+
+        @jdk.internal.vm.annotation.Contended
+        private volatile long value;
+
+        public long incrementAndGet() {
+            return (long) VALUE.getAndAdd(this, 1L) + 1;
+        }
+
+        public long get() {
+            return value;
+        }
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Contended.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
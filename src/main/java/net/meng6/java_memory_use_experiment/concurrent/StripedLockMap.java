@@ -0,0 +1,80 @@
+package net.meng6.java_memory_use_experiment.concurrent;
+
+import java.util.HashMap;
+import java.util.function.BiFunction;
+
+/**
+ * ## Summary
+ *
+ * Thread-safe map of `stripes` `HashMap`s, each guarded by its own monitor, the
+ * layout `ConcurrentHashMap` had before JDK 8 (`Segment`s): a fixed, small amount of
+ * extra memory (one `HashMap` per stripe) for at most `stripes` writers at a time.
+ *
+ * `ConcurrentHashMap` since JDK 8 locks single bins instead and reads without locking,
+ * at the cost of its own `Node` type and a `CounterCell[]` for the size under contention.
+ *
+ * Only the operations the concurrency suite needs; `size` is not atomic with respect
+ * to concurrent updates.
+ */
+public class StripedLockMap<K, V> {
+
+    private final HashMap<K, V>[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public StripedLockMap(int stripes) {
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.stripes = (HashMap<K, V>[]) new HashMap<?, ?>[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new HashMap<K, V>();
+        }
+        this.mask = n - 1;
+    }
+
+    private HashMap<K, V> stripe(Object key) {
+        int h = key.hashCode();
+        // the HashMap uses the low bits, so pick the stripe with the high ones
+        return stripes[((h ^ (h >>> 16)) * 0x9E3779B9 >>> 16) & mask];
+    }
+
+    public V get(Object key) {
+        HashMap<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    public V put(K key, V value) {
+        HashMap<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.put(key, value);
+        }
+    }
+
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        HashMap<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.merge(key, value, remapping);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (HashMap<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+}
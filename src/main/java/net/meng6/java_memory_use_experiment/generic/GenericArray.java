@@ -0,0 +1,44 @@
+package net.meng6.java_memory_use_experiment.generic;
+
+import java.lang.reflect.Array;
+
+/**
+ * ## Summary
+ *
+ * Fixed-size container backed by an `E[]`, the shape of
+ * `JavaMemoryUseExperiment.ComplexClassWithTypeParameter`, with accessors:
+ *
+ *     GenericArray<Long> array = new GenericArray<Long>(Long.class, n);   // 12 + 4 + 4 (+ 4 padding)
+ *                                                                        // + 16 + 4n array
+ *     array.set(i, 1280L + i);                                           // + 24 per Long
+ *
+ * After erasure `get` and `set` deal in references: a primitive value is boxed on
+ * the way in and unboxed on the way out. `IntArray`, `LongArray` and `DoubleArray` are
+ * the same container specialized for a primitive type, generated at build time from
+ * `src/template/java/.../generic/PrimitiveArray.java.template`.
+ */
+public class GenericArray<E> {
+
+    private final int n;
+    private final E[] items;
+
+    public GenericArray(Class<E> type, int n) {
+        // Array.newInstance creates an array of a type only known at run time
+        @SuppressWarnings("unchecked")
+        final E[] items = (E[]) Array.newInstance(type, n);
+        this.n = n;
+        this.items = items;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public E get(int index) {
+        return items[index];
+    }
+
+    public void set(int index, E value) {
+        items[index] = value;
+    }
+}
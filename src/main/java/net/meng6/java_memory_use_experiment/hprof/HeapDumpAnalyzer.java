@@ -0,0 +1,757 @@
+package net.meng6.java_memory_use_experiment.hprof;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.meng6.java_memory_use_experiment.primitive.IntArrayList;
+import net.meng6.java_memory_use_experiment.primitive.LongArrayList;
+import net.meng6.java_memory_use_experiment.primitive.LongLongHashMap;
+
+/**
+ * ## Summary
+ *
+ * Per-class shallow and retained size of a heap dump in HPROF format, as written by
+ * `HotSpotDiagnosticMXBean.dumpHeap`, `jmap -dump` or `-XX:+HeapDumpOnOutOfMemoryError`.
+ *
+ * The dump is read through a `MappedHprofReader`, never onto the heap. What the
+ * analyzer keeps is a compact object graph in primitive arrays, about 40 bytes per
+ * object plus 8 bytes per reference:
+ *
+ * 1. first pass: symbols, classes and their field layouts, one index per object
+ *    with its class and shallow size, GC roots
+ * 2. second pass: references between objects, as `int` source/target pairs
+ * 3. dominator tree (Cooper, Harvey and Kennedy, "A Simple, Fast Dominance
+ *    Algorithm") over the graph rooted in a virtual node above all GC roots
+ * 4. retained sizes summed bottom-up over the dominator tree
+ *
+ * ## Sizes
+ *
+ * HPROF records field values, not the VM's layout, so shallow sizes are recomputed
+ * with a `headerBytes` object header, `referenceBytes` per reference field or array
+ * element (4 with compressed oops), and rounded up to `alignmentBytes`. This is the
+ * JDK 15+ field layout, which packs fields without gaps.
+ *
+ * The retained size of a class is the retained size of all its instances, not
+ * counting instances that are dominated by another instance of the same class
+ * (the nodes of a linked list are counted once, through the head).
+ */
+public class HeapDumpAnalyzer {
+
+    // HPROF record tags
+    private static final int UTF8 = 0x01;
+    private static final int LOAD_CLASS = 0x02;
+    private static final int HEAP_DUMP = 0x0C;
+    private static final int HEAP_DUMP_SEGMENT = 0x1C;
+
+    // heap dump sub-record tags
+    private static final int ROOT_UNKNOWN = 0xFF;
+    private static final int ROOT_JNI_GLOBAL = 0x01;
+    private static final int ROOT_JNI_LOCAL = 0x02;
+    private static final int ROOT_JAVA_FRAME = 0x03;
+    private static final int ROOT_NATIVE_STACK = 0x04;
+    private static final int ROOT_STICKY_CLASS = 0x05;
+    private static final int ROOT_THREAD_BLOCK = 0x06;
+    private static final int ROOT_MONITOR_USED = 0x07;
+    private static final int ROOT_THREAD_OBJECT = 0x08;
+    private static final int CLASS_DUMP = 0x20;
+    private static final int INSTANCE_DUMP = 0x21;
+    private static final int OBJ_ARRAY_DUMP = 0x22;
+    private static final int PRIM_ARRAY_DUMP = 0x23;
+
+    // basic types
+    private static final int OBJECT = 2;
+    private static final String[] PRIMITIVE_NAMES = {
+            null, null, null, null, "boolean", "char", "float", "double", "byte", "short", "int", "long"};
+    private static final int[] PRIMITIVE_SIZES = {0, 0, 0, 0, 1, 2, 4, 8, 1, 2, 4, 8};
+
+    private static final String[] BOXED_NAMES = {
+            "java.lang.Boolean", "java.lang.Character", "java.lang.Float", "java.lang.Double",
+            "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long"};
+
+    private final int headerBytes;
+    private final int referenceBytes;
+    private final int alignmentBytes;
+    private int windowBytes = MappedHprofReader.DEFAULT_WINDOW_BYTES;
+
+    private MappedHprofReader in;
+    private int idSize;
+
+    // symbols and classes
+    private final LongLongHashMap utf8Records = new LongLongHashMap(1 << 16, 0.5f, -1);
+    private final LongLongHashMap classNameIds = new LongLongHashMap(1 << 12, 0.5f, -1);
+    private final LongLongHashMap classIndexes = new LongLongHashMap(1 << 12, 0.5f, -1);
+    private final List<ClassInfo> classes = new ArrayList<ClassInfo>();
+    private final int[] primitiveArrayClasses = new int[12];
+
+    // objects, node 0 is the virtual root above all GC roots
+    private final LongLongHashMap objectIndexes = new LongLongHashMap(1 << 16, 0.5f, -1);
+    private final IntArrayList objectClasses = new IntArrayList();
+    private final LongArrayList shallowSizes = new LongArrayList();
+    private final LongArrayList rootIds = new LongArrayList();
+
+    // references
+    private final IntArrayList edgeSources = new IntArrayList();
+    private final IntArrayList edgeTargets = new IntArrayList();
+
+    private long[] retained;
+    private int reachable;
+
+    /**
+     * Class of an object in the dump, with its per-class totals.
+     */
+    public static class ClassInfo {
+        final long id;
+        String name;
+        long superId;
+        int superIndex = -1;
+        // types of the instance fields declared by this class, in dump order
+        byte[] fieldTypes = new byte[0];
+        // class object node, so that static references hang off it
+        int node = -1;
+        long instanceBytes;
+
+        long instances;
+        long shallow;
+        long retained;
+
+        ClassInfo(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getInstances() {
+            return instances;
+        }
+
+        public long getShallow() {
+            return shallow;
+        }
+
+        public long getRetained() {
+            return retained;
+        }
+    }
+
+    public HeapDumpAnalyzer() {
+        this(12, 4, 8);
+    }
+
+    public HeapDumpAnalyzer(int headerBytes, int referenceBytes, int alignmentBytes) {
+        this.headerBytes = headerBytes;
+        this.referenceBytes = referenceBytes;
+        this.alignmentBytes = alignmentBytes;
+        Arrays.fill(primitiveArrayClasses, -1);
+    }
+
+    public static HeapDumpAnalyzer fromSystemProperties() {
+        HeapDumpAnalyzer analyzer = new HeapDumpAnalyzer(
+                Integer.getInteger("hprof.headerBytes", 12),
+                Integer.getInteger("hprof.referenceBytes", 4),
+                Integer.getInteger("hprof.alignmentBytes", 8));
+        analyzer.setWindowBytes(Integer.getInteger("hprof.windowBytes", MappedHprofReader.DEFAULT_WINDOW_BYTES));
+        return analyzer;
+    }
+
+    /**
+     * Size of the mapped window over the dump, the address space the analyzer uses at a time.
+     */
+    public void setWindowBytes(int windowBytes) {
+        if (windowBytes < 64) {
+            throw new IllegalArgumentException("window too small: " + windowBytes);
+        }
+        this.windowBytes = windowBytes;
+    }
+
+    public void analyze(Path file) throws IOException {
+        in = new MappedHprofReader(file, windowBytes);
+        try {
+            long position = readHeader();
+            objectClasses.add(-1);
+            shallowSizes.add(0);
+            scan(position, true);
+            resolveClasses();
+            scan(position, false);
+        } finally {
+            in.close();
+        }
+        computeRetainedSizes();
+    }
+
+    private long readHeader() throws IOException {
+        long position = 0;
+        while (in.u1(position) != 0) {
+            position++;
+        }
+        String format = in.ascii(0, (int) position);
+        if (!format.startsWith("JAVA PROFILE")) {
+            throw new IOException("not an HPROF file: " + format);
+        }
+        position++;
+        in.setIdSize((int) in.u4(position));
+        idSize = in.getIdSize();
+        // identifier size, then an 8 byte timestamp
+        return position + 4 + 8;
+    }
+
+    private void scan(long position, boolean firstPass) throws IOException {
+        long end = in.size();
+        while (position < end) {
+            int tag = in.u1(position);
+            long length = in.u4(position + 5);
+            long body = position + 9;
+            if (firstPass && tag == UTF8) {
+                utf8Records.put(in.id(body), position);
+            } else if (firstPass && tag == LOAD_CLASS) {
+                classNameIds.put(in.id(body + 4), in.id(body + 4 + idSize + 4));
+            } else if (tag == HEAP_DUMP || tag == HEAP_DUMP_SEGMENT) {
+                scanHeapDump(body, body + length, firstPass);
+            }
+            position = body + length;
+        }
+    }
+
+    private void scanHeapDump(long position, long end, boolean firstPass) throws IOException {
+        while (position < end) {
+            int tag = in.u1(position++);
+            switch (tag) {
+                case ROOT_UNKNOWN:
+                case ROOT_STICKY_CLASS:
+                case ROOT_MONITOR_USED:
+                    if (firstPass) rootIds.add(in.id(position));
+                    position += idSize;
+                    break;
+                case ROOT_JNI_GLOBAL:
+                    if (firstPass) rootIds.add(in.id(position));
+                    position += 2 * idSize;
+                    break;
+                case ROOT_JNI_LOCAL:
+                case ROOT_JAVA_FRAME:
+                case ROOT_THREAD_OBJECT:
+                    if (firstPass) rootIds.add(in.id(position));
+                    position += idSize + 8;
+                    break;
+                case ROOT_NATIVE_STACK:
+                case ROOT_THREAD_BLOCK:
+                    if (firstPass) rootIds.add(in.id(position));
+                    position += idSize + 4;
+                    break;
+                case CLASS_DUMP:
+                    position = classDump(position, firstPass);
+                    break;
+                case INSTANCE_DUMP:
+                    position = instanceDump(position, firstPass);
+                    break;
+                case OBJ_ARRAY_DUMP:
+                    position = objectArrayDump(position, firstPass);
+                    break;
+                case PRIM_ARRAY_DUMP:
+                    position = primitiveArrayDump(position, firstPass);
+                    break;
+                default:
+                    throw new IOException(String.format("unknown heap dump sub-record 0x%02x at %d", tag, position - 1));
+            }
+        }
+    }
+
+    private long classDump(long position, boolean firstPass) throws IOException {
+        long classId = in.id(position);
+        ClassInfo info = classInfo(classId);
+        if (firstPass) {
+            info.superId = in.id(position + idSize + 4);
+            info.node = addObject(classId, -1, 0);
+        }
+        // class id, stack serial, super, loader, signers, protection domain, 2 reserved
+        position += idSize + 4 + 6 * idSize;
+        if (firstPass) {
+            info.instanceBytes = in.u4(position);
+        }
+        position += 4;
+
+        int constants = in.u2(position);
+        position += 2;
+        for (int i = 0; i < constants; i++) {
+            position += 2 + 1 + valueSize(in.u1(position + 2));
+        }
+
+        int statics = in.u2(position);
+        position += 2;
+        long staticBytes = 0;
+        for (int i = 0; i < statics; i++) {
+            int type = in.u1(position + idSize);
+            position += idSize + 1;
+            if (type == OBJECT && !firstPass) {
+                addEdge(info.node, in.id(position));
+            }
+            staticBytes += fieldSize(type);
+            position += valueSize(type);
+        }
+        if (firstPass) {
+            shallowSizes.set(info.node, align(headerBytes + staticBytes));
+        }
+
+        int fields = in.u2(position);
+        position += 2;
+        if (firstPass) {
+            info.fieldTypes = new byte[fields];
+        }
+        for (int i = 0; i < fields; i++) {
+            if (firstPass) {
+                info.fieldTypes[i] = (byte) in.u1(position + idSize);
+            }
+            position += idSize + 1;
+        }
+        return position;
+    }
+
+    private long instanceDump(long position, boolean firstPass) throws IOException {
+        long objectId = in.id(position);
+        long classId = in.id(position + idSize + 4);
+        long length = in.u4(position + 2 * idSize + 4);
+        long values = position + 2 * idSize + 8;
+        if (firstPass) {
+            // shallow size is filled in from the class layout in resolveClasses()
+            addObject(objectId, classIndex(classId), 0);
+        } else {
+            int source = objectIndex(objectId);
+            int c = classIndex(classId);
+            long field = values;
+            // fields of the class itself first, then of each superclass
+            while (c >= 0) {
+                ClassInfo info = classes.get(c);
+                for (byte type : info.fieldTypes) {
+                    if (type == OBJECT) {
+                        addEdge(source, in.id(field));
+                    }
+                    field += valueSize(type);
+                }
+                c = info.superIndex;
+            }
+        }
+        return values + length;
+    }
+
+    private long objectArrayDump(long position, boolean firstPass) throws IOException {
+        long objectId = in.id(position);
+        long length = in.u4(position + idSize + 4);
+        long classId = in.id(position + idSize + 8);
+        long elements = position + 2 * idSize + 8;
+        if (firstPass) {
+            addObject(objectId, classIndex(classId), align(headerBytes + 4 + length * referenceBytes));
+        } else {
+            int source = objectIndex(objectId);
+            for (long i = 0; i < length; i++) {
+                addEdge(source, in.id(elements + i * idSize));
+            }
+        }
+        return elements + length * idSize;
+    }
+
+    private long primitiveArrayDump(long position, boolean firstPass) throws IOException {
+        long objectId = in.id(position);
+        long length = in.u4(position + idSize + 4);
+        int type = in.u1(position + idSize + 8);
+        if (type < 4 || type >= PRIMITIVE_SIZES.length) {
+            throw new IOException(String.format("bad primitive array type %d at %d", type, position));
+        }
+        if (firstPass) {
+            if (primitiveArrayClasses[type] < 0) {
+                primitiveArrayClasses[type] = newClass(0, PRIMITIVE_NAMES[type] + "[]");
+            }
+            addObject(objectId, primitiveArrayClasses[type], align(headerBytes + 4 + length * PRIMITIVE_SIZES[type]));
+        }
+        return position + idSize + 9 + length * PRIMITIVE_SIZES[type];
+    }
+
+    private int valueSize(int type) {
+        return type == OBJECT ? idSize : PRIMITIVE_SIZES[type];
+    }
+
+    private int fieldSize(int type) {
+        return type == OBJECT ? referenceBytes : PRIMITIVE_SIZES[type];
+    }
+
+    private long align(long bytes) {
+        return (bytes + alignmentBytes - 1) / alignmentBytes * alignmentBytes;
+    }
+
+    private int addObject(long objectId, int classIndex, long shallow) {
+        int index = objectClasses.size();
+        objectIndexes.put(objectId, index);
+        objectClasses.add(classIndex);
+        shallowSizes.add(shallow);
+        return index;
+    }
+
+    private int objectIndex(long objectId) {
+        return (int) objectIndexes.get(objectId);
+    }
+
+    private void addEdge(int source, long targetId) {
+        if (targetId == 0) {
+            return;
+        }
+        int target = objectIndex(targetId);
+        // references to objects missing from the dump are dropped
+        if (target > 0) {
+            edgeSources.add(source);
+            edgeTargets.add(target);
+        }
+    }
+
+    private ClassInfo classInfo(long classId) {
+        return classes.get(classIndex(classId));
+    }
+
+    private int classIndex(long classId) {
+        int index = (int) classIndexes.get(classId);
+        return index >= 0 ? index : newClass(classId, null);
+    }
+
+    private int newClass(long classId, String name) {
+        int index = classes.size();
+        classes.add(new ClassInfo(classId, name));
+        if (classId != 0) {
+            classIndexes.put(classId, index);
+        }
+        return index;
+    }
+
+    /**
+     * Names, superclasses and instance sizes, once all classes have been seen.
+     */
+    private void resolveClasses() throws IOException {
+        for (ClassInfo info : classes) {
+            if (info.name == null) {
+                long nameId = classNameIds.get(info.id);
+                info.name = nameId < 0 ? String.format("<class 0x%x>", info.id) : javaName(symbol(nameId));
+            }
+            if (info.superId != 0) {
+                info.superIndex = (int) classIndexes.get(info.superId);
+            }
+        }
+        for (int i = 0; i < classes.size(); i++) {
+            ClassInfo info = classes.get(i);
+            long fieldBytes = 0;
+            for (int c = i; c >= 0; c = classes.get(c).superIndex) {
+                for (byte type : classes.get(c).fieldTypes) {
+                    fieldBytes += fieldSize(type);
+                }
+            }
+            info.instanceBytes = align(headerBytes + fieldBytes);
+        }
+        for (int i = 1; i < objectClasses.size(); i++) {
+            if (shallowSizes.get(i) == 0) {
+                int c = objectClasses.get(i);
+                if (c >= 0) {
+                    shallowSizes.set(i, classes.get(c).instanceBytes);
+                }
+            }
+        }
+        for (int r = 0; r < rootIds.size(); r++) {
+            int target = objectIndex(rootIds.get(r));
+            if (target > 0) {
+                edgeSources.add(0);
+                edgeTargets.add(target);
+            }
+        }
+    }
+
+    private String symbol(long id) throws IOException {
+        long record = utf8Records.get(id);
+        if (record < 0) {
+            return "<symbol 0x" + Long.toHexString(id) + ">";
+        }
+        long length = in.u4(record + 5);
+        return in.utf8(record + 9 + idSize, (int) (length - idSize));
+    }
+
+    /**
+     * `java/lang/String` to `java.lang.String`, `[Ljava/lang/Long;` to `java.lang.Long[]`.
+     */
+    static String javaName(String internal) {
+        int dimensions = 0;
+        while (dimensions < internal.length() && internal.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        String element = internal.substring(dimensions);
+        if (dimensions > 0) {
+            if (element.startsWith("L") && element.endsWith(";")) {
+                element = element.substring(1, element.length() - 1);
+            } else {
+                switch (element.charAt(0)) {
+                    case 'Z': element = "boolean"; break;
+                    case 'C': element = "char"; break;
+                    case 'F': element = "float"; break;
+                    case 'D': element = "double"; break;
+                    case 'B': element = "byte"; break;
+                    case 'S': element = "short"; break;
+                    case 'I': element = "int"; break;
+                    case 'J': element = "long"; break;
+                    default: break;
+                }
+            }
+        }
+        StringBuilder name = new StringBuilder(element.replace('/', '.'));
+        for (int i = 0; i < dimensions; i++) {
+            name.append("[]");
+        }
+        return name.toString();
+    }
+
+    private void computeRetainedSizes() {
+        int nodes = objectClasses.size();
+        int[] successors = new int[edgeSources.size()];
+        int[] successorStart = csr(nodes, edgeSources, edgeTargets, successors);
+        int[] predecessors = new int[edgeSources.size()];
+        int[] predecessorStart = csr(nodes, edgeTargets, edgeSources, predecessors);
+
+        // iterative depth-first search from the virtual root for a postorder numbering
+        int[] postorder = new int[nodes];
+        int[] postIndex = new int[nodes];
+        Arrays.fill(postIndex, -1);
+        int[] stack = new int[nodes];
+        int[] next = new int[nodes];
+        boolean[] visited = new boolean[nodes];
+        int count = 0;
+        int top = 0;
+        stack[0] = 0;
+        visited[0] = true;
+        next[0] = successorStart[0];
+        while (top >= 0) {
+            int v = stack[top];
+            if (next[v] < successorStart[v + 1]) {
+                int w = successors[next[v]++];
+                if (!visited[w]) {
+                    visited[w] = true;
+                    next[w] = successorStart[w];
+                    stack[++top] = w;
+                }
+            } else {
+                postIndex[v] = count;
+                postorder[count++] = v;
+                top--;
+            }
+        }
+        reachable = count - 1;
+        stack = null;
+        next = null;
+        visited = null;
+
+        // Cooper-Harvey-Kennedy: iterate to a fixed point in reverse postorder
+        int[] idom = new int[nodes];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = count - 2; i >= 0; i--) {
+                int v = postorder[i];
+                int newIdom = -1;
+                for (int p = predecessorStart[v]; p < predecessorStart[v + 1]; p++) {
+                    int u = predecessors[p];
+                    if (idom[u] < 0) {
+                        continue;
+                    }
+                    newIdom = newIdom < 0 ? u : intersect(u, newIdom, idom, postIndex);
+                }
+                if (idom[v] != newIdom) {
+                    idom[v] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        // children finish before their dominator, so one pass in postorder sums them up
+        retained = new long[nodes];
+        for (int i = 0; i < count; i++) {
+            int v = postorder[i];
+            retained[v] += shallowSizes.get(v);
+            if (v != 0) {
+                retained[idom[v]] += retained[v];
+            }
+        }
+
+        for (int v = 1; v < nodes; v++) {
+            int c = objectClasses.get(v);
+            if (c >= 0) {
+                ClassInfo info = classes.get(c);
+                info.instances++;
+                info.shallow += shallowSizes.get(v);
+            }
+        }
+        sumRetainedPerClass(nodes, idom, postIndex);
+    }
+
+    private static int intersect(int a, int b, int[] idom, int[] postIndex) {
+        while (a != b) {
+            while (postIndex[a] < postIndex[b]) {
+                a = idom[a];
+            }
+            while (postIndex[b] < postIndex[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Walk the dominator tree and add an instance's retained size to its class unless
+     * an instance of the same class dominates it.
+     */
+    private void sumRetainedPerClass(int nodes, int[] idom, int[] postIndex) {
+        IntArrayList parents = new IntArrayList(nodes);
+        IntArrayList children = new IntArrayList(nodes);
+        for (int v = 1; v < nodes; v++) {
+            if (postIndex[v] >= 0 && idom[v] >= 0) {
+                parents.add(idom[v]);
+                children.add(v);
+            }
+        }
+        int[] tree = new int[children.size()];
+        int[] treeStart = csr(nodes, parents, children, tree);
+        parents = null;
+        children = null;
+
+        int[] onPath = new int[classes.size()];
+        int[] stack = new int[nodes];
+        int[] next = new int[nodes];
+        int top = 0;
+        stack[0] = 0;
+        next[0] = treeStart[0];
+        while (top >= 0) {
+            int v = stack[top];
+            if (next[v] < treeStart[v + 1]) {
+                int w = tree[next[v]++];
+                int c = objectClasses.get(w);
+                if (c >= 0) {
+                    if (onPath[c] == 0) {
+                        classes.get(c).retained += retained[w];
+                    }
+                    onPath[c]++;
+                }
+                next[w] = treeStart[w];
+                stack[++top] = w;
+            } else {
+                int c = objectClasses.get(v);
+                if (v != 0 && c >= 0) {
+                    onPath[c]--;
+                }
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Compressed sparse rows: `targets` grouped by `sources`, returns the start offsets.
+     */
+    private static int[] csr(int nodes, IntArrayList sources, IntArrayList values, int[] grouped) {
+        int[] start = new int[nodes + 1];
+        for (int i = 0; i < sources.size(); i++) {
+            start[sources.get(i) + 1]++;
+        }
+        for (int v = 0; v < nodes; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] fill = Arrays.copyOf(start, nodes);
+        for (int i = 0; i < sources.size(); i++) {
+            grouped[fill[sources.get(i)]++] = values.get(i);
+        }
+        return start;
+    }
+
+    public List<ClassInfo> getClasses() {
+        return classes;
+    }
+
+    /**
+     * Objects in the dump, without the virtual root.
+     */
+    public int getObjectCount() {
+        return objectClasses.size() - 1;
+    }
+
+    public int getReachableCount() {
+        return reachable;
+    }
+
+    public long getReferenceCount() {
+        return edgeSources.size();
+    }
+
+    public long getTotalRetained() {
+        return retained == null ? 0 : retained[0];
+    }
+
+    public void printClassTable(int top) {
+        List<ClassInfo> sorted = new ArrayList<ClassInfo>(classes);
+        Collections.sort(sorted, new Comparator<ClassInfo>() {
+            public int compare(ClassInfo a, ClassInfo b) {
+                return Long.compare(b.retained, a.retained);
+            }
+        });
+        System.out.println(String.format("%d objects, %d reachable from GC roots, %d references, %d bytes retained",
+                getObjectCount(), getReachableCount(), getReferenceCount(), getTotalRetained()));
+        printDivider();
+        System.out.println(String.format(
+                "| %75s | %12s %14s %14s | %12s %12s |",
+                "class", "instances", "shallow", "retained", "shallow/obj", "retained/obj"));
+        printDivider();
+        for (int i = 0; i < Math.min(top, sorted.size()); i++) {
+            ClassInfo info = sorted.get(i);
+            if (info.instances == 0) {
+                continue;
+            }
+            System.out.println(String.format(
+                    "| %75s | %12d %14d %14d | %12d %12d |",
+                    abbreviate(info.name, 75), info.instances, info.shallow, info.retained,
+                    info.shallow / info.instances, info.retained / info.instances));
+        }
+        printDivider();
+    }
+
+    /**
+     * Boxed primitives, and what they would cost as primitive fields or array elements
+     * instead: the object goes away and its reference slot changes to the primitive's
+     * size (`slot change`, negative for `boolean`, `byte`, `char` and `short`).
+     */
+    public void printBoxedWaste() {
+        printDivider();
+        System.out.println(String.format(
+                "| %75s | %12s %14s %14s | %12s %12s |",
+                "boxed class", "instances", "shallow", "slot change", "waste", "waste/obj"));
+        printDivider();
+        long total = 0;
+        for (int b = 0; b < BOXED_NAMES.length; b++) {
+            for (ClassInfo info : classes) {
+                if (info.instances > 0 && BOXED_NAMES[b].equals(info.name)) {
+                    int primitiveBytes = PRIMITIVE_SIZES[b + 4];
+                    long slotChange = info.instances * (primitiveBytes - referenceBytes);
+                    long waste = info.shallow - slotChange;
+                    total += waste;
+                    System.out.println(String.format(
+                            "| %75s | %12d %14d %14d | %12d %12d |",
+                            info.name, info.instances, info.shallow, slotChange, waste, waste / info.instances));
+                }
+            }
+        }
+        System.out.println(String.format("| %75s | %12s %14s %14s | %12d %12s |", "total", "", "", "", total, ""));
+        printDivider();
+    }
+
+    private static String abbreviate(String s, int width) {
+        return s.length() <= width ? s : "..." + s.substring(s.length() - width + 3);
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 155), 0).replace("0", "-"));
+    }
+}
@@ -0,0 +1,116 @@
+package net.meng6.java_memory_use_experiment.hprof;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ## Summary
+ *
+ * Random-access big-endian reader over a file of any size, through a sliding
+ * `MappedByteBuffer` window of at most `windowBytes`.
+ *
+ * Reads are addressed by absolute file position. A read that does not fit the
+ * current window remaps the window to start at that position, so a front-to-back
+ * scan maps each part of the file about once and the heap never holds file data.
+ */
+class MappedHprofReader implements Closeable {
+
+    static final int DEFAULT_WINDOW_BYTES = 1 << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+
+    private int idSize = 8;
+
+    MappedHprofReader(Path file, int windowBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowBytes = windowBytes;
+    }
+
+    long size() {
+        return fileSize;
+    }
+
+    int getIdSize() {
+        return idSize;
+    }
+
+    void setIdSize(int idSize) {
+        if (idSize != 4 && idSize != 8) {
+            throw new IllegalArgumentException("unsupported HPROF identifier size " + idSize);
+        }
+        this.idSize = idSize;
+    }
+
+    private int at(long position, int length) throws IOException {
+        if (window == null || position < windowStart || position + length > windowStart + windowLimit) {
+            if (position + length > fileSize) {
+                throw new IOException(String.format(
+                        "truncated HPROF file: read of %d bytes at %d, file has %d", length, position, fileSize));
+            }
+            windowStart = position;
+            windowLimit = (int) Math.min(windowBytes, fileSize - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLimit);
+        }
+        return (int) (position - windowStart);
+    }
+
+    int u1(long position) throws IOException {
+        int offset = at(position, 1);
+        return window.get(offset) & 0xFF;
+    }
+
+    int u2(long position) throws IOException {
+        int offset = at(position, 2);
+        return window.getShort(offset) & 0xFFFF;
+    }
+
+    /** unsigned 32 bit value, as used for lengths and counts */
+    long u4(long position) throws IOException {
+        int offset = at(position, 4);
+        return window.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    long u8(long position) throws IOException {
+        int offset = at(position, 8);
+        return window.getLong(offset);
+    }
+
+    long id(long position) throws IOException {
+        return idSize == 8 ? u8(position) : u4(position);
+    }
+
+    String ascii(long position, int length) throws IOException {
+        StringBuilder s = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            s.append((char) u1(position + i));
+        }
+        return s.toString();
+    }
+
+    /**
+     * Modified UTF-8 is plain ASCII for the class names we resolve, decode it as UTF-8.
+     */
+    String utf8(long position, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) u1(position + i);
+        }
+        return new String(bytes, "UTF-8");
+    }
+
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
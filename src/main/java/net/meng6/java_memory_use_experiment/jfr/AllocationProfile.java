@@ -0,0 +1,265 @@
+package net.meng6.java_memory_use_experiment.jfr;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * ## Summary
+ *
+ * Allocations of a JFR recording, by allocation site and owner:
+ *
+ *     Recording recording = AllocationProfile.newRecording();
+ *     recording.start();
+ *     long m1 = meter.sample();
+ *     Object instance = experiment.create(n);
+ *     long m2 = meter.sample();
+ *     recording.stop();
+ *     recording.dump(file);
+ *     AllocationProfile profile = AllocationProfile.read(file, Thread.currentThread().getId());
+ *
+ * A site is the allocated class, the frame that allocated it and, if that is a JDK
+ * method, the first frame of this project's code on the stack. Its owner is
+ *
+ * * `STRUCTURE`: allocated on the measuring thread below `Experiment.create(int)`,
+ *   or on a stack too deep to tell (JFR keeps the top 64 frames) that is not the meter's
+ * * `METER`: allocated on the measuring thread by a class of the `meter` package,
+ *   the harness's share of `m1 - m2`
+ * * `OTHER`: anything else: starting and stopping the recording, other threads
+ *
+ * ## Bytes
+ *
+ * Bytes come from the `jdk.ObjectAllocationInNewTLAB` and
+ * `jdk.ObjectAllocationOutsideTLAB` events, each counting the size of its own object.
+ * With G1 and `-XX:-UseTLAB` every allocation is outside a TLAB and reported with its
+ * stack (`isExact`), so the bytes are exact. Otherwise only the allocations that
+ * start a new TLAB or do not fit in one have an event, and the bytes are a lower
+ * bound: rows smaller than a TLAB may show nothing at all. The size of the new TLAB
+ * is not counted; it stands for whatever is allocated into it later, on any site, and
+ * credited to the one that happened to start it, a `Long[N]` of 3 KB showed 500 KB.
+ * The serial and parallel collectors allocate into eden without an event when TLABs
+ * are off.
+ *
+ * `jdk.ObjectAllocationSample` is recorded unthrottled as well, its weight being the
+ * bytes the thread allocated since its previous sample. `getSampledBytes` sums it per
+ * owner, leaving out the first sample of each thread, whose weight reaches back to
+ * before the recording started: an estimate of the total where the events give a
+ * lower bound.
+ */
+public class AllocationProfile {
+
+    public static final String NEW_TLAB = "jdk.ObjectAllocationInNewTLAB";
+    public static final String OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+    public static final String SAMPLE = "jdk.ObjectAllocationSample";
+
+    private static final String PROJECT = "net.meng6.java_memory_use_experiment.";
+    private static final String METER = PROJECT + "meter.";
+
+    public enum Owner {
+        STRUCTURE, METER, OTHER
+    }
+
+    public static class Site {
+        private final Owner owner;
+        private final String className;
+        private final String frame;
+        private final String caller;
+        private long bytes;
+        private int events;
+
+        Site(Owner owner, String className, String frame, String caller) {
+            this.owner = owner;
+            this.className = className;
+            this.frame = frame;
+            this.caller = caller;
+        }
+
+        public Owner getOwner() {
+            return owner;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return `type.method:line` of the allocating frame, `?` without a stack trace
+         */
+        public String getFrame() {
+            return frame;
+        }
+
+        /**
+         * @return the first frame of this project's code below a JDK frame, null if the
+         * allocating frame is the project's or there is none
+         */
+        public String getCaller() {
+            return caller;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getEvents() {
+            return events;
+        }
+
+        @Override
+        public String toString() {
+            return className + " at " + frame + (caller == null ? "" : " from " + caller);
+        }
+    }
+
+    private final Map<String, Site> sites = new LinkedHashMap<String, Site>();
+    private final long[] bytes = new long[Owner.values().length];
+    private final long[] sampledBytes = new long[Owner.values().length];
+
+    private AllocationProfile() {
+    }
+
+    /**
+     * A recording of the three allocation events with stack traces, not started.
+     */
+    public static Recording newRecording() {
+        Recording recording = new Recording();
+        recording.enable(NEW_TLAB).withStackTrace();
+        recording.enable(OUTSIDE_TLAB).withStackTrace();
+        recording.enable(SAMPLE).withStackTrace().with("throttle", "off");
+        return recording;
+    }
+
+    /**
+     * @param threadId `Thread.getId()` of the thread that created the structure
+     */
+    public static AllocationProfile read(Path recording, long threadId) throws IOException {
+        AllocationProfile profile = new AllocationProfile();
+        Set<Long> sampledThreads = new HashSet<Long>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String type = event.getEventType().getName();
+                RecordedThread thread = event.getThread();
+                long javaThreadId = thread == null ? -1 : thread.getJavaThreadId();
+                Owner owner = ownerOf(event.getStackTrace(), javaThreadId == threadId);
+                if (SAMPLE.equals(type)) {
+                    if (!sampledThreads.add(javaThreadId)) {
+                        profile.sampledBytes[owner.ordinal()] += event.getLong("weight");
+                    }
+                } else if (NEW_TLAB.equals(type) || OUTSIDE_TLAB.equals(type)) {
+                    profile.add(owner, event.getClass("objectClass").getName(), event.getStackTrace(),
+                            event.getLong("allocationSize"));
+                }
+            }
+        }
+        return profile;
+    }
+
+    private static Owner ownerOf(RecordedStackTrace stackTrace, boolean measuringThread) {
+        if (!measuringThread || stackTrace == null) {
+            return Owner.OTHER;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(METER)) {
+                return Owner.METER;
+            }
+            if ("create".equals(frame.getMethod().getName())
+                    && "(I)Ljava/lang/Object;".equals(frame.getMethod().getDescriptor())) {
+                return Owner.STRUCTURE;
+            }
+        }
+        return stackTrace.isTruncated() ? Owner.STRUCTURE : Owner.OTHER;
+    }
+
+    private void add(Owner owner, String className, RecordedStackTrace stackTrace, long size) {
+        String frame = "?";
+        String caller = null;
+        if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+            List<RecordedFrame> frames = stackTrace.getFrames();
+            frame = format(frames.get(0));
+            if (!frame.startsWith(PROJECT)) {
+                for (RecordedFrame candidate : frames) {
+                    if (candidate.isJavaFrame() && candidate.getMethod().getType().getName().startsWith(PROJECT)) {
+                        caller = format(candidate);
+                        break;
+                    }
+                }
+            }
+        }
+        String key = owner + " " + className + " " + frame + " " + caller;
+        Site site = sites.get(key);
+        if (site == null) {
+            site = new Site(owner, className, frame, caller);
+            sites.put(key, site);
+        }
+        site.bytes += size;
+        site.events++;
+        bytes[owner.ordinal()] += size;
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    /**
+     * @return bytes of `owner`'s allocations, a lower bound unless `isExact`
+     */
+    public long getBytes(Owner owner) {
+        return bytes[owner.ordinal()];
+    }
+
+    /**
+     * @return weight of `owner`'s `jdk.ObjectAllocationSample` events
+     */
+    public long getSampledBytes(Owner owner) {
+        return sampledBytes[owner.ordinal()];
+    }
+
+    /**
+     * @return `owner`'s sites, most bytes first
+     */
+    public List<Site> getSites(Owner owner) {
+        List<Site> result = new ArrayList<Site>();
+        for (Site site : sites.values()) {
+            if (site.owner == owner) {
+                result.add(site);
+            }
+        }
+        Collections.sort(result, (a, b) -> Long.compare(b.bytes, a.bytes));
+        return result;
+    }
+
+    /**
+     * True if every allocation has an event: G1 with `-XX:-UseTLAB`.
+     */
+    public static boolean isExact() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return Boolean.parseBoolean(hotspot.getVMOption("UseG1GC").getValue())
+                    && !Boolean.parseBoolean(hotspot.getVMOption("UseTLAB").getValue());
+        } catch (RuntimeException e) {
+            // not HotSpot
+            return false;
+        }
+    }
+}
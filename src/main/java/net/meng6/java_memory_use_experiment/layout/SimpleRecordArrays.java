@@ -0,0 +1,47 @@
+package net.meng6.java_memory_use_experiment.layout;
+
+/**
+ * ## Summary
+ *
+ * On-heap struct-of-arrays layout of N `(int, long)` records: one `int[]` and one
+ * `long[]`, i.e. 12 bytes per record plus two array headers, where an array of
+ * objects pays a reference, an object header and padding per record.
+ */
+public class SimpleRecordArrays {
+
+    private final int[] member_int;
+    private final long[] member_long;
+
+    public SimpleRecordArrays(int n) {
+        member_int = new int[n];
+        member_long = new long[n];
+    }
+
+    public int size() {
+        return member_int.length;
+    }
+
+    public int getMemberInt(int index) {
+        return member_int[index];
+    }
+
+    public long getMemberLong(int index) {
+        return member_long[index];
+    }
+
+    public void set(int index, int memberInt, long memberLong) {
+        member_int[index] = memberInt;
+        member_long[index] = memberLong;
+    }
+
+    /**
+     * Sum of both fields over all records, the scan used for throughput comparisons.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < member_int.length; i++) {
+            sum += member_int[i] + member_long[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,162 @@
+package net.meng6.java_memory_use_experiment.layout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ## Summary
+ *
+ * Off-heap store of N `(int, long)` records packed into 12 bytes each, in direct
+ * (`ByteBuffer.allocateDirect`) or file-mapped (`FileChannel.map`) buffers.
+ *
+ * A single `ByteBuffer` holds at most 2 GB, so the records are split into chunks of
+ * `RECORDS_PER_CHUNK` records and indexed with a `long`. The heap only holds the
+ * chunk array and one small buffer object per chunk, whatever N is.
+ *
+ * Records are read through accessors taking an index, or through a reusable
+ * `Flyweight` cursor when an object-like view is more convenient:
+ *
+ *     SimpleRecordBuffer.Flyweight record = buffer.flyweight();
+ *     for (long i = 0; i < buffer.size(); i++) {
+ *         sum += record.moveTo(i).getMemberInt();
+ *     }
+ */
+public class SimpleRecordBuffer {
+
+    public static final int RECORD_BYTES = 12;
+
+    private static final int MEMBER_INT_OFFSET = 0;
+    private static final int MEMBER_LONG_OFFSET = 4;
+
+    /** 2^26 records = 768 MB per chunk, keeps every offset within an int */
+    static final int CHUNK_SHIFT = 26;
+    static final int RECORDS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = RECORDS_PER_CHUNK - 1;
+
+    private final ByteBuffer[] chunks;
+    private final long size;
+
+    private SimpleRecordBuffer(ByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static SimpleRecordBuffer allocateDirect(long n) {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(n)];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocateDirect(chunkBytes(n, c)).order(ByteOrder.nativeOrder());
+        }
+        return new SimpleRecordBuffer(chunks, n);
+    }
+
+    /**
+     * Map `file`, growing it to hold `n` records. The mapping stays valid after the
+     * channel is closed and is released when the buffers are garbage collected.
+     */
+    public static SimpleRecordBuffer map(Path file, long n) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(n)];
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            for (int c = 0; c < chunks.length; c++) {
+                long position = (long) c * RECORDS_PER_CHUNK * RECORD_BYTES;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkBytes(n, c))
+                        .order(ByteOrder.nativeOrder());
+            }
+        } finally {
+            channel.close();
+        }
+        return new SimpleRecordBuffer(chunks, n);
+    }
+
+    private static int chunkCount(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("negative record count: " + n);
+        }
+        return (int) ((n + RECORDS_PER_CHUNK - 1) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkBytes(long n, int chunk) {
+        long records = Math.min(RECORDS_PER_CHUNK, n - ((long) chunk << CHUNK_SHIFT));
+        return (int) (records * RECORD_BYTES);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getMemberInt(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getInt(offset(index) + MEMBER_INT_OFFSET);
+    }
+
+    public long getMemberLong(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].getLong(offset(index) + MEMBER_LONG_OFFSET);
+    }
+
+    public void set(long index, int memberInt, long memberLong) {
+        ByteBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        int offset = offset(index);
+        chunk.putInt(offset + MEMBER_INT_OFFSET, memberInt);
+        chunk.putLong(offset + MEMBER_LONG_OFFSET, memberLong);
+    }
+
+    private static int offset(long index) {
+        return (int) (index & CHUNK_MASK) * RECORD_BYTES;
+    }
+
+    /**
+     * Sum of both fields over all records, the scan used for throughput comparisons.
+     */
+    public long sum() {
+        long sum = 0;
+        for (ByteBuffer chunk : chunks) {
+            int limit = chunk.capacity();
+            for (int offset = 0; offset < limit; offset += RECORD_BYTES) {
+                sum += chunk.getInt(offset + MEMBER_INT_OFFSET) + chunk.getLong(offset + MEMBER_LONG_OFFSET);
+            }
+        }
+        return sum;
+    }
+
+    public Flyweight flyweight() {
+        return new Flyweight();
+    }
+
+    /**
+     * Object-like view of one record at a time; move it instead of allocating a new one.
+     */
+    public class Flyweight {
+
+        private ByteBuffer chunk;
+        private int offset;
+
+        public Flyweight moveTo(long index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+            offset = offset(index);
+            return this;
+        }
+
+        public int getMemberInt() {
+            return chunk.getInt(offset + MEMBER_INT_OFFSET);
+        }
+
+        public long getMemberLong() {
+            return chunk.getLong(offset + MEMBER_LONG_OFFSET);
+        }
+
+        public void setMemberInt(int value) {
+            chunk.putInt(offset + MEMBER_INT_OFFSET, value);
+        }
+
+        public void setMemberLong(long value) {
+            chunk.putLong(offset + MEMBER_LONG_OFFSET, value);
+        }
+    }
+}
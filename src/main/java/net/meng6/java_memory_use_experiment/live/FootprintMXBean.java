@@ -0,0 +1,31 @@
+package net.meng6.java_memory_use_experiment.live;
+
+/**
+ * Latest estimate for one structure registered with a `FootprintSampler`, under
+ * `net.meng6.java_memory_use_experiment:type=Footprint,name=<name>`.
+ */
+public interface FootprintMXBean {
+
+    String getName();
+
+    /** estimated deep size in bytes, -1 before the first estimate */
+    long getEstimatedBytes();
+
+    /** objects visited for the estimate */
+    long getSampledObjects();
+
+    /** true if the estimate is the exact deep size, see `SampledSizeEstimator` */
+    boolean isExact();
+
+    /**
+     * true if the walk ran out of its object budget, so the estimate is a lower bound
+     * rather than a sampled estimate, e.g. for a long linked list
+     */
+    boolean isLowerBound();
+
+    /** `System.currentTimeMillis()` of the estimate */
+    long getLastUpdateMillis();
+
+    /** CPU time the estimate took */
+    long getLastEstimateCpuNanos();
+}
@@ -0,0 +1,303 @@
+package net.meng6.java_memory_use_experiment.live;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.meng6.java_memory_use_experiment.sizeof.SampledSizeEstimator;
+
+/**
+ * ## Summary
+ *
+ * Keeps an estimate of the deep size of live structures up to date in the background,
+ * for leaving on in a running service:
+ *
+ *     FootprintSampler sampler = FootprintSampler.fromSystemProperties();
+ *     sampler.register("orders", ordersById);
+ *     sampler.start();
+ *     new PrometheusEndpoint(sampler).start(9464);   // optional
+ *
+ * One daemon thread re-estimates each registered structure in turn with a
+ * `SampledSizeEstimator`, which looks at a bounded number of objects however large
+ * the structure is. Each estimate is published on the `Registration`, which is also
+ * registered as a `FootprintMXBean`.
+ *
+ * The thread's CPU time is bounded by `cpuBudget`, a fraction of one core: after an
+ * estimate that took `c` ns of CPU it sleeps at least `c / cpuBudget - c` ns, so over
+ * any stretch of time it is on CPU at most that fraction, however slow the estimates
+ * get. Between rounds over all structures it sleeps `intervalMillis`, except after the
+ * first: structures are usually registered empty, and their first estimate would
+ * otherwise stay up for a whole interval while they fill.
+ *
+ * Structures are held through weak references; one that has been collected is
+ * dropped along with its MBean.
+ *
+ * ## Configuration (`fromSystemProperties`)
+ *
+ * * `-Dlive.intervalMillis=5000`: pause between rounds
+ * * `-Dlive.firstIntervalMillis=100`: pause after the first round, at most `intervalMillis`
+ * * `-Dlive.cpuBudget=0.01`: fraction of one core the sampler may use
+ * * `-Dlive.samplesPerArray=256`, `-Dlive.maxObjects=100000`: see `SampledSizeEstimator`
+ */
+public class FootprintSampler implements Closeable {
+
+    static final String DOMAIN = "net.meng6.java_memory_use_experiment";
+
+    private final long intervalMillis;
+    private final long firstIntervalMillis;
+    private final double cpuBudget;
+    private final SampledSizeEstimator estimator;
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private final AtomicLong estimates = new AtomicLong();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private Thread thread;
+    private volatile boolean running;
+
+    public FootprintSampler(long intervalMillis, double cpuBudget, SampledSizeEstimator estimator) {
+        this(intervalMillis, intervalMillis, cpuBudget, estimator);
+    }
+
+    public FootprintSampler(long intervalMillis, long firstIntervalMillis, double cpuBudget,
+                            SampledSizeEstimator estimator) {
+        if (!(cpuBudget > 0 && cpuBudget <= 1)) {
+            throw new IllegalArgumentException("CPU budget must be in (0, 1]: " + cpuBudget);
+        }
+        this.intervalMillis = intervalMillis;
+        this.firstIntervalMillis = Math.min(firstIntervalMillis, intervalMillis);
+        this.cpuBudget = cpuBudget;
+        this.estimator = estimator;
+    }
+
+    public static FootprintSampler fromSystemProperties() {
+        return new FootprintSampler(
+                Long.getLong("live.intervalMillis", 5000),
+                Long.getLong("live.firstIntervalMillis", 100),
+                Double.parseDouble(System.getProperty("live.cpuBudget", "0.01")),
+                new SampledSizeEstimator(
+                        Integer.getInteger("live.samplesPerArray", 256),
+                        Integer.getInteger("live.maxObjects", 100000)));
+    }
+
+    /**
+     * A registered structure and its latest estimate.
+     */
+    public class Registration implements FootprintMXBean, Closeable {
+        private final String name;
+        private final WeakReference<Object> root;
+        private final ObjectName objectName;
+
+        private volatile long bytes = -1;
+        private volatile long objects;
+        private volatile boolean exact;
+        private volatile boolean lowerBound;
+        private volatile long lastUpdateMillis;
+        private volatile long lastEstimateCpuNanos;
+        // the estimate failed last time, reported once until it succeeds again
+        private volatile boolean failing;
+
+        Registration(String name, Object root) {
+            this.name = name;
+            this.root = new WeakReference<Object>(root);
+            this.objectName = objectName(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEstimatedBytes() {
+            return bytes;
+        }
+
+        public long getSampledObjects() {
+            return objects;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+
+        public boolean isLowerBound() {
+            return lowerBound;
+        }
+
+        public long getLastUpdateMillis() {
+            return lastUpdateMillis;
+        }
+
+        public long getLastEstimateCpuNanos() {
+            return lastEstimateCpuNanos;
+        }
+
+        /**
+         * Stop sampling this structure and unregister its MBean.
+         */
+        public void close() {
+            registrations.remove(this);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                if (objectName != null && server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                // already gone
+            }
+        }
+    }
+
+    private static ObjectName objectName(String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=Footprint,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start sampling `root` under `name`, and register its `FootprintMXBean`.
+     */
+    public Registration register(String name, Object root) {
+        Registration registration = new Registration(name, root);
+        if (registration.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(registration, registration.objectName);
+            } catch (JMException e) {
+                System.err.println("Could not register MBean " + registration.objectName + ": " + e.getMessage());
+            }
+        }
+        registrations.add(registration);
+        return registration;
+    }
+
+    public List<Registration> getRegistrations() {
+        return registrations;
+    }
+
+    /** CPU time spent estimating so far */
+    public long getCpuNanos() {
+        return cpuNanos.get();
+    }
+
+    public long getEstimates() {
+        return estimates.get();
+    }
+
+    public double getCpuBudget() {
+        return cpuBudget;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::loop, "footprint-sampler");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void loop() {
+        long interval = firstIntervalMillis;
+        while (running) {
+            for (Registration registration : registrations) {
+                if (!running) {
+                    return;
+                }
+                Object root = registration.root.get();
+                if (root == null) {
+                    registration.close();
+                    continue;
+                }
+                long c = sampleOnce(registration, root);
+                root = null;
+                if (!pause((long) (c / cpuBudget) - c)) {
+                    return;
+                }
+            }
+            if (!pause(TimeUnit.MILLISECONDS.toNanos(interval))) {
+                return;
+            }
+            interval = intervalMillis;
+        }
+    }
+
+    /**
+     * @return CPU time the estimate took
+     */
+    long sampleOnce(Registration registration, Object root) {
+        long c1 = cpuTime();
+        SampledSizeEstimator.Estimate estimate;
+        try {
+            estimate = estimator.estimate(root);
+        } catch (RuntimeException e) {
+            // keeps the last estimate; the other structures are still sampled
+            long c = Math.max(0, cpuTime() - c1);
+            cpuNanos.addAndGet(c);
+            if (!registration.failing) {
+                registration.failing = true;
+                System.err.println("Could not estimate " + registration.name + ": " + e);
+            }
+            return c;
+        }
+        long c = Math.max(0, cpuTime() - c1);
+        registration.failing = false;
+        registration.bytes = Math.round(estimate.getBytes());
+        registration.objects = estimate.getObjects();
+        registration.exact = estimate.isExact();
+        registration.lowerBound = estimate.isTruncated();
+        registration.lastEstimateCpuNanos = c;
+        registration.lastUpdateMillis = System.currentTimeMillis();
+        cpuNanos.addAndGet(c);
+        estimates.incrementAndGet();
+        return c;
+    }
+
+    private long cpuTime() {
+        long cpu = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+        // wall time overstates CPU time, so the budget still holds
+        return cpu >= 0 ? cpu : System.nanoTime();
+    }
+
+    /**
+     * Sleeps `nanos`, in nanoseconds: the pause after a small estimate is well below
+     * a millisecond, and rounding it down to none would break the budget.
+     */
+    private boolean pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long left = nanos; left > 0 && running; left = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, left);
+            if (Thread.interrupted()) {
+                return false;
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Stop the thread and unregister all MBeans.
+     */
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        for (Registration registration : registrations) {
+            registration.close();
+        }
+    }
+}
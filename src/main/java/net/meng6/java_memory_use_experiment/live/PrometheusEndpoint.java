@@ -0,0 +1,113 @@
+package net.meng6.java_memory_use_experiment.live;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ## Summary
+ *
+ * Serves the estimates of a `FootprintSampler` at `http://127.0.0.1:<port>/metrics`
+ * in the Prometheus text exposition format:
+ *
+ *     # TYPE footprint_estimated_bytes gauge
+ *     footprint_estimated_bytes{structure="orders",exact="false",lower_bound="false"} 1.2345E7
+ *     # TYPE footprint_sampled_objects gauge
+ *     footprint_sampled_objects{structure="orders"} 4097
+ *     # TYPE footprint_sampler_cpu_seconds_total counter
+ *     footprint_sampler_cpu_seconds_total 0.42
+ *
+ * `exact` and `lower_bound` tell an exact size, an estimate from sampled arrays and a
+ * walk cut off by its object budget apart; only the last may be far below the truth.
+ *
+ * It binds to the loopback address only; a scraper or sidecar on the same host is
+ * expected to pick it up. The JDK's built-in `HttpServer` answers on a single thread
+ * and only formats what the sampler has already computed, so a scrape costs no
+ * estimation work.
+ */
+public class PrometheusEndpoint implements Closeable {
+
+    private final FootprintSampler sampler;
+    private HttpServer server;
+
+    public PrometheusEndpoint(FootprintSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * @param port 0 for any free port, see `getPort`
+     */
+    public synchronized PrometheusEndpoint start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        return this;
+    }
+
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    String format() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP footprint_estimated_bytes Estimated deep size of a registered structure.\n");
+        out.append("# TYPE footprint_estimated_bytes gauge\n");
+        for (FootprintSampler.Registration r : sampler.getRegistrations()) {
+            if (r.getEstimatedBytes() >= 0) {
+                out.append("footprint_estimated_bytes{structure=\"").append(escape(r.getName()))
+                        .append("\",exact=\"").append(r.isExact())
+                        .append("\",lower_bound=\"").append(r.isLowerBound()).append("\"} ")
+                        .append((double) r.getEstimatedBytes()).append('\n');
+            }
+        }
+        out.append("# HELP footprint_sampled_objects Objects visited for the latest estimate.\n");
+        out.append("# TYPE footprint_sampled_objects gauge\n");
+        for (FootprintSampler.Registration r : sampler.getRegistrations()) {
+            if (r.getEstimatedBytes() >= 0) {
+                out.append("footprint_sampled_objects{structure=\"").append(escape(r.getName())).append("\"} ")
+                        .append(r.getSampledObjects()).append('\n');
+            }
+        }
+        out.append("# HELP footprint_sampler_cpu_seconds_total CPU time spent estimating.\n");
+        out.append("# TYPE footprint_sampler_cpu_seconds_total counter\n");
+        out.append("footprint_sampler_cpu_seconds_total ").append(sampler.getCpuNanos() / 1e9).append('\n');
+        out.append("# HELP footprint_sampler_estimates_total Estimates made.\n");
+        out.append("# TYPE footprint_sampler_estimates_total counter\n");
+        out.append("footprint_sampler_estimates_total ").append(sampler.getEstimates()).append('\n');
+        return out.toString();
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
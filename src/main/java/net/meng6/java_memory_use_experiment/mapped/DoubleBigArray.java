@@ -0,0 +1,75 @@
+package net.meng6.java_memory_use_experiment.mapped;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * ## Summary
+ *
+ * `double` array of any length backed by a memory-mapped file, indexed with a `long`;
+ * see `LongBigArray`, which it mirrors.
+ */
+public class DoubleBigArray {
+
+    private final MappedByteBuffer[] chunks;
+    private final DoubleBuffer[] views;
+    private final long length;
+
+    private DoubleBigArray(MappedByteBuffer[] chunks, long length) {
+        this.chunks = chunks;
+        this.length = length;
+        this.views = new DoubleBuffer[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            views[c] = chunks[c].asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Map the first `length` elements of `file`, creating or growing it as needed.
+     */
+    public static DoubleBigArray map(Path file, long length) throws IOException {
+        return new DoubleBigArray(MappedChunks.map(file, length), length);
+    }
+
+    /**
+     * Map all of an existing `file`.
+     */
+    public static DoubleBigArray open(Path file) throws IOException {
+        return map(file, MappedChunks.lengthOf(file));
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public double get(long index) {
+        return views[(int) (index >>> MappedChunks.CHUNK_SHIFT)].get((int) (index & MappedChunks.CHUNK_MASK));
+    }
+
+    public void set(long index, double value) {
+        views[(int) (index >>> MappedChunks.CHUNK_SHIFT)].put((int) (index & MappedChunks.CHUNK_MASK), value);
+    }
+
+    /**
+     * Sum of all elements, the scan used for throughput comparisons.
+     */
+    public double sum() {
+        double sum = 0;
+        for (DoubleBuffer view : views) {
+            int limit = view.limit();
+            for (int i = 0; i < limit; i++) {
+                sum += view.get(i);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Write changes through to the file.
+     */
+    public void force() {
+        MappedChunks.force(chunks);
+    }
+}
@@ -0,0 +1,90 @@
+package net.meng6.java_memory_use_experiment.mapped;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * ## Summary
+ *
+ * `long` array of any length backed by a memory-mapped file, indexed with a `long`:
+ *
+ *     LongBigArray array = LongBigArray.map(path, 6_000_000_000L);   // 48 GB
+ *     array.set(5_000_000_000L, 42);
+ *     array.force();
+ *     ...
+ *     LongBigArray again = LongBigArray.open(path);                   // after a restart
+ *
+ * The heap only holds this object and two small buffer objects per GB, whatever the
+ * length, so the collector neither copies nor scans the elements. They live in the
+ * page cache instead: the first access to a page reads it from the file, the kernel
+ * evicts pages under memory pressure, and `force` (or the kernel, eventually) writes
+ * changes back. Opening an existing file maps it without reading anything.
+ *
+ * Elements are stored in native byte order, so a file is only portable between
+ * machines of the same endianness. New files read as zeros. The mapping is released
+ * once the array is garbage collected.
+ */
+public class LongBigArray {
+
+    private final MappedByteBuffer[] chunks;
+    private final LongBuffer[] views;
+    private final long length;
+
+    private LongBigArray(MappedByteBuffer[] chunks, long length) {
+        this.chunks = chunks;
+        this.length = length;
+        this.views = new LongBuffer[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            views[c] = chunks[c].asLongBuffer();
+        }
+    }
+
+    /**
+     * Map the first `length` elements of `file`, creating or growing it as needed.
+     */
+    public static LongBigArray map(Path file, long length) throws IOException {
+        return new LongBigArray(MappedChunks.map(file, length), length);
+    }
+
+    /**
+     * Map all of an existing `file`.
+     */
+    public static LongBigArray open(Path file) throws IOException {
+        return map(file, MappedChunks.lengthOf(file));
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public long get(long index) {
+        return views[(int) (index >>> MappedChunks.CHUNK_SHIFT)].get((int) (index & MappedChunks.CHUNK_MASK));
+    }
+
+    public void set(long index, long value) {
+        views[(int) (index >>> MappedChunks.CHUNK_SHIFT)].put((int) (index & MappedChunks.CHUNK_MASK), value);
+    }
+
+    /**
+     * Sum of all elements, the scan used for throughput comparisons.
+     */
+    public long sum() {
+        long sum = 0;
+        for (LongBuffer view : views) {
+            int limit = view.limit();
+            for (int i = 0; i < limit; i++) {
+                sum += view.get(i);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Write changes through to the file.
+     */
+    public void force() {
+        MappedChunks.force(chunks);
+    }
+}
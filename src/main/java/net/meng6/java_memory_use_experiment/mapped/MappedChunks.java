@@ -0,0 +1,69 @@
+package net.meng6.java_memory_use_experiment.mapped;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Maps a file as consecutive `MappedByteBuffer`s of at most `CHUNK_BYTES` each, since
+ * one buffer is limited to 2 GB; shared by the big arrays.
+ */
+final class MappedChunks {
+
+    /** 2^30 bytes, 2^27 elements of 8 bytes, keeps every byte offset within an int */
+    static final int CHUNK_SHIFT = 27;
+    static final int ELEMENTS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    static final long CHUNK_MASK = ELEMENTS_PER_CHUNK - 1;
+    static final long CHUNK_BYTES = (long) ELEMENTS_PER_CHUNK * 8;
+
+    private MappedChunks() {}
+
+    /**
+     * Map `length` 8 byte elements of `file`, creating the file or growing it as needed.
+     * The mapping stays valid after the channel is closed and is released when the
+     * buffers are garbage collected.
+     */
+    static MappedByteBuffer[] map(Path file, long length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length: " + length);
+        }
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((length + ELEMENTS_PER_CHUNK - 1) >>> CHUNK_SHIFT)];
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            for (int c = 0; c < chunks.length; c++) {
+                long position = c * CHUNK_BYTES;
+                long bytes = Math.min(CHUNK_BYTES, length * 8 - position);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+                chunks[c].order(ByteOrder.nativeOrder());
+            }
+        } finally {
+            channel.close();
+        }
+        return chunks;
+    }
+
+    /**
+     * Elements of 8 bytes in `file`, for opening an array written before.
+     */
+    static long lengthOf(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return channel.size() / 8;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write changes through to the file.
+     */
+    static void force(MappedByteBuffer[] chunks) {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package net.meng6.java_memory_use_experiment.meter;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * ## Summary
+ *
+ * Counts the bytes allocated by the current thread using
+ * `com.sun.management.ThreadMXBean.getCurrentThreadAllocatedBytes()`.
+ *
+ * No garbage collection and no sleeping is needed, so a sample costs well under a
+ * microsecond, and the result only depends on what the measuring thread allocated:
+ * repeated runs print the same numbers. It reports bytes *allocated*, not bytes
+ * *retained*, i.e. temporaries created while building a structure are counted too.
+ *
+ * The counter itself may allocate a few bytes on some JVMs; that constant is
+ * measured once in the constructor and subtracted in `used(m1, m2)`.
+ */
+public class AllocatedBytesMemoryMeter implements MemoryMeter {
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    private final long overhead;
+
+    public AllocatedBytesMemoryMeter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException(
+                    "com.sun.management.ThreadMXBean is not available on this JVM");
+        }
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("thread allocated memory is not supported on this JVM");
+        }
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        // warm up the call path, then take the smallest observed self-cost
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long m1 = threadMXBean.getCurrentThreadAllocatedBytes();
+            long m2 = threadMXBean.getCurrentThreadAllocatedBytes();
+            min = Math.min(min, m2 - m1);
+        }
+        overhead = min;
+    }
+
+    public long sample() {
+        return threadMXBean.getCurrentThreadAllocatedBytes();
+    }
+
+    public long used(long m1, long m2) {
+        // the allocation counter only ever increases
+        return m2 - m1 - overhead;
+    }
+
+    public String getName() {
+        return "allocation";
+    }
+
+    public String getDescription() {
+        return "increase in ThreadMXBean.getCurrentThreadAllocatedBytes()";
+    }
+}
@@ -0,0 +1,69 @@
+package net.meng6.java_memory_use_experiment.meter;
+
+/**
+ * ## Summary
+ *
+ * The original measurement strategy: run `System.gc()` until
+ * `Runtime.getRuntime().freeMemory()` reads the same value several times in a row,
+ * and report the decrease in free memory.
+ *
+ * Slow (at least `stableReadings * pauseMillis` per sample) and sensitive to
+ * whatever else the JVM does in the meantime, but it observes what the collector
+ * actually retains, including padding of humongous objects and live garbage from
+ * earlier experiments. Kept for comparison with `AllocatedBytesMemoryMeter`.
+ */
+public class GcSettlingMemoryMeter implements MemoryMeter {
+
+    private static boolean DEBUG = false;
+
+    private final int stableReadings;
+    private final long pauseMillis;
+
+    public GcSettlingMemoryMeter() {
+        this(5, 250);
+    }
+
+    public GcSettlingMemoryMeter(int stableReadings, long pauseMillis) {
+        this.stableReadings = stableReadings;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public long sample() {
+        long measurement1 = Runtime.getRuntime().freeMemory();
+        long measurement2;
+        int measurement_count = 0;
+
+        // waits for free memory measurement to stabilize
+        do {
+            if (DEBUG) {
+                System.out.println(
+                        String.format(
+                                "Run garbage collector, re-measure free memory ..., %s " +
+                                        "time(s) confirmed: %s bytes",
+                                measurement_count, measurement1
+                        )
+                );
+            }
+            System.gc();
+            try { Thread.sleep(pauseMillis); } catch (InterruptedException x) { Thread.currentThread().interrupt(); }
+            measurement2 = measurement1;
+            measurement1 = Runtime.getRuntime().freeMemory();
+            if (measurement1 == measurement2) ++measurement_count; else measurement_count = 0;
+        } while (measurement_count < stableReadings);
+        if (DEBUG) {System.out.println("Free memory = " + measurement1 + " bytes");}
+        return measurement1;
+    }
+
+    public long used(long m1, long m2) {
+        // free memory decreases as the structure is built
+        return m1 - m2;
+    }
+
+    public String getName() {
+        return "gc";
+    }
+
+    public String getDescription() {
+        return "decrease in Runtime.getRuntime().freeMemory() after System.gc() settles";
+    }
+}
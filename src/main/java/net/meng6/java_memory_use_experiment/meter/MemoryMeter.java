@@ -0,0 +1,40 @@
+package net.meng6.java_memory_use_experiment.meter;
+
+/**
+ * ## Summary
+ *
+ * Strategy for measuring how many bytes a piece of code puts on the heap.
+ *
+ * A measurement is bracketed by two calls to `sample()`:
+ *
+ *     long m1 = meter.sample();
+ *     // ... build the data structure under test ...
+ *     long m2 = meter.sample();
+ *     long bytes = meter.used(m1, m2);
+ *
+ * The meaning of a single sample is up to the implementation (free heap, bytes
+ * allocated so far, ...); only `used(m1, m2)` is comparable across meters.
+ */
+public interface MemoryMeter {
+
+    /**
+     * Take one reading. Implementations must not allocate on the calling thread
+     * after they have been constructed, otherwise they pollute what they measure.
+     */
+    long sample();
+
+    /**
+     * Bytes used between two readings `m1` (before) and `m2` (after).
+     */
+    long used(long m1, long m2);
+
+    /**
+     * Short name used on the command line and in table headers.
+     */
+    String getName();
+
+    /**
+     * One-line description of where the readings come from, for table headers.
+     */
+    String getDescription();
+}
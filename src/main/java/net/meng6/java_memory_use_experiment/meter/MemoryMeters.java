@@ -0,0 +1,28 @@
+package net.meng6.java_memory_use_experiment.meter;
+
+/**
+ * ## Summary
+ *
+ * Looks up a `MemoryMeter` by name. The default is chosen with
+ * `-Dmeter=allocation` (the default) or `-Dmeter=gc`.
+ */
+public final class MemoryMeters {
+
+    public static final String PROPERTY = "meter";
+
+    private MemoryMeters() {}
+
+    public static MemoryMeter byName(String name) {
+        if ("allocation".equals(name)) {
+            return new AllocatedBytesMemoryMeter();
+        } else if ("gc".equals(name)) {
+            return new GcSettlingMemoryMeter();
+        }
+        throw new IllegalArgumentException(
+                String.format("unknown meter \"%s\", expected \"allocation\" or \"gc\"", name));
+    }
+
+    public static MemoryMeter fromSystemProperty() {
+        return byName(System.getProperty(PROPERTY, "allocation"));
+    }
+}
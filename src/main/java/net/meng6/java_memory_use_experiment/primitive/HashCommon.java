@@ -0,0 +1,48 @@
+package net.meng6.java_memory_use_experiment.primitive;
+
+/**
+ * Hashing and sizing helpers shared by the open-addressing containers.
+ */
+final class HashCommon {
+
+    /** 2^32 / golden ratio, the usual Fibonacci hashing multiplier */
+    private static final int INT_PHI = 0x9E3779B9;
+    private static final long LONG_PHI = 0x9E3779B97F4A7C15L;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private HashCommon() {}
+
+    static int mix(int x) {
+        int h = x * INT_PHI;
+        return h ^ (h >>> 16);
+    }
+
+    static int mix(long x) {
+        long h = x * LONG_PHI;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    /**
+     * Smallest power of two table that holds `expected` entries below `loadFactor`.
+     */
+    static int tableSize(int expected, float loadFactor) {
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("load factor must be in (0, 1): " + loadFactor);
+        }
+        if (expected < 0) {
+            throw new IllegalArgumentException("expected size must be non-negative: " + expected);
+        }
+        long needed = (long) Math.ceil(Math.max(2, expected) / (double) loadFactor);
+        if (needed > MAX_CAPACITY) {
+            throw new IllegalArgumentException("too many entries for a single array table: " + expected);
+        }
+        return Math.max(2, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    static int maxFill(int capacity, float loadFactor) {
+        // always keep at least one free slot so that probing terminates
+        return Math.min((int) Math.ceil(capacity * loadFactor), capacity - 1);
+    }
+}
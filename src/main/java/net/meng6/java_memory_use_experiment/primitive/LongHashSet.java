@@ -0,0 +1,117 @@
+package net.meng6.java_memory_use_experiment.primitive;
+
+import java.util.Arrays;
+
+/**
+ * ## Summary
+ *
+ * Set of `long` with open addressing and linear probing, `8 / loadFactor` bytes per
+ * element against roughly 4 (table slot) + 24 (`Long`) + 32 (`HashMap.Node`) bytes for
+ * `HashSet<Long>`.
+ *
+ * Only `add`, `contains` and `clear`: it is used as a visited set, where nothing is
+ * ever removed. Key `0` marks a free slot and is kept aside.
+ */
+public class LongHashSet {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private final float loadFactor;
+
+    private long[] keys;
+    private int mask;
+    private int maxFill;
+    private int size;
+
+    private boolean hasZeroKey;
+
+    public LongHashSet() {
+        this(16, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongHashSet(int expected) {
+        this(expected, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongHashSet(int expected, float loadFactor) {
+        int capacity = HashCommon.tableSize(expected, loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        maxFill = HashCommon.maxFill(capacity, loadFactor);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int slot = HashCommon.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if `key` was not in the set before
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = true;
+            size++;
+            return true;
+        }
+        int slot = HashCommon.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size > maxFill) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        allocate(capacity);
+        for (long k : oldKeys) {
+            if (k != 0) {
+                int slot = HashCommon.mix(k) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = k;
+            }
+        }
+    }
+}
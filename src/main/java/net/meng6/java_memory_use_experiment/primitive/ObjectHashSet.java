@@ -0,0 +1,149 @@
+package net.meng6.java_memory_use_experiment.primitive;
+
+import java.util.Arrays;
+
+/**
+ * ## Summary
+ *
+ * Hash set of non-null objects with open addressing and linear probing.
+ *
+ * One `Object[]` slot per entry (`4 / loadFactor` bytes with compressed oops),
+ * against a 32 byte `HashMap.Node` plus table slot per entry for `HashSet`, which is
+ * a `HashMap` whose values are all the same dummy object.
+ */
+public class ObjectHashSet<E> {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private final float loadFactor;
+
+    private Object[] elements;
+    private int mask;
+    private int maxFill;
+    private int size;
+
+    public ObjectHashSet() {
+        this(16, DEFAULT_LOAD_FACTOR);
+    }
+
+    public ObjectHashSet(int expected) {
+        this(expected, DEFAULT_LOAD_FACTOR);
+    }
+
+    public ObjectHashSet(int expected, float loadFactor) {
+        this.loadFactor = loadFactor;
+        allocate(HashCommon.tableSize(expected, loadFactor));
+    }
+
+    private void allocate(int capacity) {
+        elements = new Object[capacity];
+        mask = capacity - 1;
+        maxFill = HashCommon.maxFill(capacity, loadFactor);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        int slot = HashCommon.mix(o.hashCode()) & mask;
+        Object e;
+        while ((e = elements[slot]) != null) {
+            if (e.equals(o)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the set did not already contain `e`
+     */
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException("ObjectHashSet does not hold null");
+        }
+        int slot = HashCommon.mix(e.hashCode()) & mask;
+        Object existing;
+        while ((existing = elements[slot]) != null) {
+            if (existing.equals(e)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        elements[slot] = e;
+        if (++size > maxFill) {
+            rehash(elements.length * 2);
+        }
+        return true;
+    }
+
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        int slot = HashCommon.mix(o.hashCode()) & mask;
+        Object e;
+        while ((e = elements[slot]) != null) {
+            if (e.equals(o)) {
+                shiftKeys(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, null);
+        size = 0;
+    }
+
+    /**
+     * Close the gap left at `slot` by moving later entries of the same probe run back.
+     */
+    private void shiftKeys(int slot) {
+        int last;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & mask;
+            Object e;
+            while (true) {
+                if ((e = elements[slot]) == null) {
+                    elements[last] = null;
+                    return;
+                }
+                int home = HashCommon.mix(e.hashCode()) & mask;
+                // move e back unless its home lies cyclically in (last, slot]
+                if (last <= slot ? last >= home || home > slot : last >= home && home > slot) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            elements[last] = e;
+        }
+    }
+
+    private void rehash(int capacity) {
+        Object[] old = elements;
+        allocate(capacity);
+        for (Object e : old) {
+            if (e != null) {
+                int slot = HashCommon.mix(e.hashCode()) & mask;
+                while (elements[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                elements[slot] = e;
+            }
+        }
+    }
+}
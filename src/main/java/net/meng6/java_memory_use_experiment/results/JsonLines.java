@@ -0,0 +1,176 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Flat JSON objects, one per line: string keys, and string, number, boolean or null
+ * values. Enough for result records without a JSON library on the classpath.
+ */
+final class JsonLines {
+
+    private JsonLines() {}
+
+    static String format(Map<String, Object> record) {
+        StringBuilder line = new StringBuilder(256);
+        line.append('{');
+        for (Map.Entry<String, Object> e : record.entrySet()) {
+            if (line.length() > 1) {
+                line.append(',');
+            }
+            quote(line, e.getKey());
+            line.append(':');
+            Object value = e.getValue();
+            if (value == null || value instanceof Boolean || value instanceof Integer || value instanceof Long) {
+                line.append(value);
+            } else if (value instanceof Number) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    line.append("null");
+                } else if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                    line.append((long) d);
+                } else {
+                    line.append(d);
+                }
+            } else {
+                quote(line, value.toString());
+            }
+        }
+        return line.append('}').toString();
+    }
+
+    private static void quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * @return keys to values: `String`, `Double`, `Boolean` or null
+     * @throws IllegalArgumentException if `line` is not a flat JSON object
+     */
+    static Map<String, Object> parse(String line) {
+        Parser p = new Parser(line);
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        p.expect('{');
+        if (!p.skip('}')) {
+            do {
+                String key = p.string();
+                p.expect(':');
+                record.put(key, p.value());
+            } while (p.skip(','));
+            p.expect('}');
+        }
+        p.whitespace();
+        if (p.i != line.length()) {
+            throw p.error("trailing characters");
+        }
+        return record;
+    }
+
+    private static final class Parser {
+        final String s;
+        int i;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        void whitespace() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+                i++;
+            }
+        }
+
+        boolean skip(char c) {
+            whitespace();
+            if (i < s.length() && s.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!skip(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        Object value() {
+            whitespace();
+            if (i >= s.length()) {
+                throw error("expected a value");
+            }
+            char c = s.charAt(i);
+            if (c == '"') {
+                return string();
+            }
+            int start = i;
+            while (i < s.length() && ",}] \t".indexOf(s.charAt(i)) < 0) {
+                i++;
+            }
+            String token = s.substring(start, i);
+            if ("null".equals(token)) {
+                return null;
+            } else if ("true".equals(token) || "false".equals(token)) {
+                return Boolean.valueOf(token);
+            }
+            try {
+                return Double.valueOf(token);
+            } catch (NumberFormatException e) {
+                throw error("not a value: " + token);
+            }
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (i < s.length()) {
+                char c = s.charAt(i++);
+                if (c == '"') {
+                    return out.toString();
+                } else if (c != '\\') {
+                    out.append(c);
+                } else if (i < s.length()) {
+                    char e = s.charAt(i++);
+                    switch (e) {
+                        case 'n': out.append('\n'); break;
+                        case 'r': out.append('\r'); break;
+                        case 't': out.append('\t'); break;
+                        case 'b': out.append('\b'); break;
+                        case 'f': out.append('\f'); break;
+                        case 'u':
+                            if (i + 4 > s.length()) {
+                                throw error("truncated \\u escape");
+                            }
+                            out.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                            i += 4;
+                            break;
+                        default: out.append(e);
+                    }
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + i + ": " + s);
+        }
+    }
+}
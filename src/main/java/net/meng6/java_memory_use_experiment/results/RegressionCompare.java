@@ -0,0 +1,147 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ## Summary
+ *
+ * Compares the records of two result files, e.g. the same suite on two JDKs, and
+ * flags every structure whose cost rose, or whose rate fell, by more than a
+ * threshold:
+ *
+ *     | suite | structure | N | metric | baseline | candidate | change |
+ *
+ * Records match on suite, structure id, N and metric (`ResultRecord.key`); if a file
+ * has several values for one key, e.g. from appended repeated runs, their median is
+ * used. Only rows past the threshold are listed, followed by a count of compared,
+ * regressed, improved, dropped and new keys.
+ *
+ * `JavaMemoryUseExperiment compare` exits with status 2 if anything regressed, so it
+ * can gate a JDK upgrade in CI.
+ *
+ * ## Configuration
+ *
+ * * `-Dcompare.threshold=5`: percent change that counts as a regression or improvement
+ */
+public class RegressionCompare {
+
+    private final double thresholdPercent;
+
+    public RegressionCompare(double thresholdPercent) {
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    public static RegressionCompare fromSystemProperties() {
+        return new RegressionCompare(Double.parseDouble(System.getProperty("compare.threshold", "5")));
+    }
+
+    public double getThresholdPercent() {
+        return thresholdPercent;
+    }
+
+    /**
+     * @return the number of regressed keys
+     */
+    public int compare(List<ResultRecord> baseline, List<ResultRecord> candidate) {
+        printRuns("baseline", baseline);
+        printRuns("candidate", candidate);
+        System.out.println(String.format("threshold = %.1f%%", thresholdPercent));
+
+        Map<String, List<ResultRecord>> before = byKey(baseline);
+        Map<String, List<ResultRecord>> after = byKey(candidate);
+
+        printDivider();
+        System.out.println(String.format("| %-12s | %75s | %10s | %-24s | %14s | %14s | %9s | %-9s |",
+                "suite", "structure", "N", "metric", "baseline", "candidate", "change", ""));
+        printDivider();
+        int compared = 0;
+        int regressed = 0;
+        int improved = 0;
+        int dropped = 0;
+        for (Map.Entry<String, List<ResultRecord>> e : before.entrySet()) {
+            List<ResultRecord> now = after.get(e.getKey());
+            if (now == null) {
+                dropped++;
+                continue;
+            }
+            compared++;
+            ResultRecord first = now.get(0);
+            double b = median(e.getValue());
+            double c = median(now);
+            double change = b == 0 ? (c == 0 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, c)) : (c - b) / Math.abs(b) * 100;
+            // positive is worse
+            double worse = first.isHigherBetter() ? -change : change;
+            if (Math.abs(worse) < thresholdPercent || Double.isNaN(worse)) {
+                continue;
+            }
+            String verdict;
+            if (worse > 0) {
+                regressed++;
+                verdict = "REGRESSED";
+            } else {
+                improved++;
+                verdict = "improved";
+            }
+            System.out.println(String.format("| %-12s | %75s | %10d | %-24s | %14s | %14s | %8s%% | %-9s |",
+                    first.getSuite(), first.getName(), first.getN(), first.getMetric() + " [" + first.getUnit() + "]",
+                    format(b), format(c), Double.isInfinite(change) ? "inf" : String.format("%+.1f", change), verdict));
+        }
+        int added = 0;
+        for (String key : after.keySet()) {
+            if (!before.containsKey(key)) {
+                added++;
+            }
+        }
+        printDivider();
+        System.out.println(String.format("%d compared, %d regressed, %d improved, %d only in baseline, %d only in candidate",
+                compared, regressed, improved, dropped, added));
+        return regressed;
+    }
+
+    private static Map<String, List<ResultRecord>> byKey(List<ResultRecord> records) {
+        Map<String, List<ResultRecord>> byKey = new LinkedHashMap<String, List<ResultRecord>>();
+        for (ResultRecord record : records) {
+            List<ResultRecord> values = byKey.get(record.key());
+            if (values == null) {
+                values = new ArrayList<ResultRecord>();
+                byKey.put(record.key(), values);
+            }
+            values.add(record);
+        }
+        return byKey;
+    }
+
+    static double median(List<ResultRecord> records) {
+        double[] values = new double[records.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = records.get(i).getValue();
+        }
+        Arrays.sort(values);
+        int mid = values.length / 2;
+        return values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2;
+    }
+
+    private static void printRuns(String label, List<ResultRecord> records) {
+        Set<RunInfo> runs = new LinkedHashSet<RunInfo>();
+        for (ResultRecord record : records) {
+            runs.add(record.getRun());
+        }
+        for (RunInfo run : runs) {
+            System.out.println(String.format("%-9s = %s", label, run));
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e13 ? String.format("%d", (long) value) : String.format("%.2f", value);
+    }
+
+    private static void printDivider() {
+        System.out.println(String.format(String.format("%%0%dd", 196), 0).replace("0", "-"));
+    }
+}
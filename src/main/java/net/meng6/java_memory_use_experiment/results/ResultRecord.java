@@ -0,0 +1,128 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ## Summary
+ *
+ * One number measured in one run: `value` of `metric` (in `unit`) for structure `id`
+ * of `suite` at `n`, under `run`.
+ *
+ * Which way is better is stored with the record. When the recorder does not say, the
+ * unit decides: `B`, `B/elem` and `ns/elem` are costs, lower is better; `ops/s` and
+ * `M/s` are rates, higher is better. Metrics the unit misleads about, like a pause
+ * time in `ms/s` or a throughput in `%`, are recorded with an explicit direction.
+ */
+public class ResultRecord {
+
+    private final RunInfo run;
+    private final String suite;
+    private final String id;
+    private final String name;
+    private final long n;
+    private final String metric;
+    private final String unit;
+    private final double value;
+    private final boolean higherIsBetter;
+
+    public ResultRecord(RunInfo run, String suite, String id, String name, long n, String metric, String unit, double value) {
+        this(run, suite, id, name, n, metric, unit, value, isHigherBetter(unit));
+    }
+
+    public ResultRecord(RunInfo run, String suite, String id, String name, long n, String metric, String unit, double value,
+                        boolean higherIsBetter) {
+        this.run = run;
+        this.suite = suite;
+        this.id = id;
+        this.name = name;
+        this.n = n;
+        this.metric = metric;
+        this.unit = unit;
+        this.value = value;
+        this.higherIsBetter = higherIsBetter;
+    }
+
+    static ResultRecord fromJson(String line) {
+        Map<String, Object> record = JsonLines.parse(line);
+        Object value = record.get("value");
+        Object higherIsBetter = record.get("higherIsBetter");
+        String unit = string(record, "unit");
+        return new ResultRecord(RunInfo.fromRecord(record),
+                string(record, "suite"), string(record, "id"), string(record, "name"),
+                record.get("n") == null ? 0 : ((Double) record.get("n")).longValue(),
+                string(record, "metric"), unit,
+                value == null ? Double.NaN : (Double) value,
+                // files written before the direction was stored
+                higherIsBetter == null ? isHigherBetter(unit) : (Boolean) higherIsBetter);
+    }
+
+    private static String string(Map<String, Object> record, String key) {
+        Object value = record.get(key);
+        return value == null ? "" : value.toString();
+    }
+
+    public String toJson() {
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        record.put("suite", suite);
+        record.put("id", id);
+        record.put("name", name);
+        record.put("n", n);
+        record.put("metric", metric);
+        record.put("unit", unit);
+        record.put("value", value);
+        record.put("higherIsBetter", higherIsBetter);
+        run.putInto(record);
+        return JsonLines.format(record);
+    }
+
+    /**
+     * What two runs are compared on: everything but the run and the value.
+     */
+    public String key() {
+        return suite + "|" + id + "|" + n + "|" + metric;
+    }
+
+    public boolean isHigherBetter() {
+        return higherIsBetter;
+    }
+
+    /**
+     * The direction the unit implies: rates (`/s`) are better higher, everything else lower.
+     */
+    public static boolean isHigherBetter(String unit) {
+        return unit.endsWith("/s");
+    }
+
+    public RunInfo getRun() {
+        return run;
+    }
+
+    public String getSuite() {
+        return suite;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public double getValue() {
+        return value;
+    }
+}
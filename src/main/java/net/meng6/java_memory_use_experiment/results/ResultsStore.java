@@ -0,0 +1,110 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ## Summary
+ *
+ * Machine-readable copy of every number the modes print: one JSON object per line
+ * (see `ResultRecord` and `RunInfo` for the fields), appended to
+ *
+ *     output/results/<yyyyMMdd-HHmmss>-<suite>-jdk<feature version>.jsonl
+ *
+ * The file is created when the first record of a run arrives. `RegressionCompare`
+ * reads two such files back.
+ *
+ * ## Configuration
+ *
+ * * `-Dresults.dir=output/results`: directory of the result files, empty for none
+ */
+public final class ResultsStore {
+
+    public static final String PROPERTY = "results.dir";
+
+    private static ResultsStore current;
+
+    private final RunInfo run;
+    private final File file;
+    private final PrintWriter out;
+
+    private ResultsStore(RunInfo run, File file) throws IOException {
+        this.run = run;
+        this.file = file;
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        this.out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Append a record to this run's file, creating it on the first call; which way is
+     * better follows from `unit`, see `ResultRecord`.
+     */
+    public static void record(String suite, String id, String name, long n,
+                              String metric, String unit, double value) {
+        record(suite, id, name, n, metric, unit, value, ResultRecord.isHigherBetter(unit));
+    }
+
+    /**
+     * Append a record whose direction the unit does not tell.
+     */
+    public static synchronized void record(String suite, String id, String name, long n,
+                                           String metric, String unit, double value, boolean higherIsBetter) {
+        String dir = System.getProperty(PROPERTY, "output/results");
+        if (dir.isEmpty()) {
+            return;
+        }
+        if (current == null) {
+            String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            File file = new File(dir, stamp + "-" + suite + "-jdk" + Runtime.version().feature() + ".jsonl");
+            try {
+                current = new ResultsStore(RunInfo.current(), file);
+            } catch (IOException e) {
+                System.err.println("Could not create result file " + file + ": " + e.getMessage());
+                System.setProperty(PROPERTY, "");
+                return;
+            }
+        }
+        current.out.println(new ResultRecord(current.run, suite, id, name, n, metric, unit, value, higherIsBetter).toJson());
+    }
+
+    /**
+     * @return the file this run's records went to, or null if nothing was recorded
+     */
+    public static synchronized File getFile() {
+        return current == null ? null : current.file;
+    }
+
+    public static List<ResultRecord> read(File file) throws IOException {
+        List<ResultRecord> records = new ArrayList<ResultRecord>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8));
+        try {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    records.add(ResultRecord.fromJson(line));
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ":" + number + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+}
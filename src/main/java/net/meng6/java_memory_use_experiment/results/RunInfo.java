@@ -0,0 +1,135 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.meng6.java_memory_use_experiment.meter.MemoryMeters;
+import net.meng6.java_memory_use_experiment.sizeof.ObjectSizes;
+import net.meng6.java_memory_use_experiment.sizeof.VmLayout;
+
+/**
+ * ## Summary
+ *
+ * What a result depends on besides the structure and N: the JVM, its collector, its
+ * heap and layout flags, and the meter. Every record carries these, so that records
+ * of two runs can be told apart and compared.
+ *
+ * * `jvm`: `java.runtime.version`, e.g. `17.0.9+9`
+ * * `vendor`: `java.vm.vendor`
+ * * `gc`: names of the `GarbageCollectorMXBean`s, e.g. `G1 Young Generation+G1 Old Generation`
+ * * `heap`: the `-X` and `-XX:` options of the command line, in order
+ * * `layout`: compressed oops and class pointers and object alignment, see `VmLayout`
+ * * `meter`: the `MemoryMeter` selected with `-Dmeter`
+ */
+public class RunInfo {
+
+    static final String[] KEYS = {"jvm", "vendor", "gc", "heap", "layout", "meter"};
+
+    private final String jvm;
+    private final String vendor;
+    private final String gc;
+    private final String heap;
+    private final String layout;
+    private final String meter;
+
+    RunInfo(String jvm, String vendor, String gc, String heap, String layout, String meter) {
+        this.jvm = jvm;
+        this.vendor = vendor;
+        this.gc = gc;
+        this.heap = heap;
+        this.layout = layout;
+        this.meter = meter;
+    }
+
+    public static RunInfo current() {
+        StringBuilder gc = new StringBuilder();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc.length() > 0) {
+                gc.append('+');
+            }
+            gc.append(bean.getName());
+        }
+        List<String> heap = new ArrayList<String>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-X") && !arg.startsWith("-Xlog") && !arg.startsWith("-XX:Flags")) {
+                heap.add(arg);
+            }
+        }
+        VmLayout vm = ObjectSizes.getVmLayout();
+        return new RunInfo(
+                System.getProperty("java.runtime.version"),
+                System.getProperty("java.vm.vendor"),
+                gc.toString(),
+                String.join(" ", heap),
+                String.format("oops=%s,klass=%s,align=%d",
+                        vm.isCompressedOops() ? "compressed" : "wide",
+                        vm.isCompressedClassPointers() ? "compressed" : "wide",
+                        vm.getObjectAlignment()),
+                System.getProperty(MemoryMeters.PROPERTY, "allocation"));
+    }
+
+    static RunInfo fromRecord(Map<String, Object> record) {
+        String[] values = new String[KEYS.length];
+        for (int k = 0; k < KEYS.length; k++) {
+            Object value = record.get(KEYS[k]);
+            values[k] = value == null ? "" : value.toString();
+        }
+        return new RunInfo(values[0], values[1], values[2], values[3], values[4], values[5]);
+    }
+
+    void putInto(Map<String, Object> record) {
+        record.put("jvm", jvm);
+        record.put("vendor", vendor);
+        record.put("gc", gc);
+        record.put("heap", heap);
+        record.put("layout", layout);
+        record.put("meter", meter);
+    }
+
+    public String getJvm() {
+        return jvm;
+    }
+
+    public String getVendor() {
+        return vendor;
+    }
+
+    public String getGc() {
+        return gc;
+    }
+
+    public String getHeap() {
+        return heap;
+    }
+
+    public String getLayout() {
+        return layout;
+    }
+
+    public String getMeter() {
+        return meter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof RunInfo)) {
+            return false;
+        }
+        RunInfo other = (RunInfo) o;
+        return jvm.equals(other.jvm) && vendor.equals(other.vendor) && gc.equals(other.gc)
+                && heap.equals(other.heap) && layout.equals(other.layout) && meter.equals(other.meter);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((jvm.hashCode() * 31 + gc.hashCode()) * 31 + heap.hashCode()) * 31 + layout.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return jvm + " (" + vendor + "), " + gc + ", [" + heap + "], " + layout + ", meter " + meter;
+    }
+}
@@ -0,0 +1,233 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ## Summary
+ *
+ * Field offsets, padding and instance size of one class.
+ *
+ * When `sun.misc.Unsafe` is available the offsets are the VM's own
+ * (`Unsafe.objectFieldOffset`); otherwise they are computed with the JDK 15+
+ * layout rules: superclass fields first, then the class's own fields largest first,
+ * with smaller fields filling the gap after the header or the superclass. Unsafe
+ * refuses the fields of records and hidden classes, whose layouts are computed too
+ * and whose references are read through reflection.
+ *
+ *     SimpleClass                        offset  size
+ *       (object header)                       0    12
+ *       int member_int                       12     4
+ *       long member_long                     16     8
+ *       JavaMemoryUseExperiment this$0       24     4
+ *       (padding)                            28     4
+ *                                                 = 32
+ *
+ * Layouts are computed once per class and cached by `ObjectSizes`.
+ */
+public final class ClassLayout {
+
+    /**
+     * One instance field and where it lives.
+     */
+    public static final class FieldLayout {
+        final Field field;
+        final long offset;
+        final int size;
+
+        FieldLayout(Field field, long offset, int size) {
+            this.field = field;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private final Class<?> type;
+    private final VmLayout vm;
+    private final List<FieldLayout> fields;
+    private final long instanceSize;
+    // offsets from Unsafe, which can read the references at them
+    final boolean measured;
+
+    // reference fields, for walking the object graph without looking at the others
+    final long[] referenceOffsets;
+    final Field[] referenceFields;
+
+    private ClassLayout(Class<?> type, VmLayout vm, List<FieldLayout> fields, boolean measured) {
+        this.type = type;
+        this.vm = vm;
+        this.measured = measured;
+        this.fields = Collections.unmodifiableList(fields);
+        long end = vm.getHeaderBytes();
+        int references = 0;
+        for (FieldLayout f : fields) {
+            end = Math.max(end, f.offset + f.size);
+            if (!f.field.getType().isPrimitive()) {
+                references++;
+            }
+        }
+        this.instanceSize = vm.align(end);
+        this.referenceOffsets = new long[references];
+        this.referenceFields = new Field[references];
+        int r = 0;
+        for (FieldLayout f : fields) {
+            if (!f.field.getType().isPrimitive()) {
+                referenceOffsets[r] = f.offset;
+                referenceFields[r] = f.field;
+                r++;
+            }
+        }
+    }
+
+    static ClassLayout of(Class<?> type, VmLayout vm) {
+        if (type.isArray()) {
+            throw new IllegalArgumentException("arrays have no fixed layout: " + type.getName());
+        }
+        List<FieldLayout> fields = null;
+        if (UnsafeAccess.isAvailable() && !type.isRecord() && !type.isHidden()) {
+            try {
+                fields = measured(type, vm);
+            } catch (UnsupportedOperationException e) {
+                // a field Unsafe will not give the offset of
+            }
+        }
+        boolean measured = fields != null;
+        if (!measured) {
+            fields = computed(type, vm);
+        }
+        Collections.sort(fields, new Comparator<FieldLayout>() {
+            public int compare(FieldLayout a, FieldLayout b) {
+                return Long.compare(a.offset, b.offset);
+            }
+        });
+        return new ClassLayout(type, vm, fields, measured);
+    }
+
+    private static List<Field> instanceFields(Class<?> type) {
+        List<Field> result = new ArrayList<Field>();
+        for (Field f : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(f.getModifiers())) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    private static List<FieldLayout> measured(Class<?> type, VmLayout vm) {
+        List<FieldLayout> fields = new ArrayList<FieldLayout>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field f : instanceFields(c)) {
+                fields.add(new FieldLayout(f, UnsafeAccess.objectFieldOffset(f), vm.sizeOf(f.getType())));
+            }
+        }
+        return fields;
+    }
+
+    private static List<FieldLayout> computed(Class<?> type, VmLayout vm) {
+        List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        List<FieldLayout> fields = new ArrayList<FieldLayout>();
+        long offset = vm.getHeaderBytes();
+        for (Class<?> c : hierarchy) {
+            List<Field> declared = instanceFields(c);
+            // largest first, so that every field is naturally aligned
+            Collections.sort(declared, new Comparator<Field>() {
+                public int compare(Field a, Field b) {
+                    return vm.sizeOf(b.getType()) - vm.sizeOf(a.getType());
+                }
+            });
+            // fill the gap before the first 8 byte field with smaller ones, smallest last
+            while (!declared.isEmpty() && offset % vm.sizeOf(declared.get(0).getType()) != 0) {
+                Field filler = null;
+                for (Field f : declared) {
+                    int size = vm.sizeOf(f.getType());
+                    if (offset % size == 0 && (offset % 8) + size <= 8) {
+                        filler = f;
+                        break;
+                    }
+                }
+                if (filler == null) {
+                    offset = VmLayout.align(offset, vm.sizeOf(declared.get(0).getType()));
+                    break;
+                }
+                declared.remove(filler);
+                fields.add(new FieldLayout(filler, offset, vm.sizeOf(filler.getType())));
+                offset += vm.sizeOf(filler.getType());
+            }
+            for (Field f : declared) {
+                int size = vm.sizeOf(f.getType());
+                offset = VmLayout.align(offset, size);
+                fields.add(new FieldLayout(f, offset, size));
+                offset += size;
+            }
+        }
+        return fields;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public List<FieldLayout> getFields() {
+        return fields;
+    }
+
+    public long getInstanceSize() {
+        return instanceSize;
+    }
+
+    public int getHeaderBytes() {
+        return vm.getHeaderBytes();
+    }
+
+    /**
+     * Bytes lost to alignment gaps between fields and to padding at the end.
+     */
+    public long getPaddingBytes() {
+        long used = vm.getHeaderBytes();
+        for (FieldLayout f : fields) {
+            used += f.size;
+        }
+        return instanceSize - used;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("%s%n", type.getName()));
+        s.append(String.format("  %-50s %8s %6s%n", "", "offset", "size"));
+        s.append(String.format("  %-50s %8d %6d%n", "(object header)", 0, vm.getHeaderBytes()));
+        long end = vm.getHeaderBytes();
+        for (FieldLayout f : fields) {
+            if (f.offset > end) {
+                s.append(String.format("  %-50s %8d %6d%n", "(gap)", end, f.offset - end));
+            }
+            s.append(String.format("  %-50s %8d %6d%n",
+                    f.field.getType().getSimpleName() + " " + f.field.getName(), f.offset, f.size));
+            end = f.offset + f.size;
+        }
+        if (instanceSize > end) {
+            s.append(String.format("  %-50s %8d %6d%n", "(padding)", end, instanceSize - end));
+        }
+        s.append(String.format("  %-50s %8s %6d%n", "", "", instanceSize));
+        return s.toString();
+    }
+}
@@ -0,0 +1,443 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.meng6.java_memory_use_experiment.primitive.LongHashSet;
+
+/**
+ * ## Summary
+ *
+ * Deep size of object graphs too large or too deep for a recursive walk with an
+ * `IdentityHashMap` of visited objects.
+ *
+ * * Objects are visited breadth first from an explicit queue, so a 10^7 node linked
+ *   list needs no stack, and every object is first reached at its smallest depth.
+ * * Visited objects are keyed by their current address (see `UnsafeAccess.addressOf`)
+ *   in a `LongHashSet`, about 11 bytes per object. No identity hash codes are asked
+ *   for, so the walk does not write a hash into the header of every object it meets.
+ * * The walk can stop after `maxDepth` reference hops from the root, or once
+ *   `maxBytes` have been counted; the result then says it is truncated and is a
+ *   lower bound.
+ * * Object arrays of at least `parallelThreshold` elements are split into chunks whose
+ *   subgraphs are walked in a `ForkJoinPool`, against one visited set split into
+ *   synchronized shards.
+ *
+ * Addresses are only stable between collections. The walk reads the collection
+ * counts of all `GarbageCollectorMXBean`s before and after, and walks again if they
+ * changed; after `MAX_ATTEMPTS` it falls back to an `IdentityHashMap`, which is also
+ * used when `sun.misc.Unsafe` is not available. The fallback keeps the depth and
+ * byte bounds but walks on one thread.
+ *
+ * With a pool, breadth first order only holds within each chunk, so under a
+ * `maxDepth` bound an object shared between chunks may be cut off at a larger depth
+ * than its smallest one.
+ *
+ * ## Configuration (`fromSystemProperties`)
+ *
+ * * `-Dsizeof.maxDepth=2147483647`: reference hops followed from the root
+ * * `-Dsizeof.maxBytes=9223372036854775807`: byte budget
+ * * `-Dsizeof.parallelism=0`: threads of the pool, 0 to walk on the calling thread
+ * * `-Dsizeof.parallelThreshold=65536`: smallest object array split across the pool
+ */
+public final class DeepSizeWalker {
+
+    public static final int MAX_ATTEMPTS = 3;
+
+    private static final int SHARDS = 64;
+    private static final int CHUNK = 4096;
+    private static final int FLUSH_EVERY = 4096;
+
+    private final int maxDepth;
+    private final long maxBytes;
+
+    private ForkJoinPool pool;
+    private int parallelThreshold = 1 << 16;
+    private boolean identityVisited;
+
+    // sizes of the last walk, to allocate the next one's visited set and queue up front
+    private int expectedObjects = 16;
+    private int expectedQueue = 64;
+
+    public DeepSizeWalker() {
+        this(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public DeepSizeWalker(int maxDepth, long maxBytes) {
+        if (maxDepth < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("bounds must be non-negative: depth " + maxDepth + ", bytes " + maxBytes);
+        }
+        this.maxDepth = maxDepth;
+        this.maxBytes = maxBytes;
+    }
+
+    public static DeepSizeWalker fromSystemProperties() {
+        DeepSizeWalker walker = new DeepSizeWalker(
+                Integer.getInteger("sizeof.maxDepth", Integer.MAX_VALUE),
+                Long.getLong("sizeof.maxBytes", Long.MAX_VALUE));
+        int parallelism = Integer.getInteger("sizeof.parallelism", 0);
+        if (parallelism > 0) {
+            walker.setPool(new ForkJoinPool(parallelism), Integer.getInteger("sizeof.parallelThreshold", 1 << 16));
+        }
+        return walker;
+    }
+
+    /**
+     * Walk wide object arrays in `pool`, or on the calling thread if it is null.
+     */
+    public void setPool(ForkJoinPool pool, int parallelThreshold) {
+        this.pool = pool;
+        this.parallelThreshold = Math.max(2 * CHUNK, parallelThreshold);
+    }
+
+    /**
+     * Track visited objects in an `IdentityHashMap` instead of by address, as
+     * `ObjectSizes` used to; for comparison.
+     */
+    public void setIdentityVisited(boolean identityVisited) {
+        this.identityVisited = identityVisited;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static class DeepSize {
+        private final long bytes;
+        private final long objects;
+        private final boolean truncated;
+        private final int attempts;
+
+        DeepSize(long bytes, long objects, boolean truncated, int attempts) {
+            this.bytes = bytes;
+            this.objects = objects;
+            this.truncated = truncated;
+            this.attempts = attempts;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getObjects() {
+            return objects;
+        }
+
+        /** true if a depth or byte bound cut the walk short */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /** walks needed, more than one if a collection moved objects during a walk */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        @Override
+        public String toString() {
+            return (truncated ? ">= " : "") + bytes + " bytes in " + objects + " objects";
+        }
+    }
+
+    /**
+     * Not thread-safe: use one walker per thread.
+     */
+    public DeepSize walk(Object root) {
+        if (root == null) {
+            return new DeepSize(0, 0, false, 0);
+        }
+        if (!identityVisited && UnsafeAccess.isAvailable()) {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                // growing the visited set and queue is what usually triggers the collection
+                // that spoils a walk, so the next attempt allocates them at full size up front
+                Shared shared = new Shared(pool == null ? 1 : SHARDS, false, expectedObjects);
+                Walker walker = new Walker(shared, pool, expectedQueue);
+                long collections = collectionCount();
+                walk(root, walker);
+                expectedObjects = (int) Math.min(1 << 29, shared.objects.get() + shared.objects.get() / 8);
+                expectedQueue = walker.queue.length;
+                if (collectionCount() == collections) {
+                    return shared.result(attempt);
+                }
+            }
+        }
+        Shared shared = new Shared(1, true, 16);
+        new Walker(shared, null, 64).walkFrom(root);
+        return shared.result(identityVisited ? 1 : MAX_ATTEMPTS + 1);
+    }
+
+    private void walk(Object root, Walker walker) {
+        if (pool == null) {
+            walker.walkFrom(root);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    walker.walkFrom(root);
+                }
+            });
+        }
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * State of one walk shared by all its chunks.
+     */
+    private final class Shared {
+        final LongHashSet[] shards;
+        final IdentityHashMap<Object, Boolean> identity;
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong objects = new AtomicLong();
+        volatile boolean truncated;
+
+        Shared(int shards, boolean identity, int expectedObjects) {
+            this.shards = new LongHashSet[identity ? 0 : shards];
+            for (int i = 0; i < this.shards.length; i++) {
+                this.shards[i] = new LongHashSet(expectedObjects / shards + expectedObjects / shards / 8);
+            }
+            this.identity = identity ? new IdentityHashMap<Object, Boolean>() : null;
+        }
+
+        boolean add(Object o, Object[] scratch) {
+            if (identity != null) {
+                return identity.put(o, Boolean.TRUE) == null;
+            }
+            long address = UnsafeAccess.addressOf(scratch, o);
+            if (shards.length == 1) {
+                return shards[0].add(address);
+            }
+            LongHashSet shard = shards[(int) ((address * 0x9E3779B97F4A7C15L) >>> 58) & (SHARDS - 1)];
+            synchronized (shard) {
+                return shard.add(address);
+            }
+        }
+
+        DeepSize result(int attempts) {
+            return new DeepSize(bytes.get(), objects.get(), truncated, attempts);
+        }
+    }
+
+    /**
+     * Breadth first walk on one thread, over a ring buffer of objects and their depths.
+     */
+    private final class Walker {
+        final Shared shared;
+        final ForkJoinPool pool;
+        final Object[] scratch = new Object[1];
+
+        Object[] queue;
+        int[] depths;
+        int head;
+        int tail;
+
+        long bytes;
+        long objects;
+
+        Class<?> lastType;
+        ClassLayout lastLayout;
+
+        /**
+         * @param capacity a power of two
+         */
+        Walker(Shared shared, ForkJoinPool pool, int capacity) {
+            this.shared = shared;
+            this.pool = pool;
+            this.queue = new Object[capacity];
+            this.depths = new int[capacity];
+        }
+
+        void walkFrom(Object root) {
+            if (shared.add(root, scratch)) {
+                offer(root, 0);
+            }
+            run();
+        }
+
+        private void offer(Object o, int depth) {
+            if (tail - head == queue.length) {
+                grow();
+            }
+            int slot = tail++ & (queue.length - 1);
+            queue[slot] = o;
+            depths[slot] = depth;
+        }
+
+        private void grow() {
+            Object[] q = new Object[queue.length * 2];
+            int[] d = new int[q.length];
+            for (int i = head; i < tail; i++) {
+                q[i - head] = queue[i & (queue.length - 1)];
+                d[i - head] = depths[i & (queue.length - 1)];
+            }
+            tail -= head;
+            head = 0;
+            queue = q;
+            depths = d;
+        }
+
+        /**
+         * Graphs are mostly runs of one class, so remember the last layout rather than
+         * going to the `ClassValue` for every object.
+         */
+        private ClassLayout layoutOf(Class<?> type) {
+            if (type != lastType) {
+                lastLayout = ObjectSizes.layoutOf(type);
+                lastType = type;
+            }
+            return lastLayout;
+        }
+
+        private void follow(Object e, int depth) {
+            if (e != null && !(e instanceof Class) && shared.add(e, scratch)) {
+                offer(e, depth);
+            }
+        }
+
+        void run() {
+            while (head != tail) {
+                int slot = head++ & (queue.length - 1);
+                Object o = queue[slot];
+                int depth = depths[slot];
+                queue[slot] = null;
+
+                Class<?> type = o.getClass();
+                ClassLayout layout = null;
+                long size;
+                if (type.isArray()) {
+                    size = ObjectSizes.sizeOf(o);
+                } else {
+                    layout = layoutOf(type);
+                    size = layout.getInstanceSize();
+                }
+                // other chunks' counts show up here every FLUSH_EVERY objects
+                if (shared.truncated || shared.bytes.get() + bytes + size > maxBytes) {
+                    shared.truncated = true;
+                    break;
+                }
+                bytes += size;
+                if (++objects == FLUSH_EVERY) {
+                    flush();
+                }
+
+                if (depth == maxDepth) {
+                    if (hasReferences(o)) {
+                        shared.truncated = true;
+                    }
+                    continue;
+                }
+                if (layout == null) {
+                    if (type.getComponentType().isPrimitive()) {
+                        continue;
+                    }
+                    Object[] array = (Object[]) o;
+                    if (pool != null && array.length >= parallelThreshold) {
+                        flush();
+                        new Chunk(shared, array, 0, array.length, depth + 1).invoke();
+                    } else {
+                        for (Object e : array) {
+                            follow(e, depth + 1);
+                        }
+                    }
+                } else {
+                    for (int i = 0; i < layout.referenceOffsets.length; i++) {
+                        follow(ObjectSizes.referenceField(o, layout, i), depth + 1);
+                    }
+                }
+            }
+            while (head != tail) {
+                queue[head++ & (queue.length - 1)] = null;
+            }
+            flush();
+        }
+
+        /**
+         * Move this walker's counts to the shared totals.
+         */
+        private void flush() {
+            shared.bytes.addAndGet(bytes);
+            shared.objects.addAndGet(objects);
+            bytes = 0;
+            objects = 0;
+        }
+
+        /**
+         * True if `o` references an object the walk would follow, so that stopping at
+         * `o` cuts something off; null fields and elements do not.
+         */
+        private boolean hasReferences(Object o) {
+            Class<?> type = o.getClass();
+            if (type.isArray()) {
+                if (type.getComponentType().isPrimitive()) {
+                    return false;
+                }
+                for (Object e : (Object[]) o) {
+                    if (e != null && !(e instanceof Class)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            ClassLayout layout = layoutOf(type);
+            for (int i = 0; i < layout.referenceOffsets.length; i++) {
+                Object e = ObjectSizes.referenceField(o, layout, i);
+                if (e != null && !(e instanceof Class)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Elements `[from, to)` of a wide array, split in halves down to `CHUNK` elements.
+     */
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Shared shared;
+        final Object[] array;
+        final int from;
+        final int to;
+        final int depth;
+
+        Chunk(Shared shared, Object[] array, int from, int to, int depth) {
+            this.shared = shared;
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (shared.truncated) {
+                return;
+            }
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk(shared, array, from, mid, depth), new Chunk(shared, array, mid, to, depth));
+                return;
+            }
+            Walker walker = new Walker(shared, pool, 64);
+            for (int i = from; i < to; i++) {
+                walker.follow(array[i], depth);
+            }
+            walker.run();
+        }
+    }
+}
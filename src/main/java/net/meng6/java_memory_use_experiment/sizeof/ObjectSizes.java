@@ -0,0 +1,87 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+
+/**
+ * ## Summary
+ *
+ * Shallow and deep size of objects, computed from cached `ClassLayout`s, in place
+ * of `com.javamex.classmexer.MemoryUtil`:
+ *
+ *     MemoryUtil.memoryUsageOf(o)                              ObjectSizes.sizeOf(o)
+ *     MemoryUtil.deepMemoryUsageOf(o, VisibilityFilter.ALL)    ObjectSizes.deepSizeOf(o)
+ *
+ * No agent is needed. The layout of a class is computed on first use and then looked
+ * up through a `ClassValue`, so the cost per object of a deep walk is one lookup plus
+ * reading its reference fields.
+ *
+ * The deep walk follows instance fields and array elements, like `VisibilityFilter.ALL`,
+ * but stops at `java.lang.Class` objects: classes and their statics are shared by
+ * everything and are not part of any one data structure.
+ */
+public final class ObjectSizes {
+
+    private static final VmLayout VM = VmLayout.current();
+
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<ClassLayout>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return ClassLayout.of(type, VM);
+        }
+    };
+
+    private ObjectSizes() {}
+
+    public static VmLayout getVmLayout() {
+        return VM;
+    }
+
+    public static ClassLayout layoutOf(Class<?> type) {
+        return LAYOUTS.get(type);
+    }
+
+    /**
+     * Size of `o` itself, without the objects it references.
+     */
+    public static long sizeOf(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        Class<?> type = o.getClass();
+        if (type.isArray()) {
+            return arraySize(type, Array.getLength(o));
+        }
+        return LAYOUTS.get(type).getInstanceSize();
+    }
+
+    public static long arraySize(Class<?> arrayType, long length) {
+        Class<?> component = arrayType.getComponentType();
+        int base = UnsafeAccess.isAvailable() ? UnsafeAccess.arrayBaseOffset(arrayType) : VM.getArrayBaseOffset(component);
+        return VM.align(base + length * VM.sizeOf(component));
+    }
+
+    /**
+     * Size of `o` and of every object reachable from it, each counted once; see
+     * `DeepSizeWalker` for bounded or parallel walks.
+     */
+    public static long deepSizeOf(Object root) {
+        return new DeepSizeWalker().walk(root).getBytes();
+    }
+
+    static Object referenceField(Object o, ClassLayout layout, int i) {
+        if (layout.measured) {
+            return UnsafeAccess.getObject(o, layout.referenceOffsets[i]);
+        }
+        Field f = layout.referenceFields[i];
+        try {
+            f.setAccessible(true);
+            return f.get(o);
+        } catch (RuntimeException e) {
+            // module not open to us, e.g. java.base without --add-opens
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+}
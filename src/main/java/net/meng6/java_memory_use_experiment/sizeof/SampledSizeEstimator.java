@@ -0,0 +1,147 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ## Summary
+ *
+ * Estimate of the deep size of a graph that looks at a bounded number of objects,
+ * for sampling live structures where a full `DeepSizeWalker` walk would cost too much.
+ *
+ * The walk is breadth first like `DeepSizeWalker`, but each object carries a weight,
+ * the number of objects it stands for (1 for the root). At an object array longer
+ * than `samplesPerArray`, only that many randomly placed slots are followed, each
+ * with the array's weight times `length / samplesPerArray`. This covers the wide
+ * parts of the usual containers: the `Object[]` of an `ArrayList`, the `Node[]`
+ * table of a `HashMap`, and plain arrays. The estimate is then the sum of weight
+ * times shallow size over the visited objects.
+ *
+ * The estimate is exact if no array was sampled and the walk finished within
+ * `maxObjects`. A sampled estimate is unbiased when the elements of the sampled
+ * arrays are not shared with each other; values shared between elements, such as
+ * interned strings, are counted once per sampled element and so overestimated. A walk
+ * cut off by `maxObjects`, e.g. along a long linked list, is a lower bound.
+ */
+public final class SampledSizeEstimator {
+
+    private final int samplesPerArray;
+    private final int maxObjects;
+
+    public SampledSizeEstimator(int samplesPerArray, int maxObjects) {
+        if (samplesPerArray < 1 || maxObjects < 1) {
+            throw new IllegalArgumentException("samples and object budget must be positive: "
+                    + samplesPerArray + ", " + maxObjects);
+        }
+        this.samplesPerArray = samplesPerArray;
+        this.maxObjects = maxObjects;
+    }
+
+    public int getSamplesPerArray() {
+        return samplesPerArray;
+    }
+
+    public int getMaxObjects() {
+        return maxObjects;
+    }
+
+    public static class Estimate {
+        private final double bytes;
+        private final int objects;
+        private final boolean sampled;
+        private final boolean truncated;
+
+        Estimate(double bytes, int objects, boolean sampled, boolean truncated) {
+            this.bytes = bytes;
+            this.objects = objects;
+            this.sampled = sampled;
+            this.truncated = truncated;
+        }
+
+        public double getBytes() {
+            return bytes;
+        }
+
+        /** objects actually visited */
+        public int getObjects() {
+            return objects;
+        }
+
+        /** true if some array was sampled rather than walked */
+        public boolean isSampled() {
+            return sampled;
+        }
+
+        /** true if the object budget ran out, so the estimate is a lower bound */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public boolean isExact() {
+            return !sampled && !truncated;
+        }
+    }
+
+    public Estimate estimate(Object root) {
+        if (root == null) {
+            return new Estimate(0, 0, false, false);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        IdentityHashMap<Object, Boolean> visited = new IdentityHashMap<Object, Boolean>();
+        ArrayDeque<Object> queue = new ArrayDeque<Object>();
+        ArrayDeque<Double> weights = new ArrayDeque<Double>();
+        visited.put(root, Boolean.TRUE);
+        queue.add(root);
+        weights.add(1.0);
+
+        double bytes = 0;
+        int objects = 0;
+        boolean sampled = false;
+        while (!queue.isEmpty()) {
+            if (objects == maxObjects) {
+                return new Estimate(bytes, objects, sampled, true);
+            }
+            Object o = queue.poll();
+            double weight = weights.poll();
+            bytes += weight * ObjectSizes.sizeOf(o);
+            objects++;
+
+            Class<?> type = o.getClass();
+            if (type.isArray()) {
+                if (type.getComponentType().isPrimitive()) {
+                    continue;
+                }
+                Object[] array = (Object[]) o;
+                if (array.length <= samplesPerArray) {
+                    for (Object e : array) {
+                        follow(e, weight, visited, queue, weights);
+                    }
+                } else {
+                    sampled = true;
+                    // one random slot in each of samplesPerArray equal strides
+                    double stride = (double) array.length / samplesPerArray;
+                    for (int s = 0; s < samplesPerArray; s++) {
+                        int from = (int) (s * stride);
+                        int to = (int) Math.min(array.length, (s + 1) * stride);
+                        follow(array[from + random.nextInt(Math.max(1, to - from))], weight * stride, visited, queue, weights);
+                    }
+                }
+            } else {
+                ClassLayout layout = ObjectSizes.layoutOf(type);
+                for (int i = 0; i < layout.referenceOffsets.length; i++) {
+                    follow(ObjectSizes.referenceField(o, layout, i), weight, visited, queue, weights);
+                }
+            }
+        }
+        return new Estimate(bytes, objects, sampled, false);
+    }
+
+    private static void follow(Object e, double weight, IdentityHashMap<Object, Boolean> visited,
+                               ArrayDeque<Object> queue, ArrayDeque<Double> weights) {
+        if (e != null && !(e instanceof Class) && visited.put(e, Boolean.TRUE) == null) {
+            queue.add(e);
+            weights.add(weight);
+        }
+    }
+}
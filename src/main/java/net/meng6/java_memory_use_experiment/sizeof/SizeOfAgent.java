@@ -0,0 +1,42 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * ## Summary
+ *
+ * Optional `java.lang.instrument` agent, to cross-check the computed layouts
+ * against the VM's own `Instrumentation.getObjectSize()`.
+ *
+ * The project jar declares this class as `Premain-Class`, so
+ *
+ *     java -javaagent:build/libs/<project>.jar ... JavaMemoryUseExperiment layout
+ *
+ * enables the `Instrumentation` column of the layout mode. Nothing else needs it.
+ */
+public final class SizeOfAgent {
+
+    private static volatile Instrumentation instrumentation;
+
+    private SizeOfAgent() {}
+
+    public static void premain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    public static void agentmain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    public static boolean isLoaded() {
+        return instrumentation != null;
+    }
+
+    /**
+     * @return the VM's size of `o`, or -1 if the agent is not loaded
+     */
+    public static long getObjectSize(Object o) {
+        Instrumentation inst = instrumentation;
+        return inst == null ? -1 : inst.getObjectSize(o);
+    }
+}
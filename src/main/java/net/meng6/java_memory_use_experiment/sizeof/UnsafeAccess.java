@@ -0,0 +1,61 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.lang.reflect.Field;
+
+/**
+ * `sun.misc.Unsafe`, if this VM has it, for field offsets and for reading reference
+ * fields of classes whose packages are not open to reflection (everything in
+ * `java.base` since JDK 16).
+ */
+@SuppressWarnings("removal")
+final class UnsafeAccess {
+
+    private static final sun.misc.Unsafe UNSAFE = load();
+
+    private static final long OBJECT_ARRAY_BASE = UNSAFE == null ? 0 : UNSAFE.arrayBaseOffset(Object[].class);
+    private static final int OBJECT_ARRAY_SCALE = UNSAFE == null ? 0 : UNSAFE.arrayIndexScale(Object[].class);
+
+    private UnsafeAccess() {}
+
+    private static sun.misc.Unsafe load() {
+        try {
+            Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            return (sun.misc.Unsafe) f.get(null);
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    static boolean isAvailable() {
+        return UNSAFE != null;
+    }
+
+    static long objectFieldOffset(Field f) {
+        return UNSAFE.objectFieldOffset(f);
+    }
+
+    static Object getObject(Object o, long offset) {
+        return UNSAFE.getObject(o, offset);
+    }
+
+    static int arrayBaseOffset(Class<?> arrayClass) {
+        return UNSAFE.arrayBaseOffset(arrayClass);
+    }
+
+    /**
+     * Current address of `o`, or its narrow (compressed) value with compressed oops,
+     * read back from `scratch`, a one-element array owned by the caller. Unique among
+     * live objects, but only until the collector next moves `o`.
+     */
+    static long addressOf(Object[] scratch, Object o) {
+        scratch[0] = o;
+        long address = OBJECT_ARRAY_SCALE == 4
+                ? UNSAFE.getInt(scratch, OBJECT_ARRAY_BASE) & 0xFFFFFFFFL
+                : UNSAFE.getLong(scratch, OBJECT_ARRAY_BASE);
+        scratch[0] = null;
+        return address;
+    }
+}
@@ -0,0 +1,148 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * ## Summary
+ *
+ * The VM flags that decide object sizes on a 64 bit HotSpot VM:
+ *
+ *     -XX:+UseCompressedOops             references are 4 bytes instead of 8
+ *     -XX:+UseCompressedClassPointers    object headers are 12 bytes instead of 16
+ *     -XX:ObjectAlignmentInBytes=8       objects start (and so end) on this boundary
+ *     -XX:+UseCompactObjectHeaders       (JDK 24+) the class pointer moves into the mark
+ *                                        word: headers are 8 bytes, array elements start
+ *                                        right after the 4 byte length unless they are 8
+ *                                        bytes wide
+ *
+ * `current()` reads them from `HotSpotDiagnosticMXBean`; on other VMs it assumes the
+ * HotSpot defaults for heaps below 32 GB, and before JDK 24 no compact headers.
+ */
+public final class VmLayout {
+
+    /** mark word, the part of the header that does not depend on any flag */
+    static final int MARK_WORD_BYTES = 8;
+
+    private static final VmLayout CURRENT = detect();
+
+    private final boolean compressedOops;
+    private final boolean compressedClassPointers;
+    private final int objectAlignment;
+    private final boolean compactHeaders;
+
+    public VmLayout(boolean compressedOops, boolean compressedClassPointers, int objectAlignment) {
+        this(compressedOops, compressedClassPointers, objectAlignment, false);
+    }
+
+    public VmLayout(boolean compressedOops, boolean compressedClassPointers, int objectAlignment,
+                    boolean compactHeaders) {
+        if (Integer.bitCount(objectAlignment) != 1 || objectAlignment < 8) {
+            throw new IllegalArgumentException("object alignment must be a power of two >= 8: " + objectAlignment);
+        }
+        this.compressedOops = compressedOops;
+        this.compressedClassPointers = compressedClassPointers;
+        this.objectAlignment = objectAlignment;
+        this.compactHeaders = compactHeaders;
+    }
+
+    public static VmLayout current() {
+        return CURRENT;
+    }
+
+    private static VmLayout detect() {
+        try {
+            HotSpotDiagnosticMXBean bean = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return new VmLayout(
+                    Boolean.parseBoolean(bean.getVMOption("UseCompressedOops").getValue()),
+                    Boolean.parseBoolean(bean.getVMOption("UseCompressedClassPointers").getValue()),
+                    Integer.parseInt(bean.getVMOption("ObjectAlignmentInBytes").getValue()),
+                    isCompactHeaders(bean));
+        } catch (RuntimeException e) {
+            // not HotSpot
+            return new VmLayout(true, true, 8);
+        }
+    }
+
+    private static boolean isCompactHeaders(HotSpotDiagnosticMXBean bean) {
+        try {
+            return Boolean.parseBoolean(bean.getVMOption("UseCompactObjectHeaders").getValue());
+        } catch (IllegalArgumentException e) {
+            // no such flag before JDK 24
+            return false;
+        }
+    }
+
+    public boolean isCompressedOops() {
+        return compressedOops;
+    }
+
+    public boolean isCompressedClassPointers() {
+        return compressedClassPointers;
+    }
+
+    public int getObjectAlignment() {
+        return objectAlignment;
+    }
+
+    public boolean isCompactHeaders() {
+        return compactHeaders;
+    }
+
+    public int getHeaderBytes() {
+        if (compactHeaders) {
+            return MARK_WORD_BYTES;
+        }
+        return MARK_WORD_BYTES + (compressedClassPointers ? 4 : 8);
+    }
+
+    public int getReferenceBytes() {
+        return compressedOops ? 4 : 8;
+    }
+
+    /**
+     * Offset of element 0 of an array of references or `int`s: header, 4 byte length,
+     * then padding to 8 bytes, but none with compact headers.
+     */
+    public int getArrayBaseOffset() {
+        return (int) align(getHeaderBytes() + 4, compactHeaders ? 4 : 8);
+    }
+
+    /**
+     * Offset of element 0 of an array of `component`: with compact headers `long`
+     * and `double` elements (and 8 byte references) are still aligned to 8.
+     */
+    public int getArrayBaseOffset(Class<?> component) {
+        return (int) align(getHeaderBytes() + 4, compactHeaders ? Math.max(4, sizeOf(component)) : 8);
+    }
+
+    public long align(long bytes) {
+        return align(bytes, objectAlignment);
+    }
+
+    static long align(long bytes, int alignment) {
+        return (bytes + alignment - 1) & -alignment;
+    }
+
+    public int sizeOf(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return getReferenceBytes();
+        } else if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("compressed oops %s, compressed class pointers %s, alignment %d%s: "
+                        + "header %d B, reference %d B, array base offset %d B",
+                compressedOops, compressedClassPointers, objectAlignment, compactHeaders ? ", compact headers" : "",
+                getHeaderBytes(), getReferenceBytes(), getArrayBaseOffset());
+    }
+}
@@ -0,0 +1,151 @@
+package net.meng6.java_memory_use_experiment.stats;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * ## Summary
+ *
+ * Summary of repeated readings of one measurement, robust against the odd reading
+ * that caught a class being loaded or a collection finishing:
+ *
+ * * outliers: readings more than 3.5 scaled median absolute deviations from the
+ *   median (the modified z-score of Iglewicz and Hoaglin). If at least half of the
+ *   readings are equal, the deviation is 0 and every reading that differs is an outlier
+ * * median, 10th and 90th percentile of the readings that are left
+ * * a percentile bootstrap confidence interval of the median: the median of
+ *   `resamples` samples drawn with replacement, of which the middle `confidence`
+ *   share is the interval. The generator has a fixed seed, so the same readings
+ *   always give the same interval
+ */
+public class TrialStatistics {
+
+    private static final double OUTLIER_Z = 3.5;
+    // MAD of a normal distribution is 0.6745 of its standard deviation
+    private static final double MAD_SCALE = 1.4826;
+
+    private final int trials;
+    private final int outliers;
+    private final long median;
+    private final long p10;
+    private final long p90;
+    private final long ciLow;
+    private final long ciHigh;
+    private final double confidence;
+
+    private TrialStatistics(int trials, int outliers, long median, long p10, long p90,
+                            long ciLow, long ciHigh, double confidence) {
+        this.trials = trials;
+        this.outliers = outliers;
+        this.median = median;
+        this.p10 = p10;
+        this.p90 = p90;
+        this.ciLow = ciLow;
+        this.ciHigh = ciHigh;
+        this.confidence = confidence;
+    }
+
+    /**
+     * @param readings `count` readings from index 0, not modified
+     */
+    public static TrialStatistics of(long[] readings, int count, double confidence, int resamples) {
+        if (count < 1) {
+            throw new IllegalArgumentException("no readings");
+        }
+        long[] sorted = Arrays.copyOf(readings, count);
+        Arrays.sort(sorted);
+        double median = median(sorted, count);
+        double[] deviations = new double[count];
+        for (int i = 0; i < count; i++) {
+            deviations[i] = Math.abs(sorted[i] - median);
+        }
+        Arrays.sort(deviations);
+        double mad = count % 2 == 1 ? deviations[count / 2] : (deviations[count / 2 - 1] + deviations[count / 2]) / 2;
+
+        long[] kept = new long[count];
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            double deviation = Math.abs(sorted[i] - median);
+            if (mad == 0 ? deviation == 0 : deviation <= OUTLIER_Z * MAD_SCALE * mad) {
+                kept[k++] = sorted[i];
+            }
+        }
+
+        double[] medians = new double[resamples];
+        long[] resample = new long[k];
+        Random random = new Random(42);
+        for (int b = 0; b < resamples; b++) {
+            for (int i = 0; i < k; i++) {
+                resample[i] = kept[random.nextInt(k)];
+            }
+            Arrays.sort(resample);
+            medians[b] = median(resample, k);
+        }
+        Arrays.sort(medians);
+        double tail = (1 - confidence) / 2;
+        return new TrialStatistics(count, count - k, Math.round(median(kept, k)),
+                percentile(kept, k, 0.1), percentile(kept, k, 0.9),
+                (long) Math.floor(medians[(int) (tail * (resamples - 1))]),
+                (long) Math.ceil(medians[(int) Math.ceil((1 - tail) * (resamples - 1))]), confidence);
+    }
+
+    private static double median(long[] sorted, int count) {
+        return count % 2 == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2.0;
+    }
+
+    /** nearest-rank percentile of `count` sorted values */
+    private static long percentile(long[] sorted, int count, double p) {
+        return sorted[Math.max(0, (int) Math.ceil(p * count) - 1)];
+    }
+
+    /**
+     * True if the confidence interval is no wider than `relative` of the median, or
+     * than `absolute`, whichever is more.
+     */
+    public boolean isTight(double relative, long absolute) {
+        return ciHigh - ciLow <= Math.max(absolute, relative * Math.abs(median));
+    }
+
+    /**
+     * All readings, outliers included.
+     */
+    public int getTrials() {
+        return trials;
+    }
+
+    public int getOutliers() {
+        return outliers;
+    }
+
+    public long getMedian() {
+        return median;
+    }
+
+    public long getP10() {
+        return p10;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getCiLow() {
+        return ciLow;
+    }
+
+    public long getCiHigh() {
+        return ciHigh;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * `[ciLow, ciHigh] trials` and the number of outliers, if any.
+     */
+    @Override
+    public String toString() {
+        return String.format("[%d, %d] %d", ciLow, ciHigh, trials) + (outliers > 0 ? " (-" + outliers + ")" : "");
+    }
+}
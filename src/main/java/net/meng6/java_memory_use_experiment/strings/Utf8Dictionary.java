@@ -0,0 +1,102 @@
+package net.meng6.java_memory_use_experiment.strings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ## Summary
+ *
+ * Dictionary encoding of strings: each distinct value is stored once, as UTF-8 in a
+ * `Utf8StringArray`, and stands for an `int` code, its index there.
+ *
+ * A column of N strings with D distinct values then takes an `int[N]` of codes plus
+ * the D encoded values, and two values are equal exactly when their codes are.
+ * Codes are found through an open-addressing `int[]` table of `code + 1`, hashed on
+ * the encoded bytes.
+ */
+public class Utf8Dictionary {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final Utf8StringArray values;
+    private int[] table;
+    private int mask;
+
+    public Utf8Dictionary() {
+        this(16);
+    }
+
+    public Utf8Dictionary(int expectedValues) {
+        this.values = new Utf8StringArray(expectedValues, expectedValues * 16);
+        allocate(Integer.highestOneBit((int) Math.max(4, expectedValues / LOAD_FACTOR) - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the code of `s`, adding it if it is new
+     */
+    public int encode(String s) {
+        return encode(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int encode(byte[] utf8) {
+        int slot = slot(utf8);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (values.equals(entry - 1, utf8)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int code = values.add(utf8);
+        table[slot] = code + 1;
+        if (values.size() > table.length * LOAD_FACTOR) {
+            rehash(table.length * 2);
+        }
+        return code;
+    }
+
+    /**
+     * @return the code of `utf8`, or -1 if it is not in the dictionary
+     */
+    public int find(byte[] utf8) {
+        int slot = slot(utf8);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (values.equals(entry - 1, utf8)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    private int slot(byte[] utf8) {
+        int h = Arrays.hashCode(utf8);
+        return (h ^ (h >>> 16)) * 0x9E3779B9 & mask;
+    }
+
+    private void rehash(int capacity) {
+        allocate(capacity);
+        for (int code = 0; code < values.size(); code++) {
+            int h = values.hashCode(code);
+            int slot = (h ^ (h >>> 16)) * 0x9E3779B9 & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code + 1;
+        }
+    }
+}
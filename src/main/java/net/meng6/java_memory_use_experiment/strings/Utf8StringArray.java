@@ -0,0 +1,108 @@
+package net.meng6.java_memory_use_experiment.strings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ## Summary
+ *
+ * Append-only list of strings stored as UTF-8 in one `byte[]`, with an `int[]` of
+ * end offsets.
+ *
+ * An element costs its encoded length plus 4 bytes, against 24 (`String`) + 16
+ * (`byte[]` header) + padding + 4 (array slot) bytes of overhead for a `String[]` of
+ * Latin-1 strings: for 10 character ids that is 14 bytes instead of 60.
+ *
+ * Elements are compared in their encoded form (`equals(int, byte[])`); `get` decodes
+ * a new `String` every time it is called.
+ */
+public class Utf8StringArray {
+
+    private byte[] bytes;
+    private int[] ends;
+    private int size;
+
+    public Utf8StringArray() {
+        this(16, 256);
+    }
+
+    public Utf8StringArray(int expectedSize, int expectedBytes) {
+        this.bytes = new byte[Math.max(16, expectedBytes)];
+        this.ends = new int[Math.max(4, expectedSize)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Bytes used by the encoded elements.
+     */
+    public int byteSize() {
+        return size == 0 ? 0 : ends[size - 1];
+    }
+
+    /**
+     * @return the index of the new element
+     */
+    public int add(String s) {
+        return add(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int add(byte[] utf8) {
+        int start = byteSize();
+        if (start + utf8.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(start + utf8.length, bytes.length + (bytes.length >> 1)));
+        }
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, ends.length + (ends.length >> 1));
+        }
+        System.arraycopy(utf8, 0, bytes, start, utf8.length);
+        ends[size] = start + utf8.length;
+        return size++;
+    }
+
+    public String get(int index) {
+        int start = start(index);
+        return new String(bytes, start, ends[index] - start, StandardCharsets.UTF_8);
+    }
+
+    public int length(int index) {
+        return ends[index] - start(index);
+    }
+
+    public boolean equals(int index, byte[] utf8) {
+        int start = start(index);
+        return Arrays.equals(bytes, start, ends[index], utf8, 0, utf8.length);
+    }
+
+    /**
+     * Same as `Arrays.hashCode` over the encoded bytes of the element.
+     */
+    public int hashCode(int index) {
+        return hash(bytes, start(index), ends[index]);
+    }
+
+    static int hash(byte[] b, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + b[i];
+        }
+        return h;
+    }
+
+    private int start(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    /**
+     * Drop the spare capacity of the backing arrays.
+     */
+    public void trimToSize() {
+        bytes = Arrays.copyOf(bytes, byteSize());
+        ends = Arrays.copyOf(ends, size);
+    }
+}
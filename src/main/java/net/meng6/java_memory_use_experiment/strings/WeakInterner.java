@@ -0,0 +1,83 @@
+package net.meng6.java_memory_use_experiment.strings;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * ## Summary
+ *
+ * Bounded, lossy interner: canonical `String`s for recurring values (ids, codes,
+ * header names) without the unbounded growth of `String.intern()` or of a
+ * `ConcurrentHashMap` cache.
+ *
+ * The table has a fixed number of slots, each holding a `WeakReference` to a
+ * canonical string. A value is looked for in `PROBES` consecutive slots from its
+ * hash; if it is not there it takes the first empty or cleared slot, or else evicts
+ * the one at its home slot. So the cache never holds more than `capacity` strings,
+ * never keeps a string alive by itself, and costs per cached value one slot plus a
+ * 32 byte `WeakReference`.
+ *
+ * `intern` may be called from several threads without locking. A racing update can
+ * lose an entry, which only costs a later duplicate; the returned string always
+ * equals the argument.
+ */
+public class WeakInterner {
+
+    public static final int PROBES = 4;
+
+    private final WeakReference<String>[] slots;
+    private final int mask;
+
+    /**
+     * @param capacity slots, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public WeakInterner(int capacity) {
+        if (capacity < PROBES || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be in [" + PROBES + ", 2^30]: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = (WeakReference<String>[]) new WeakReference<?>[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return a string equal to `s`, the same one for every call with that value
+     *         as long as it stays in the cache
+     */
+    public String intern(String s) {
+        int h = s.hashCode();
+        int home = (h ^ (h >>> 16)) * 0x9E3779B9 & mask;
+        int free = -1;
+        for (int p = 0; p < PROBES; p++) {
+            int slot = (home + p) & mask;
+            WeakReference<String> ref = slots[slot];
+            String cached = ref == null ? null : ref.get();
+            if (cached == null) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (cached.hashCode() == h && cached.equals(s)) {
+                return cached;
+            }
+        }
+        slots[free >= 0 ? free : home] = new WeakReference<String>(s);
+        return s;
+    }
+
+    /**
+     * Number of slots holding a string that is still reachable elsewhere.
+     */
+    public int size() {
+        int size = 0;
+        for (WeakReference<String> ref : slots) {
+            if (ref != null && ref.get() != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
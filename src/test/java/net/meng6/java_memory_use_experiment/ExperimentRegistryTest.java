@@ -0,0 +1,96 @@
+package net.meng6.java_memory_use_experiment;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ExperimentRegistryTest {
+
+    private static final ExperimentRegistry REGISTRY = registry();
+
+    private static ExperimentRegistry registry() {
+        Map<String, List<Experiment>> suites = new LinkedHashMap<String, List<Experiment>>();
+        suites.put("arrays", experiments("int[N]", "Integer[N]", "String[N]"));
+        suites.put("variables", experiments("BigInteger", "BigDecimal", "String", "Long"));
+        suites.put("strings", experiments("String_intern", "char[N]"));
+        return new ExperimentRegistry(suites);
+    }
+
+    private static List<Experiment> experiments(String... names) {
+        List<Experiment> experiments = new ArrayList<Experiment>();
+        for (String name : names) {
+            experiments.add(Experiment.of(name, n -> null));
+        }
+        return experiments;
+    }
+
+    /**
+     * @return `<suite>/<id>` of the selected experiments, in order
+     */
+    private static List<String> select(List<String> includes, List<String> excludes) {
+        List<String> paths = new ArrayList<String>();
+        for (Map.Entry<String, List<Experiment>> suite : REGISTRY.select(includes, excludes).entrySet()) {
+            for (Experiment experiment : suite.getValue()) {
+                paths.add(suite.getKey() + "/" + experiment.getId());
+            }
+        }
+        return paths;
+    }
+
+    private static List<String> none() {
+        return Collections.emptyList();
+    }
+
+    @Test
+    public void everythingWithoutPatterns() {
+        assertEquals(9, select(none(), none()).size());
+    }
+
+    @Test
+    public void suitePattern() {
+        assertEquals(Arrays.asList("arrays/int_N", "arrays/Integer_N", "arrays/String_N"),
+                select(Arrays.asList("arrays/*"), none()));
+    }
+
+    @Test
+    public void patternWithoutASlashMatchesTheIdInAnySuite() {
+        assertEquals(Arrays.asList("arrays/String_N", "variables/String", "strings/String_intern"),
+                select(Arrays.asList("*String*"), none()));
+        // not the suite name: "strings" would match *ring* otherwise
+        assertEquals(Arrays.asList("arrays/String_N", "variables/String", "strings/String_intern"),
+                select(Arrays.asList("*ring*"), none()));
+    }
+
+    @Test
+    public void questionMarkIsOneCharacter() {
+        assertEquals(Arrays.asList("variables/Long"), select(Arrays.asList("L?ng"), none()));
+        assertEquals(none(), select(Arrays.asList("L?g"), none()));
+    }
+
+    @Test
+    public void excludeWinsOverInclude() {
+        assertEquals(Arrays.asList("variables/BigDecimal"),
+                select(Arrays.asList("variables/Big*"), Arrays.asList("*Integer")));
+        assertEquals(Arrays.asList("arrays/int_N", "arrays/Integer_N", "variables/BigInteger", "variables/BigDecimal",
+                "variables/Long", "strings/char_N"), select(none(), Arrays.asList("*String*")));
+    }
+
+    @Test
+    public void otherCharactersAreLiteral() {
+        assertEquals(none(), select(Arrays.asList("int.N"), none()));
+        assertEquals(Arrays.asList("arrays/int_N"), select(Arrays.asList("int_N"), none()));
+    }
+
+    @Test
+    public void suitesWithoutSelectedExperimentsAreLeftOut() {
+        assertEquals(Arrays.asList("variables"),
+                new ArrayList<String>(REGISTRY.select(Arrays.asList("variables/*"), none()).keySet()));
+    }
+}
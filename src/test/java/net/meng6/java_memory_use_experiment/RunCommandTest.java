@@ -0,0 +1,44 @@
+package net.meng6.java_memory_use_experiment;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RunCommandTest {
+
+    private static String error(String... args) {
+        try {
+            RunCommand.parse(args, 0, 800);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        fail("accepted " + String.join(" ", args));
+        return null;
+    }
+
+    @Test
+    public void validOptions() {
+        RunCommand.parse(new String[] {"--include", "arrays/*,*String*", "--exclude", "*Long*", "--n", "100",
+                "--repeat", "5", "--format", "jsonl", "--list"}, 0, 800);
+    }
+
+    @Test
+    public void invalidFormatListsTheFormats() {
+        String message = error("--format", "xml");
+        assertTrue(message, message.startsWith("invalid --format xml, must be one of table, csv, jsonl\n"));
+    }
+
+    @Test
+    public void unknownOption() {
+        assertTrue(error("--fromat", "csv").startsWith("unknown option --fromat csv\n"));
+    }
+
+    @Test
+    public void invalidNumbers() {
+        assertTrue(error("--n", "ten").startsWith("not a number: --n ten\n"));
+        assertTrue(error("--n", "0").startsWith("--n must be positive\n"));
+        assertTrue(error("--repeat", "0").startsWith("--repeat must be positive\n"));
+        assertTrue(error("--include").startsWith("missing value of --include\n"));
+    }
+}
@@ -0,0 +1,60 @@
+package net.meng6.java_memory_use_experiment.columns;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitPackingTest {
+
+    @Test
+    public void bitsFor() {
+        assertEquals(0, BitPacking.bitsFor(0));
+        assertEquals(1, BitPacking.bitsFor(1));
+        assertEquals(10, BitPacking.bitsFor(1000));
+        assertEquals(11, BitPacking.bitsFor(1024));
+        assertEquals(64, BitPacking.bitsFor(-1L));
+    }
+
+    @Test
+    public void wordsFor() {
+        assertEquals(0, BitPacking.wordsFor(0, 17));
+        assertEquals(1, BitPacking.wordsFor(64, 1));
+        assertEquals(2, BitPacking.wordsFor(65, 1));
+        assertEquals(17, BitPacking.wordsFor(64, 17));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wordsForTooMany() {
+        BitPacking.wordsFor(1L << 40, 64);
+    }
+
+    @Test
+    public void roundTripEveryWidth() {
+        Random random = new Random(4);
+        for (int bits = 0; bits <= 64; bits++) {
+            long mask = bits == 64 ? -1L : (1L << bits) - 1;
+            // an odd count at an odd width straddles word boundaries
+            int count = 201;
+            long[] values = new long[count];
+            long[] words = new long[BitPacking.wordsFor(count, bits)];
+            for (int i = 0; i < count; i++) {
+                values[i] = i % 3 == 0 ? mask : random.nextLong() & mask;
+                BitPacking.set(words, (long) i * bits, bits, values[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals("bits " + bits + ", index " + i, values[i], BitPacking.get(words, (long) i * bits, bits));
+            }
+        }
+    }
+
+    @Test
+    public void valueAcrossAWordBoundary() {
+        long[] words = new long[2];
+        BitPacking.set(words, 60, 10, 0x3FF);
+        assertEquals(0xFL << 60, words[0]);
+        assertEquals(0x3F, words[1]);
+        assertEquals(0x3FF, BitPacking.get(words, 60, 10));
+    }
+}
@@ -0,0 +1,55 @@
+package net.meng6.java_memory_use_experiment.columns;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class DecimalColumnTest {
+
+    @Test
+    public void valuesAtTheScale() {
+        DecimalColumn column = new DecimalColumn(3, 2);
+        column.set(0, new BigDecimal("12.34"));
+        column.set(1, new BigDecimal("-0.5"));
+        column.set(2, new BigDecimal("7"));
+        assertEquals(new BigDecimal("12.34"), column.get(0));
+        assertEquals(new BigDecimal("-0.50"), column.get(1));
+        assertEquals(new BigDecimal("7.00"), column.get(2));
+        assertEquals(0, column.getOverflowCount());
+        assertEquals(new BigDecimal("18.84"), column.sum());
+    }
+
+    @Test
+    public void valuesThatDoNotFitOverflow() {
+        DecimalColumn column = new DecimalColumn(4, 2);
+        BigDecimal precise = new BigDecimal("0.125");
+        BigDecimal huge = new BigDecimal("123456789012345678901.00");
+        BigDecimal marker = BigDecimal.valueOf(Long.MIN_VALUE, 2);
+        column.set(0, precise);
+        column.set(1, huge);
+        column.set(2, marker);
+        column.set(3, BigDecimal.ONE);
+        assertEquals(3, column.getOverflowCount());
+        assertEquals(0, precise.compareTo(column.get(0)));
+        assertEquals(0, huge.compareTo(column.get(1)));
+        assertEquals(0, marker.compareTo(column.get(2)));
+        assertEquals(0, precise.add(huge).add(marker).add(BigDecimal.ONE).compareTo(column.sum()));
+
+        column.set(1, BigDecimal.TEN);
+        assertEquals(2, column.getOverflowCount());
+        assertEquals(new BigDecimal("10.00"), column.get(1));
+    }
+
+    @Test
+    public void sumDoesNotOverflow() {
+        DecimalColumn column = new DecimalColumn(3, 0);
+        BigDecimal max = BigDecimal.valueOf(Long.MAX_VALUE);
+        column.set(0, max);
+        column.set(1, max);
+        column.set(2, BigDecimal.valueOf(-5));
+        assertEquals(0, column.getOverflowCount());
+        assertEquals(max.add(max).subtract(BigDecimal.valueOf(5)), column.sum());
+    }
+}
@@ -0,0 +1,62 @@
+package net.meng6.java_memory_use_experiment.columns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FrameOfReferenceLongColumnTest {
+
+    @Test
+    public void timestampsRoundTrip() {
+        // a partial last block, and timestamps a second apart that pack in 17 bits
+        long[] values = new long[3 * FrameOfReferenceLongColumn.BLOCK + 45];
+        Random random = new Random(6);
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1_400_000_000_000L + i * 1000L + random.nextInt(1000);
+            sum += values[i];
+        }
+        FrameOfReferenceLongColumn column = FrameOfReferenceLongColumn.of(values);
+        assertEquals(values.length, column.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], column.get(i));
+        }
+        assertEquals(sum, column.sum());
+        // at most 17 bits for each of the 4 * 128 slots, the partial last block included
+        assertTrue(column.getAverageBits() <= 17.0 * 4 * FrameOfReferenceLongColumn.BLOCK / values.length);
+    }
+
+    @Test
+    public void negativeAndExtremeValues() {
+        long[] values = new long[300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 2 == 0 ? -i : i;
+        }
+        // one block spans the whole long range, a delta of 64 bits
+        values[200] = Long.MIN_VALUE;
+        values[201] = Long.MAX_VALUE;
+        FrameOfReferenceLongColumn column = FrameOfReferenceLongColumn.of(values);
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], column.get(i));
+            sum += values[i];
+        }
+        assertEquals(sum, column.sum());
+    }
+
+    @Test
+    public void empty() {
+        FrameOfReferenceLongColumn column = FrameOfReferenceLongColumn.of(new long[0]);
+        assertEquals(0, column.size());
+        assertEquals(0, column.sum());
+        assertEquals(0, column.getAverageBits(), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBounds() {
+        FrameOfReferenceLongColumn.of(new long[] {1}).get(-1);
+    }
+}
@@ -0,0 +1,59 @@
+package net.meng6.java_memory_use_experiment.columns;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PackedIntColumnTest {
+
+    @Test
+    public void roundTrip() {
+        int[] values = new int[1000];
+        Random random = new Random(5);
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1001);
+            sum += values[i];
+        }
+        PackedIntColumn column = PackedIntColumn.of(values);
+        assertEquals(values.length, column.size());
+        assertEquals(10, column.getBits());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], column.get(i));
+        }
+        assertEquals(sum, column.sum());
+    }
+
+    @Test
+    public void fullIntRange() {
+        int[] values = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        PackedIntColumn column = PackedIntColumn.of(values);
+        assertEquals(32, column.getBits());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], column.get(i));
+        }
+        assertEquals(-1L, column.sum());
+    }
+
+    @Test
+    public void equalValuesTakeNoBits() {
+        PackedIntColumn column = PackedIntColumn.of(new int[] {-7, -7, -7});
+        assertEquals(0, column.getBits());
+        assertEquals(-7, column.get(2));
+        assertEquals(-21, column.sum());
+    }
+
+    @Test
+    public void empty() {
+        PackedIntColumn column = PackedIntColumn.of(new int[0]);
+        assertEquals(0, column.size());
+        assertEquals(0, column.sum());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBounds() {
+        PackedIntColumn.of(new int[] {1, 2}).get(2);
+    }
+}
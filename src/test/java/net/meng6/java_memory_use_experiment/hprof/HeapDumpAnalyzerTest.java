@@ -0,0 +1,252 @@
+package net.meng6.java_memory_use_experiment.hprof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HeapDumpAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A dump of 8 byte identifiers with a `Holder` root holding two `Node` chains that
+     * meet, an `Object[]` frame root holding a `long[10]`, and one unreachable `Node`:
+     *
+     *     holder 1000 -> node 2000 -> node 2001 -> node 2002
+     *                 -> node 3000 -----------------^
+     *     Object[] 5000 -> long[] 4000
+     *     node 6000
+     */
+    private Path writeDump() throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        out.write("JAVA PROFILE 1.0.2".getBytes(StandardCharsets.US_ASCII));
+        out.write(0);
+        out.writeInt(8);
+        out.writeLong(0);
+        utf8(out, 100, "Node");
+        utf8(out, 101, "Holder");
+        utf8(out, 102, "[Ljava/lang/Object;");
+        loadClass(out, 10, 100);
+        loadClass(out, 11, 101);
+        loadClass(out, 12, 102);
+
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        DataOutputStream heap = new DataOutputStream(dump);
+        // Node { Node next; int value; }
+        classDump(heap, 10, 2, 10);
+        // Holder { Node a; Node b; }
+        classDump(heap, 11, 2, 2);
+        heap.write(0x01);
+        heap.writeLong(1000);
+        heap.writeLong(1);
+        heap.write(0x03);
+        heap.writeLong(5000);
+        heap.writeInt(1);
+        heap.writeInt(0);
+        instance(heap, 1000, 11, 2000, 3000);
+        node(heap, 2000, 2001);
+        node(heap, 2001, 2002);
+        node(heap, 2002, 0);
+        node(heap, 3000, 2002);
+        node(heap, 6000, 0);
+        heap.write(0x22);
+        heap.writeLong(5000);
+        heap.writeInt(1);
+        heap.writeInt(2);
+        heap.writeLong(12);
+        heap.writeLong(4000);
+        heap.writeLong(0);
+        heap.write(0x23);
+        heap.writeLong(4000);
+        heap.writeInt(1);
+        heap.writeInt(10);
+        heap.write(11);
+        for (int i = 0; i < 10; i++) {
+            heap.writeLong(i);
+        }
+        record(out, 0x1C, dump.toByteArray());
+
+        Path file = folder.newFile("synthetic.hprof").toPath();
+        Files.write(file, records.toByteArray());
+        return file;
+    }
+
+    private static void record(DataOutputStream out, int tag, byte[] body) throws IOException {
+        out.write(tag);
+        out.writeInt(0);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    private static void utf8(DataOutputStream out, long id, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        record(out, 0x01, concat(id, bytes));
+    }
+
+    private static byte[] concat(long id, byte[] bytes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeLong(id);
+        out.write(bytes);
+        return body.toByteArray();
+    }
+
+    private static void loadClass(DataOutputStream out, long classId, long nameId) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream b = new DataOutputStream(body);
+        b.writeInt(1);
+        b.writeLong(classId);
+        b.writeInt(1);
+        b.writeLong(nameId);
+        record(out, 0x02, body.toByteArray());
+    }
+
+    private static void classDump(DataOutputStream heap, long classId, int first, int second) throws IOException {
+        heap.write(0x20);
+        heap.writeLong(classId);
+        heap.writeInt(1);
+        // super, loader, signers, protection domain, 2 reserved
+        for (int i = 0; i < 6; i++) {
+            heap.writeLong(0);
+        }
+        heap.writeInt(0);
+        heap.writeShort(0);
+        heap.writeShort(0);
+        heap.writeShort(2);
+        heap.writeLong(200);
+        heap.write(first);
+        heap.writeLong(201);
+        heap.write(second);
+    }
+
+    private static void instance(DataOutputStream heap, long id, long classId, long a, long b) throws IOException {
+        heap.write(0x21);
+        heap.writeLong(id);
+        heap.writeInt(1);
+        heap.writeLong(classId);
+        heap.writeInt(16);
+        heap.writeLong(a);
+        heap.writeLong(b);
+    }
+
+    private static void node(DataOutputStream heap, long id, long next) throws IOException {
+        heap.write(0x21);
+        heap.writeLong(id);
+        heap.writeInt(1);
+        heap.writeLong(10);
+        heap.writeInt(12);
+        heap.writeLong(next);
+        heap.writeInt((int) id);
+    }
+
+    private static HeapDumpAnalyzer.ClassInfo find(HeapDumpAnalyzer analyzer, String name) {
+        for (HeapDumpAnalyzer.ClassInfo info : analyzer.getClasses()) {
+            if (name.equals(info.getName())) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSynthetic(HeapDumpAnalyzer analyzer) {
+        // 2 class objects, 5 nodes, the holder and 2 arrays; no root reaches the classes
+        assertEquals(10, analyzer.getObjectCount());
+        assertEquals(7, analyzer.getReachableCount());
+
+        // 12 byte header, 4 byte references, 8 byte alignment: a Node and a Holder take 24
+        HeapDumpAnalyzer.ClassInfo node = find(analyzer, "Node");
+        assertEquals(5, node.getInstances());
+        assertEquals(5 * 24, node.getShallow());
+        // 2000 with 2001 below it, 3000, and 2002, which only the holder dominates
+        assertEquals(48 + 24 + 24, node.getRetained());
+
+        HeapDumpAnalyzer.ClassInfo holder = find(analyzer, "Holder");
+        assertEquals(24 + 4 * 24, holder.getRetained());
+
+        HeapDumpAnalyzer.ClassInfo longs = find(analyzer, "long[]");
+        assertEquals(1, longs.getInstances());
+        assertEquals(16 + 80, longs.getRetained());
+        HeapDumpAnalyzer.ClassInfo objects = find(analyzer, "java.lang.Object[]");
+        assertEquals(24 + 96, objects.getRetained());
+
+        assertEquals(120 + 120, analyzer.getTotalRetained());
+    }
+
+    @Test
+    public void syntheticDump() throws IOException {
+        HeapDumpAnalyzer analyzer = new HeapDumpAnalyzer(12, 4, 8);
+        analyzer.analyze(writeDump());
+        assertSynthetic(analyzer);
+    }
+
+    @Test
+    public void smallestWindowReadsTheSame() throws IOException {
+        // every record crosses a window, so most reads remap
+        HeapDumpAnalyzer analyzer = new HeapDumpAnalyzer(12, 4, 8);
+        analyzer.setWindowBytes(64);
+        analyzer.analyze(writeDump());
+        assertSynthetic(analyzer);
+    }
+
+    @Test(expected = IOException.class)
+    public void notAnHprofFile() throws IOException {
+        Path file = folder.newFile("text.hprof").toPath();
+        Files.write(file, new byte[] {'h', 'e', 'a', 'p', 0, 0, 0, 0, 8, 0, 0, 0, 0, 0, 0, 0, 0});
+        new HeapDumpAnalyzer().analyze(file);
+    }
+
+    @Test
+    public void javaName() {
+        assertEquals("java.lang.String", HeapDumpAnalyzer.javaName("java/lang/String"));
+        assertEquals("java.lang.Long[]", HeapDumpAnalyzer.javaName("[Ljava/lang/Long;"));
+        assertEquals("int[][]", HeapDumpAnalyzer.javaName("[[I"));
+    }
+
+    static class Probe {
+        long value;
+
+        Probe(long value) {
+            this.value = value;
+        }
+    }
+
+    // reachable from a static, so from a sticky class root, while the heap is dumped
+    private static Probe[] held;
+
+    @Test
+    public void dumpOfThisJvm() throws IOException {
+        held = new Probe[1000];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = new Probe(i);
+        }
+        File file = new File(folder.getRoot(), "self.hprof");
+        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).dumpHeap(file.getPath(), true);
+
+        HeapDumpAnalyzer analyzer = new HeapDumpAnalyzer(12, 4, 8);
+        analyzer.analyze(file.toPath());
+        HeapDumpAnalyzer.ClassInfo probe = find(analyzer, Probe.class.getName());
+        assertNotNull(probe);
+        assertEquals(held.length, probe.getInstances());
+        assertEquals(held.length * 24L, probe.getShallow());
+        assertEquals(held.length * 24L, probe.getRetained());
+        assertTrue(analyzer.getReachableCount() > held.length);
+        held = null;
+    }
+}
@@ -0,0 +1,55 @@
+package net.meng6.java_memory_use_experiment.live;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.meng6.java_memory_use_experiment.sizeof.SampledSizeEstimator;
+
+public class FootprintSamplerTest {
+
+    private final FootprintSampler sampler = new FootprintSampler(1000, 0.5, new SampledSizeEstimator(16, 500));
+
+    @After
+    public void close() {
+        sampler.close();
+    }
+
+    private static List<Long> fill(List<Long> list, int n) {
+        for (int i = 0; i < n; i++) {
+            list.add(Long.valueOf(1280 + i));
+        }
+        return list;
+    }
+
+    @Test
+    public void exactSampledAndLowerBoundAreToldApart() {
+        List<Long> small = fill(new ArrayList<Long>(), 10);
+        List<Long> wide = fill(new ArrayList<Long>(), 1000);
+        List<Long> deep = fill(new LinkedList<Long>(), 1000);
+        FootprintSampler.Registration exact = sampler.register("small", small);
+        FootprintSampler.Registration sampled = sampler.register("wide", wide);
+        FootprintSampler.Registration lowerBound = sampler.register("deep", deep);
+        sampler.sampleOnce(exact, small);
+        sampler.sampleOnce(sampled, wide);
+        sampler.sampleOnce(lowerBound, deep);
+
+        assertTrue(exact.isExact());
+        assertFalse(exact.isLowerBound());
+        assertFalse(sampled.isExact());
+        assertFalse(sampled.isLowerBound());
+        assertFalse(lowerBound.isExact());
+        assertTrue(lowerBound.isLowerBound());
+
+        String metrics = new PrometheusEndpoint(sampler).format();
+        assertTrue(metrics, metrics.contains("{structure=\"small\",exact=\"true\",lower_bound=\"false\"}"));
+        assertTrue(metrics, metrics.contains("{structure=\"wide\",exact=\"false\",lower_bound=\"false\"}"));
+        assertTrue(metrics, metrics.contains("{structure=\"deep\",exact=\"false\",lower_bound=\"true\"}"));
+    }
+}
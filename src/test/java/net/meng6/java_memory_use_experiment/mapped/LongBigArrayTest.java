@@ -0,0 +1,72 @@
+package net.meng6.java_memory_use_experiment.mapped;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LongBigArrayTest {
+
+    // past the last int index: a 16 GB file, of which only the pages written take disk space
+    private static final long LENGTH = (1L << 31) + 16;
+
+    private static final long[] INDEXES = {
+            0, 1, MappedChunks.ELEMENTS_PER_CHUNK - 1, MappedChunks.ELEMENTS_PER_CHUNK,
+            Integer.MAX_VALUE - 1, Integer.MAX_VALUE, 1L << 31, (1L << 31) + 1, LENGTH - 1
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void indexesBeyondTwoToTheThirtyOne() throws IOException {
+        Path file = folder.newFile("array.bin").toPath();
+        LongBigArray array = LongBigArray.map(file, LENGTH);
+        assertEquals(LENGTH, array.length());
+        assertEquals(LENGTH * 8, Files.size(file));
+        for (long i : INDEXES) {
+            array.set(i, 31 * i + 7);
+        }
+        for (long i : INDEXES) {
+            assertEquals("element " + i, 31 * i + 7, array.get(i));
+        }
+        // an index that wrapped around to an int would have overwritten these
+        assertEquals(0, array.get(2));
+        assertEquals(0, array.get(MappedChunks.ELEMENTS_PER_CHUNK + 1));
+    }
+
+    @Test
+    public void reopensBeyondTwoToTheThirtyOne() throws IOException {
+        Path file = folder.newFile("array.bin").toPath();
+        LongBigArray array = LongBigArray.map(file, LENGTH);
+        for (long i : INDEXES) {
+            array.set(i, -i);
+        }
+        array.force();
+
+        LongBigArray again = LongBigArray.open(file);
+        assertEquals(LENGTH, again.length());
+        for (long i : INDEXES) {
+            assertEquals("element " + i, -i, again.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLength() throws IOException {
+        LongBigArray.map(folder.newFile("array.bin").toPath(), -1);
+    }
+
+    @Test
+    public void sumOfASmallArray() throws IOException {
+        LongBigArray array = LongBigArray.map(folder.newFile("array.bin").toPath(), 1000);
+        for (long i = 0; i < 1000; i++) {
+            array.set(i, i);
+        }
+        assertEquals(999 * 1000 / 2, array.sum());
+    }
+}
@@ -0,0 +1,136 @@
+package net.meng6.java_memory_use_experiment.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIntHashMapTest {
+
+    // the table of a map created with the defaults: 16 entries at 0.75
+    private static final int MASK = HashCommon.tableSize(16, IntIntHashMap.DEFAULT_LOAD_FACTOR) - 1;
+
+    /**
+     * @return `count` distinct non-zero keys whose home slot is `home`, from `from` on
+     */
+    static int[] keysAt(int home, int count, int from) {
+        int[] keys = new int[count];
+        int found = 0;
+        for (int key = from; found < count; key++) {
+            if (key != 0 && (HashCommon.mix(key) & MASK) == home) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void putGetRemove() {
+        IntIntHashMap map = new IntIntHashMap(16, 0.75f, -1);
+        assertEquals(-1, map.put(7, 70));
+        assertEquals(70, map.put(7, 71));
+        assertEquals(71, map.get(7));
+        assertEquals(-1, map.get(8));
+        assertEquals(1, map.size());
+        assertEquals(71, map.remove(7));
+        assertEquals(-1, map.remove(7));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void zeroKeyIsKeptAside() {
+        IntIntHashMap map = new IntIntHashMap();
+        assertFalse(map.containsKey(0));
+        map.put(0, 5);
+        map.put(1, 6);
+        assertTrue(map.containsKey(0));
+        assertEquals(5, map.get(0));
+        assertEquals(2, map.size());
+        assertEquals(5, map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(6, map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void removingTheHeadOfARunKeepsTheRestReachable() {
+        int[] keys = keysAt(5, 4, 1);
+        IntIntHashMap map = new IntIntHashMap();
+        for (int key : keys) {
+            map.put(key, key * 10);
+        }
+        map.remove(keys[0]);
+        assertFalse(map.containsKey(keys[0]));
+        for (int i = 1; i < keys.length; i++) {
+            assertEquals(keys[i] * 10, map.get(keys[i]));
+        }
+        map.remove(keys[2]);
+        assertEquals(keys[1] * 10, map.get(keys[1]));
+        assertEquals(keys[3] * 10, map.get(keys[3]));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void entriesAtTheirHomeSlotAreNotShifted() {
+        // a at 5, d at its home 6, b pushed to 7: removing a moves b back but leaves d
+        int a = keysAt(5, 1, 1)[0];
+        int d = keysAt(6, 1, 1)[0];
+        int b = keysAt(5, 1, a + 1)[0];
+        IntIntHashMap map = new IntIntHashMap();
+        map.put(a, 1);
+        map.put(d, 2);
+        map.put(b, 3);
+        map.remove(a);
+        assertEquals(2, map.get(d));
+        assertEquals(3, map.get(b));
+        map.remove(d);
+        assertEquals(3, map.get(b));
+    }
+
+    @Test
+    public void runsWrapAroundTheEndOfTheTable() {
+        int[] last = keysAt(MASK, 3, 1);
+        int first = keysAt(0, 1, 1)[0];
+        IntIntHashMap map = new IntIntHashMap();
+        for (int key : last) {
+            map.put(key, key);
+        }
+        map.put(first, first);
+        map.remove(last[0]);
+        assertEquals(last[1], map.get(last[1]));
+        assertEquals(last[2], map.get(last[2]));
+        assertEquals(first, map.get(first));
+        map.remove(last[1]);
+        map.remove(last[2]);
+        assertEquals(first, map.get(first));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void agreesWithHashMap() {
+        Random random = new Random(1);
+        IntIntHashMap map = new IntIntHashMap(4);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int op = 0; op < 200_000; op++) {
+            // a small key range, so that runs are long and removals frequent
+            int key = random.nextInt(512) - 64;
+            if (random.nextInt(3) == 0) {
+                Integer previous = expected.remove(key);
+                assertEquals(previous == null ? 0 : previous, map.remove(key));
+            } else {
+                int value = random.nextInt();
+                Integer previous = expected.put(key, value);
+                assertEquals(previous == null ? 0 : previous, map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -64; key < 448; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+}
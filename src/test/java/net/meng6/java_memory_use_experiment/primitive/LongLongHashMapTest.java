@@ -0,0 +1,63 @@
+package net.meng6.java_memory_use_experiment.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongLongHashMapTest {
+
+    private static final int MASK = HashCommon.tableSize(16, LongLongHashMap.DEFAULT_LOAD_FACTOR) - 1;
+
+    private static long[] keysAt(int home, int count) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 1L << 40; found < count; key++) {
+            if ((HashCommon.mix(key) & MASK) == home) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void removingFromAWrappedRunKeepsTheRestReachable() {
+        long[] keys = keysAt(MASK, 4);
+        LongLongHashMap map = new LongLongHashMap();
+        for (long key : keys) {
+            map.put(key, -key);
+        }
+        map.remove(keys[1]);
+        assertFalse(map.containsKey(keys[1]));
+        assertEquals(-keys[0], map.get(keys[0]));
+        assertEquals(-keys[2], map.get(keys[2]));
+        assertEquals(-keys[3], map.get(keys[3]));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void agreesWithHashMap() {
+        Random random = new Random(2);
+        LongLongHashMap map = new LongLongHashMap(4, 0.75f, Long.MIN_VALUE);
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (int op = 0; op < 200_000; op++) {
+            long key = (random.nextInt(512) - 64) * 0x1_0000_0001L;
+            if (random.nextInt(3) == 0) {
+                Long previous = expected.remove(key);
+                assertEquals(previous == null ? Long.MIN_VALUE : previous, map.remove(key));
+            } else {
+                long value = random.nextLong();
+                Long previous = expected.put(key, value);
+                assertEquals(previous == null ? Long.MIN_VALUE : previous, map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> e : expected.entrySet()) {
+            assertEquals(e.getValue().longValue(), map.get(e.getKey()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package net.meng6.java_memory_use_experiment.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ObjectHashSetTest {
+
+    @Test
+    public void addContainsRemove() {
+        ObjectHashSet<String> set = new ObjectHashSet<String>();
+        assertTrue(set.add("a"));
+        assertFalse(set.add("a"));
+        assertTrue(set.contains("a"));
+        assertFalse(set.contains(null));
+        assertTrue(set.remove("a"));
+        assertFalse(set.remove("a"));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void noNull() {
+        new ObjectHashSet<String>().add(null);
+    }
+
+    @Test
+    public void removingTheHeadOfARunKeepsTheRestReachable() {
+        int[] keys = IntIntHashMapTest.keysAt(3, 4, 1);
+        ObjectHashSet<Integer> set = new ObjectHashSet<Integer>();
+        for (int key : keys) {
+            set.add(key);
+        }
+        set.remove(keys[0]);
+        assertFalse(set.contains(keys[0]));
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(set.contains(keys[i]));
+        }
+    }
+
+    @Test
+    public void agreesWithHashSet() {
+        Random random = new Random(3);
+        ObjectHashSet<Integer> set = new ObjectHashSet<Integer>(4);
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int op = 0; op < 200_000; op++) {
+            Integer key = random.nextInt(512);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), set.remove(key));
+            } else {
+                assertEquals(expected.add(key), set.add(key));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (int key = 0; key < 512; key++) {
+            assertEquals(expected.contains(key), set.contains(key));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonLinesTest {
+
+    @Test
+    public void roundTrip() {
+        Map<String, Object> record = new LinkedHashMap<String, Object>();
+        record.put("name", "Map<String, \"Long\">\\\n\t\u0001\u00e9");
+        record.put("n", 800);
+        record.put("big", 1L << 40);
+        record.put("value", 12.5);
+        record.put("nan", Double.NaN);
+        record.put("flag", true);
+        record.put("none", null);
+        String line = JsonLines.format(record);
+        assertEquals("{\"name\":\"Map<String, \\\"Long\\\">\\\\\\n\\t\\u0001\u00e9\",\"n\":800,\"big\":1099511627776,"
+                + "\"value\":12.5,\"nan\":null,\"flag\":true,\"none\":null}", line);
+
+        Map<String, Object> parsed = JsonLines.parse(line);
+        assertEquals(record.keySet(), parsed.keySet());
+        assertEquals(record.get("name"), parsed.get("name"));
+        assertEquals(800.0, parsed.get("n"));
+        assertEquals((double) (1L << 40), parsed.get("big"));
+        assertEquals(12.5, parsed.get("value"));
+        assertEquals(null, parsed.get("nan"));
+        assertEquals(Boolean.TRUE, parsed.get("flag"));
+        assertEquals(null, parsed.get("none"));
+    }
+
+    @Test
+    public void whitespaceAndEmptyObject() {
+        assertEquals(0, JsonLines.parse(" { } ").size());
+        Map<String, Object> parsed = JsonLines.parse("{ \"a\" : -1.5e3 , \"b\" : false }");
+        assertEquals(-1500.0, parsed.get("a"));
+        assertEquals(Boolean.FALSE, parsed.get("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trailingCharacters() {
+        JsonLines.parse("{\"a\":1} x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nestedObject() {
+        JsonLines.parse("{\"a\":{}}");
+    }
+}
@@ -0,0 +1,78 @@
+package net.meng6.java_memory_use_experiment.results;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ResultRecordTest {
+
+    private static final RunInfo RUN = new RunInfo("17.0.9+9", "vendor", "G1", "-Xmx1g", "layout", "allocation");
+
+    private static ResultRecord record(String metric, String unit, double value, boolean higherIsBetter) {
+        return new ResultRecord(RUN, "suite", "id", "name", 800, metric, unit, value, higherIsBetter);
+    }
+
+    @Test
+    public void directionFollowsTheUnitByDefault() {
+        assertTrue(new ResultRecord(RUN, "s", "i", "n", 1, "m", "ops/s", 1).isHigherBetter());
+        assertFalse(new ResultRecord(RUN, "s", "i", "n", 1, "m", "B", 1).isHigherBetter());
+        // a rate the unit cannot tell is better lower, such as pause time, needs an explicit direction
+        assertTrue(new ResultRecord(RUN, "s", "i", "n", 1, "m", "ms/s", 1).isHigherBetter());
+    }
+
+    @Test
+    public void explicitDirectionSurvivesJson() {
+        ResultRecord pauses = ResultRecord.fromJson(record("pause time", "ms/s", 12, false).toJson());
+        assertFalse(pauses.isHigherBetter());
+        assertEquals(12, pauses.getValue(), 0);
+        assertEquals(RUN, pauses.getRun());
+        assertEquals("suite|id|800|pause time", pauses.key());
+    }
+
+    @Test
+    public void recordsWithoutADirectionInferItFromTheUnit() {
+        String line = "{\"suite\":\"s\",\"id\":\"i\",\"name\":\"n\",\"n\":1,\"metric\":\"m\",\"unit\":\"MB/s\",\"value\":3}";
+        assertTrue(ResultRecord.fromJson(line).isHigherBetter());
+        assertFalse(ResultRecord.fromJson(line.replace("MB/s", "B")).isHigherBetter());
+    }
+
+    @Test
+    public void longerPausesAreARegression() {
+        RegressionCompare compare = new RegressionCompare(5);
+        assertEquals(1, compare.compare(Collections.singletonList(record("pause time", "ms/s", 10, false)),
+                Collections.singletonList(record("pause time", "ms/s", 20, false))));
+        assertEquals(0, compare.compare(Collections.singletonList(record("pause time", "ms/s", 20, false)),
+                Collections.singletonList(record("pause time", "ms/s", 10, false))));
+    }
+
+    @Test
+    public void largestNIsHigherBetterThroughJson() {
+        ResultRecord largest = ResultRecord.fromJson(record("largest N", "", 1e6, true).toJson());
+        assertTrue(largest.isHigherBetter());
+        assertEquals(1e6, largest.getValue(), 0);
+    }
+
+    @Test
+    public void aSmallerLargestNIsARegression() {
+        RegressionCompare compare = new RegressionCompare(5);
+        assertEquals(1, compare.compare(Collections.singletonList(record("largest N", "", 1000, true)),
+                Collections.singletonList(record("largest N", "", 500, true))));
+        assertEquals(0, compare.compare(Collections.singletonList(record("largest N", "", 500, true)),
+                Collections.singletonList(record("largest N", "", 1000, true))));
+    }
+
+    @Test
+    public void runsAreComparedOnTheirMedian() {
+        RegressionCompare compare = new RegressionCompare(5);
+        // one slow baseline run does not hide that the candidate uses more bytes
+        assertEquals(1, compare.compare(
+                Arrays.asList(record("bytes", "B", 100, false), record("bytes", "B", 100, false),
+                        record("bytes", "B", 900, false)),
+                Arrays.asList(record("bytes", "B", 120, false))));
+    }
+}
@@ -0,0 +1,133 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class DeepSizeWalkerTest {
+
+    static class Node {
+        Node next;
+        Object value;
+    }
+
+    private static final long NODE = ObjectSizes.sizeOf(new Node());
+
+    private static Node chain(int length) {
+        Node head = null;
+        for (int i = 0; i < length; i++) {
+            Node node = new Node();
+            node.next = head;
+            head = node;
+        }
+        return head;
+    }
+
+    @Test
+    public void longChainNeedsNoStack() {
+        DeepSizeWalker.DeepSize size = new DeepSizeWalker().walk(chain(1_000_000));
+        assertEquals(1_000_000, size.getObjects());
+        assertEquals(1_000_000 * NODE, size.getBytes());
+        assertFalse(size.isTruncated());
+    }
+
+    @Test
+    public void sharedObjectsAndCyclesAreCountedOnce() {
+        Node a = new Node();
+        Node b = new Node();
+        Long shared = Long.valueOf(1L << 40);
+        a.next = b;
+        b.next = a;
+        a.value = shared;
+        b.value = shared;
+        DeepSizeWalker.DeepSize size = new DeepSizeWalker().walk(a);
+        assertEquals(3, size.getObjects());
+        assertEquals(2 * NODE + ObjectSizes.sizeOf(shared), size.getBytes());
+    }
+
+    @Test
+    public void classesAreNotWalked() {
+        Node node = new Node();
+        node.value = String.class;
+        assertEquals(NODE, new DeepSizeWalker().walk(node).getBytes());
+    }
+
+    @Test
+    public void depthBound() {
+        // the root is at depth 0, so 3 hops reach 4 nodes
+        DeepSizeWalker.DeepSize size = new DeepSizeWalker(3, Long.MAX_VALUE).walk(chain(10));
+        assertEquals(4, size.getObjects());
+        assertTrue(size.isTruncated());
+        assertTrue(size.toString().startsWith(">= "));
+        assertFalse(new DeepSizeWalker(9, Long.MAX_VALUE).walk(chain(10)).isTruncated());
+    }
+
+    @Test
+    public void byteBound() {
+        DeepSizeWalker.DeepSize size = new DeepSizeWalker(Integer.MAX_VALUE, 5 * NODE).walk(chain(100));
+        assertTrue(size.isTruncated());
+        assertTrue(size.getBytes() >= 5 * NODE && size.getBytes() < 100 * NODE);
+    }
+
+    @Test
+    public void identityVisitedAgrees() {
+        Object[] graph = wideGraph(1000);
+        DeepSizeWalker walker = new DeepSizeWalker();
+        DeepSizeWalker identity = new DeepSizeWalker();
+        identity.setIdentityVisited(true);
+        DeepSizeWalker.DeepSize byAddress = walker.walk(graph);
+        DeepSizeWalker.DeepSize byIdentity = identity.walk(graph);
+        assertEquals(byIdentity.getBytes(), byAddress.getBytes());
+        assertEquals(byIdentity.getObjects(), byAddress.getObjects());
+        assertEquals(1, byIdentity.getAttempts());
+    }
+
+    @Test
+    public void poolAgreesWithOneThread() {
+        Object[] graph = wideGraph(50_000);
+        DeepSizeWalker serial = new DeepSizeWalker();
+        DeepSizeWalker parallel = new DeepSizeWalker();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.setPool(pool, 8192);
+            DeepSizeWalker.DeepSize expected = serial.walk(graph);
+            DeepSizeWalker.DeepSize actual = parallel.walk(graph);
+            assertEquals(expected.getBytes(), actual.getBytes());
+            assertEquals(expected.getObjects(), actual.getObjects());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * An array of short chains, every tenth of them sharing one tail, so that chunks
+     * walked on different threads meet the same objects.
+     */
+    private static Object[] wideGraph(int width) {
+        Node tail = chain(5);
+        Object[] graph = new Object[width];
+        for (int i = 0; i < width; i++) {
+            Node node = chain(2);
+            if (i % 10 == 0) {
+                node.next.next = tail;
+            }
+            node.value = Long.valueOf(i + 1000L);
+            graph[i] = node;
+        }
+        return graph;
+    }
+
+    @Test
+    public void nullRoot() {
+        assertEquals(0, new DeepSizeWalker().walk(null).getBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeBound() {
+        new DeepSizeWalker(-1, 0);
+    }
+}
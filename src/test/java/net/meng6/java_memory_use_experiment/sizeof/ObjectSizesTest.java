@@ -0,0 +1,74 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+
+public class ObjectSizesTest {
+
+    private static final VmLayout VM = ObjectSizes.getVmLayout();
+
+    static class Fields {
+        long a;
+        int b;
+        byte c;
+        Object d;
+    }
+
+    record FieldsRecord(long a, int b, byte c, Object d) {
+    }
+
+    record Pair(String name, Long value) {
+    }
+
+    @Test
+    public void shallowSizes() {
+        assertEquals(VM.align(VM.getHeaderBytes()), ObjectSizes.sizeOf(new Object()));
+        assertEquals(VM.align(VM.getHeaderBytes() + 8), ObjectSizes.sizeOf(Long.valueOf(1L << 40)));
+        assertEquals(VM.align(VM.getArrayBaseOffset(int.class) + 40), ObjectSizes.sizeOf(new int[10]));
+        assertEquals(VM.align(VM.getArrayBaseOffset(long.class)), ObjectSizes.sizeOf(new long[0]));
+        assertEquals(VM.align(VM.getArrayBaseOffset(Object.class) + 10L * VM.getReferenceBytes()),
+                ObjectSizes.sizeOf(new Object[10]));
+        assertEquals(0, ObjectSizes.sizeOf(null));
+    }
+
+    @Test
+    public void fieldsArePackedWithoutGaps() {
+        long fields = 8 + 4 + 1 + VM.getReferenceBytes();
+        assertEquals(VM.align(VM.getHeaderBytes() + fields), ObjectSizes.sizeOf(new Fields()));
+    }
+
+    @Test
+    public void recordsAreComputedLikeTheClassesUnsafeMeasures() {
+        ClassLayout record = ObjectSizes.layoutOf(FieldsRecord.class);
+        assertFalse(record.measured);
+        assertEquals(ObjectSizes.layoutOf(Fields.class).getInstanceSize(), record.getInstanceSize());
+        assertEquals(4, record.getFields().size());
+    }
+
+    @Test
+    public void deepSizeOfARecord() {
+        Long value = Long.valueOf(1L << 40);
+        String name = "name";
+        Pair pair = new Pair(name, value);
+        assertEquals(ObjectSizes.sizeOf(pair) + ObjectSizes.deepSizeOf(name) + ObjectSizes.sizeOf(value),
+                ObjectSizes.deepSizeOf(pair));
+    }
+
+    @Test
+    public void deepSizeOfAHiddenClass() {
+        Long captured = Long.valueOf(1L << 40);
+        LongSupplier lambda = () -> captured;
+        assertTrue(lambda.getClass().isHidden());
+        assertEquals(ObjectSizes.sizeOf(lambda) + ObjectSizes.sizeOf(captured), ObjectSizes.deepSizeOf(lambda));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void arraysHaveNoClassLayout() {
+        ObjectSizes.layoutOf(int[].class);
+    }
+}
@@ -0,0 +1,50 @@
+package net.meng6.java_memory_use_experiment.sizeof;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class VmLayoutTest {
+
+    @Test
+    public void compressedClassPointers() {
+        VmLayout vm = new VmLayout(true, true, 8);
+        assertEquals(12, vm.getHeaderBytes());
+        assertEquals(4, vm.getReferenceBytes());
+        assertEquals(16, vm.getArrayBaseOffset());
+        assertEquals(16, vm.getArrayBaseOffset(long.class));
+    }
+
+    @Test
+    public void wideOopsAndClassPointers() {
+        VmLayout vm = new VmLayout(false, false, 8);
+        assertEquals(16, vm.getHeaderBytes());
+        assertEquals(8, vm.getReferenceBytes());
+        assertEquals(24, vm.getArrayBaseOffset());
+        assertEquals(8, vm.sizeOf(Object.class));
+    }
+
+    @Test
+    public void compactHeaders() {
+        VmLayout vm = new VmLayout(true, true, 8, true);
+        assertEquals(8, vm.getHeaderBytes());
+        assertEquals(12, vm.getArrayBaseOffset());
+        assertEquals(12, vm.getArrayBaseOffset(int.class));
+        assertEquals(12, vm.getArrayBaseOffset(byte.class));
+        assertEquals(16, vm.getArrayBaseOffset(double.class));
+        assertEquals(16, new VmLayout(false, true, 8, true).getArrayBaseOffset(String.class));
+    }
+
+    @Test
+    public void alignment() {
+        VmLayout vm = new VmLayout(true, true, 16);
+        assertEquals(16, vm.align(12));
+        assertEquals(32, vm.align(17));
+        assertEquals(0, vm.align(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void alignmentMustBeAPowerOfTwo() {
+        new VmLayout(true, true, 12);
+    }
+}
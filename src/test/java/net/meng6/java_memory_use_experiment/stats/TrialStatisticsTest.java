@@ -0,0 +1,89 @@
+package net.meng6.java_memory_use_experiment.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TrialStatisticsTest {
+
+    @Test
+    public void intervalContainsTheMedian() {
+        long[] readings = new long[25];
+        Random random = new Random(7);
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = 10_000 + random.nextInt(200);
+        }
+        TrialStatistics stats = TrialStatistics.of(readings, readings.length, 0.95, 1000);
+        assertEquals(25, stats.getTrials());
+        assertEquals(0, stats.getOutliers());
+        assertTrue(stats.getCiLow() <= stats.getMedian() && stats.getMedian() <= stats.getCiHigh());
+        assertTrue(stats.getP10() <= stats.getMedian() && stats.getMedian() <= stats.getP90());
+        assertTrue(stats.getCiLow() >= 10_000 && stats.getCiHigh() < 10_200);
+        assertEquals(0.95, stats.getConfidence(), 0);
+    }
+
+    @Test
+    public void sameReadingsGiveTheSameInterval() {
+        long[] readings = {5, 9, 7, 6, 8, 12, 3, 7, 7, 10};
+        TrialStatistics a = TrialStatistics.of(readings, readings.length, 0.9, 500);
+        TrialStatistics b = TrialStatistics.of(readings.clone(), readings.length, 0.9, 500);
+        assertEquals(a.getCiLow(), b.getCiLow());
+        assertEquals(a.getCiHigh(), b.getCiHigh());
+        assertEquals(7, a.getMedian());
+    }
+
+    @Test
+    public void constantReadingsGiveAZeroWidthInterval() {
+        long[] readings = {4096, 4096, 4096, 4096, 4096};
+        TrialStatistics stats = TrialStatistics.of(readings, readings.length, 0.95, 200);
+        assertEquals(4096, stats.getCiLow());
+        assertEquals(4096, stats.getCiHigh());
+        assertTrue(stats.isTight(0, 0));
+    }
+
+    @Test
+    public void outliersAreLeftOut() {
+        // one reading caught a class being loaded
+        long[] readings = {1000, 1010, 990, 1005, 995, 1002, 998, 250_000};
+        TrialStatistics stats = TrialStatistics.of(readings, readings.length, 0.95, 1000);
+        assertEquals(8, stats.getTrials());
+        assertEquals(1, stats.getOutliers());
+        assertEquals(1010, stats.getP90());
+        assertTrue(stats.getCiHigh() <= 1010);
+    }
+
+    @Test
+    public void mostlyEqualReadingsRejectEveryOtherOne() {
+        long[] readings = {64, 64, 64, 80, 64, 72};
+        TrialStatistics stats = TrialStatistics.of(readings, readings.length, 0.95, 200);
+        assertEquals(2, stats.getOutliers());
+        assertEquals(64, stats.getMedian());
+    }
+
+    @Test
+    public void onlyTheFirstCountReadingsAreUsed() {
+        long[] readings = {3, 1, 2, 1_000_000, 1_000_000};
+        TrialStatistics stats = TrialStatistics.of(readings, 3, 0.95, 100);
+        assertEquals(3, stats.getTrials());
+        assertEquals(2, stats.getMedian());
+        assertEquals(1_000_000, readings[3]);
+    }
+
+    @Test
+    public void isTightAgainstTheMedianOrAnAbsoluteWidth() {
+        long[] readings = {90, 100, 110, 95, 105, 100, 100};
+        TrialStatistics stats = TrialStatistics.of(readings, readings.length, 0.95, 1000);
+        long width = stats.getCiHigh() - stats.getCiLow();
+        assertTrue(stats.isTight(1, 0));
+        assertTrue(stats.isTight(0, width));
+        assertEquals(width == 0, stats.isTight(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noReadings() {
+        TrialStatistics.of(new long[0], 0, 0.95, 100);
+    }
+}